@@ -3,9 +3,11 @@ package org.yearup;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ComponentScan(basePackages = {"org.yearup", "DatabaseConfig"})
+@EnableScheduling
 public class EasyshopApplication
 {
 
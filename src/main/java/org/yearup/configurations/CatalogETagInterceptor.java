@@ -0,0 +1,81 @@
+package org.yearup.configurations;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.yearup.data.CatalogVersion;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Conditional GET for the public catalog endpoints.
+ *
+ * The ETag is built from the {@link CatalogVersion} and the request path and
+ * query, and is checked before the controller runs. A matching If-None-Match
+ * is answered with 304 straight away, so the database and JSON serialization
+ * are skipped entirely. The version is read before the data, so a response
+ * can never be labelled with a version newer than its content. Responses
+ * ranked by recent views use the {@link #viewRanked()} variant, whose tags
+ * also change when new view scores arrive.
+ */
+@Component
+public class CatalogETagInterceptor implements HandlerInterceptor
+{
+    // clients may reuse a response only after revalidating it, which is cheap when it is unchanged
+    private static final String CACHE_CONTROL = CacheControl.noCache().cachePublic().getHeaderValue();
+
+    private final CatalogVersion catalogVersion;
+    private final boolean viewRanked;
+
+    @Autowired
+    public CatalogETagInterceptor(CatalogVersion catalogVersion)
+    {
+        this(catalogVersion, false);
+    }
+
+    private CatalogETagInterceptor(CatalogVersion catalogVersion, boolean viewRanked)
+    {
+        this.catalogVersion = catalogVersion;
+        this.viewRanked = viewRanked;
+    }
+
+    /**
+     * The same check for responses ranked by recent views, tagged with the
+     * ranking version as well.
+     */
+    public CatalogETagInterceptor viewRanked()
+    {
+        return new CatalogETagInterceptor(catalogVersion, true);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+    {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod()))
+        {
+            return true;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        return !new ServletWebRequest(request, response).checkNotModified(etag(request));
+    }
+
+    private String etag(HttpServletRequest request)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+        if (request.getQueryString() != null)
+        {
+            crc.update('?');
+            crc.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+        }
+        String version = viewRanked ? catalogVersion.currentRanking() : catalogVersion.current();
+        return "\"" + version + "-" + Long.toString(crc.getValue(), 36) + "\"";
+    }
+}
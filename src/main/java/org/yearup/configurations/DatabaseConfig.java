@@ -7,6 +7,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.yearup.data.ProductDao;
 import org.yearup.data.ShoppingCartDao;
+import org.yearup.data.cache.BestsellerTracker;
 import org.yearup.data.mysql.MySqlShoppingCartDao;
 
 import javax.sql.DataSource;
@@ -25,8 +26,9 @@ public class DatabaseConfig
     }
 
     @Bean
-    public ShoppingCartDao shoppingCartDao(DataSource dataSource, ProductDao productDao) throws SQLException {
-        return new MySqlShoppingCartDao(dataSource, productDao);
+    public ShoppingCartDao shoppingCartDao(DataSource dataSource, ProductDao productDao,
+                                           BestsellerTracker bestsellerTracker) throws SQLException {
+        return new MySqlShoppingCartDao(dataSource, productDao, bestsellerTracker);
 
     }
 
@@ -40,6 +42,13 @@ public class DatabaseConfig
         basicDataSource.setUrl(url);
         basicDataSource.setUsername(username);
         basicDataSource.setPassword(password);
+
+        // product searches use a small, fixed set of statement shapes, so let the driver reuse them
+        basicDataSource.addConnectionProperty("useServerPrepStmts", "true");
+        basicDataSource.addConnectionProperty("cachePrepStmts", "true");
+        basicDataSource.addConnectionProperty("prepStmtCacheSize", "250");
+        // bulk imports: send each JDBC batch as multi-row INSERTs instead of one round trip per row
+        basicDataSource.addConnectionProperty("rewriteBatchedStatements", "true");
     }
 
 }
\ No newline at end of file
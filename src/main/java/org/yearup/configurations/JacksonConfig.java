@@ -0,0 +1,20 @@
+package org.yearup.configurations;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.yearup.data.ProductFields;
+
+@Configuration
+public class JacksonConfig
+{
+    // products are written in full unless a response supplies its own ProductFields filter
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer productFieldsFilter()
+    {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .addFilter(ProductFields.FILTER, SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
@@ -2,11 +2,32 @@ package org.yearup.configurations;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer
 {
+    private final CatalogETagInterceptor catalogETagInterceptor;
+
+    public WebConfig(CatalogETagInterceptor catalogETagInterceptor)
+    {
+        this.catalogETagInterceptor = catalogETagInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry)
+    {
+        // public catalog reads that only change when a product or category is written
+        registry.addInterceptor(catalogETagInterceptor)
+                .addPathPatterns("/products", "/products/facets", "/products/cat/*", "/products/*/related",
+                                 "/categories", "/categories/*", "/categories/*/products",
+                                 "/categories/*/children", "/categories/*/breadcrumbs");
+        // suggestions are also ranked by recent views, which change without a write
+        registry.addInterceptor(catalogETagInterceptor.viewRanked())
+                .addPathPatterns("/products/suggest");
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry)
     {
@@ -14,6 +35,7 @@ public class WebConfig implements WebMvcConfigurer
                 .allowedOrigins("http://localhost:63342")  // 🔥 Allow VS Code Live Server
                 .allowedMethods("GET", "POST", "PUT", "DELETE")
                 .allowedHeaders("*")
+                .exposedHeaders("X-Next-Cursor", "ETag")
                 .allowCredentials(true); // 🔑 Important if you're using login cookies/session
     }
 }
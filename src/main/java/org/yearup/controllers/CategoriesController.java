@@ -1,21 +1,20 @@
 package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.yearup.configurations.DatabaseConfig;
+import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.CategoryDao;
 import org.yearup.data.ProductDao;
-import org.yearup.data.mysql.MySqlCategoryDao;
-import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductQuery;
 import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
 import org.yearup.models.Product;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 
 // add the annotations to make this a REST controller
@@ -33,9 +32,10 @@ public class CategoriesController
 
     // create an Autowired controller to inject the categoryDao and ProductDao
     @Autowired
-    public CategoriesController(DatabaseConfig config) throws SQLException{
-        this.categoryDao = new MySqlCategoryDao(config.dataSource());
-        this.productDao = new MySqlProductDao(config.dataSource());
+    public CategoriesController(CategoryDao categoryDao, ProductDao productDao)
+    {
+        this.categoryDao = categoryDao;
+        this.productDao = productDao;
     }
 
     // add the appropriate annotation for a get action
@@ -44,30 +44,16 @@ public class CategoriesController
     @PreAuthorize("permitAll()")
     public List<Category> getAllCategories(@RequestParam(required = false) Integer categoryId, @RequestParam(required = false) String name)
     {
-        // find and return all categories
-
-        List<Category> allCategories = categoryDao.getAllCategories(categoryId, name);
-        List<Category> categoryResults = new ArrayList<>();
-
-        // for every category in the array list,
-        // if the categoryId in the parameter(url) is not specified,
-        // if specified parameters are not found, then no categories are found
-        // otherwise, add all found categories to the categoryResults array
-        for (Category categoryList : allCategories){
-          boolean foundCategories = true;
+        // find and return the categories; the DAO filters by id and by name (ignoring case)
+        return categoryDao.getAllCategories(categoryId, name);
+    }
 
-          if (categoryId != null && categoryList.getCategoryId() != categoryId){
-              foundCategories = false;
-            }
-          if (name != null && !categoryList.getName().equalsIgnoreCase(name)){
-              foundCategories = false;
-          }
-          if (foundCategories){
-              categoryResults.add(categoryList);
-          }
-        }
-        // now we return the category results.
-        return categoryResults;
+    // the whole hierarchy, for navigation menus
+    @GetMapping("/tree")
+    @PreAuthorize("permitAll()")
+    public List<CategoryNode> getTree()
+    {
+        return categoryDao.getTree();
     }
 
     // add the appropriate annotation for a get action
@@ -77,32 +63,75 @@ public class CategoriesController
     {
         // get the category by id
         Category foundCategory = categoryDao.getById(id);
-        System.out.println("Found: " + foundCategory);
-
+        if (foundCategory == null)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
         return foundCategory;
     }
 
+    @GetMapping("/{id}/children")
+    @PreAuthorize("permitAll()")
+    public List<Category> getChildren(@PathVariable int id)
+    {
+        getById(id);
+        return categoryDao.getChildren(id);
+    }
+
+    // the categories from the top level down to this one, e.g. Electronics > Audio > Headphones
+    @GetMapping("/{id}/breadcrumbs")
+    @PreAuthorize("permitAll()")
+    public List<Category> getBreadcrumbs(@PathVariable int id)
+    {
+        List<Category> breadcrumbs = categoryDao.getBreadcrumbs(id);
+        if (breadcrumbs.isEmpty())
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return breadcrumbs;
+    }
+
     // the url to return all products in category 1 would look like this
     // https://localhost:8080/categories/1/products
+    // add ?sort=price&limit=20 to page through them, passing the X-Next-Cursor header back as &after=
+    // products of the categories below it are included unless ?subtree=false
     @GetMapping("/{categoryId}/products")
     @PreAuthorize("permitAll()")
-    public List<Product> getProductsById(@PathVariable Integer categoryId)
+    public ResponseEntity<MappingJacksonValue> getProductsById(@PathVariable Integer categoryId,
+                                                               @RequestParam(required = false) String sort,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               @RequestParam(required = false) String after,
+                                                               @RequestParam(required = false) String fields,
+                                                               @RequestParam(defaultValue = "true") boolean subtree)
     {
-        // get a list of product by categoryId
-        List<Product> products = productDao.listByCategoryId(categoryId);
-        List<Product> productResults = new ArrayList<>();
-
-        for (Product product : products){
-            boolean found = true;
-
-            if (product.getCategoryId() != categoryId){
-                found = false;
+        // an unknown category is answered from the category cache, without a product search
+        if (categoryDao.getById(categoryId) == null)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        List<Integer> categoryIds = subtree ? categoryDao.getSubtreeIds(categoryId) : List.of(categoryId);
+
+        // get a page of products by categoryId
+        try
+        {
+            ProductQuery query;
+            if (categoryIds.size() > 1)
+            {
+                // the subtree is selected like any other set of categories
+                query = ProductQuery.of(null, null, null, null, null, sort, limit, after);
+                query.setCategoryIds(categoryIds);
             }
-            if (found){
-                productResults.add(product);
+            else
+            {
+                query = ProductQuery.of(categoryId, null, null, null, null, sort, limit, after);
             }
+            query.setFields(ProductFields.parse(fields));
+            return ProductResponses.page(productDao.search(query), query.getFields());
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
         }
-        return productResults;
     }
 
     // add annotation to call this method for a POST action
@@ -111,9 +140,16 @@ public class CategoriesController
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public Category create (@RequestBody Category category)
     {
-        // insert the category
-        Category newCategory = categoryDao.create(category);
-        System.out.println("Added new category: " + newCategory);
+        // insert the category; its parent must exist
+        Category newCategory;
+        try
+        {
+            newCategory = categoryDao.create(category);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
         return newCategory;
 
     }
@@ -124,14 +160,38 @@ public class CategoriesController
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public ResponseEntity<Category> updateCategory(@PathVariable int id, @RequestBody Category category)
     {
-        // update the category by id
-        categoryDao.updateCategory(id, category);
+        // update the category by id; without a parentCategoryId it stays where it is, and moving it below itself is refused
+        try
+        {
+            categoryDao.updateCategory(id, category);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
         if (category == null){
             return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok(category);
     }
 
+    // moves the category and everything below it; leave out parentCategoryId to make it a top-level category
+    @PutMapping("/move/{id}")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public Category moveCategory(@PathVariable int id, @RequestParam(required = false) Integer parentCategoryId)
+    {
+        getById(id);
+        try
+        {
+            categoryDao.moveCategory(id, parentCategoryId);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        return categoryDao.getById(id);
+    }
+
 
     // add annotation to call this method for a DELETE action - the url path must include the categoryId
     // add annotation to ensure that only an ADMIN can call this function
@@ -139,8 +199,8 @@ public class CategoriesController
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void deleteCategory(@PathVariable int categoryId)
     {
-        // delete the category by id
-        System.out.println("Deleted: " + getById(categoryId));
+        // delete the category by id; an unknown id is a 404
+        getById(categoryId);
         categoryDao.deleteCategory(categoryId);
     }
 }
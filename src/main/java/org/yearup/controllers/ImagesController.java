@@ -0,0 +1,167 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.images.ProductImage;
+import org.yearup.images.ProductImageStore;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.List;
+
+@RestController
+@RequestMapping("/images")
+@CrossOrigin
+public class ImagesController
+{
+    // clients may reuse an image only after revalidating it, which is cheap when it is unchanged
+    private static final String CACHE_CONTROL = CacheControl.noCache().cachePublic().getHeaderValue();
+
+    // Tomcat sends a file named in these request attributes itself once the handler returns,
+    // with sendfile(2), so the bytes go from the page cache to the socket without passing through the JVM
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private ProductImageStore imageStore;
+
+    @Autowired
+    public ImagesController(ProductImageStore imageStore)
+    {
+        this.imageStore = imageStore;
+    }
+
+    // a single byte range is honoured; several ranges are answered with the whole image
+    @GetMapping("/{fileName:.+}")
+    @PreAuthorize("permitAll()")
+    public void getImage(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response)
+    {
+        ProductImage image;
+        try
+        {
+            image = imageStore.open(fileName);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+
+        if (image == null)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(image.getETag(), image.getLastModified()))
+        {
+            return;
+        }
+
+        long length = image.getLength();
+        long start = 0;
+        long end = length;
+        HttpRange range = range(request, image);
+        if (range != null)
+        {
+            try
+            {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length) + 1;
+            }
+            catch(IllegalArgumentException ex)
+            {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                                                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                                                .toString());
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod()) || start == end)
+        {
+            return;
+        }
+
+        // a mapped image is already in memory; anything else is left to the connector's sendfile when it has one
+        if (!image.isMapped() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)))
+        {
+            request.setAttribute(SENDFILE_FILENAME, image.getPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        try
+        {
+            image.transferTo(start, end - start, Channels.newChannel(response.getOutputStream()));
+        }
+        catch(IOException ex)
+        {
+            // the client went away, or the file changed under us; either way the response is already cut short
+        }
+    }
+
+    // the range to send, or null for the whole image
+    private static HttpRange range(HttpServletRequest request, ProductImage image)
+    {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !rangeStillApplies(request, image))
+        {
+            return null;
+        }
+
+        try
+        {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        }
+        catch(IllegalArgumentException ex)
+        {
+            // a Range header that cannot be parsed is ignored
+            return null;
+        }
+    }
+
+    // If-Range: the client only wants the part if it still has the same version of the image
+    private static boolean rangeStillApplies(HttpServletRequest request, ProductImage image)
+    {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null)
+        {
+            return true;
+        }
+        if (ifRange.startsWith("\""))
+        {
+            return ifRange.equals(image.getETag());
+        }
+        try
+        {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == image.getLastModified() / 1000;
+        }
+        catch(IllegalArgumentException ex)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.yearup.data.ProductFields;
+import org.yearup.models.ProductPage;
+
+final class ProductResponses
+{
+    // clients pass this value back as ?after= to fetch the following page
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private ProductResponses()
+    {
+    }
+
+    static ResponseEntity<MappingJacksonValue> page(ProductPage page, ProductFields fields)
+    {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasNext())
+        {
+            response.header(NEXT_CURSOR_HEADER, page.getNext());
+        }
+        return response.body(body(page.getProducts(), fields));
+    }
+
+    /**
+     * Wraps products so only the requested fields are written; null writes them all.
+     */
+    static MappingJacksonValue body(Object products, ProductFields fields)
+    {
+        MappingJacksonValue body = new MappingJacksonValue(products);
+        if (fields != null)
+        {
+            body.setFilters(new SimpleFilterProvider().addFilter(ProductFields.FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(fields.getProperties())));
+        }
+        return body;
+    }
+}
@@ -1,63 +1,403 @@
 package org.yearup.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.parameters.P;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.yearup.models.Product;
+import org.yearup.models.ProductBulkChange;
+import org.yearup.models.ProductBulkResult;
 import org.yearup.data.ProductDao;
+import org.yearup.data.ProductIndex;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.cache.BestsellerTracker;
+import org.yearup.data.cache.ProductChangeFeed;
+import org.yearup.data.cache.ProductViewCounter;
+import org.yearup.exports.ProductExportWriter;
+import org.yearup.imports.ProductImportReader;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductImportReport;
+import org.yearup.models.ProductPage;
+import org.yearup.models.ProductSuggestion;
 
+import javax.servlet.http.HttpServletRequest;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/products")
 @CrossOrigin
 public class ProductsController
 {
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int DEFAULT_RELATED = 6;
+    private static final int MAX_RELATED = 12;
+    static final int DEFAULT_BOUGHT_TOGETHER = 4;
+    static final int MAX_BOUGHT_TOGETHER = 20;
+    private static final int DEFAULT_TRENDING = 10;
+    private static final int MAX_TRENDING = 50;
+    private static final int DEFAULT_BESTSELLERS = 20;
+    private static final int MAX_BESTSELLERS = 50;
+    private static final int DEFAULT_BESTSELLER_MINUTES = 60;
+    // ids asked for beyond the limit, in case some of the products have been deleted since they were counted
+    private static final int DELETED_SLACK = 4;
+
     private ProductDao productDao;
+    private ProductIndex productIndex;
+    private ObjectMapper objectMapper;
+    private ProductChangeFeed changeFeed;
+    private ProductViewCounter viewCounter;
+    private BestsellerTracker bestsellerTracker;
 
     @Autowired
-    public ProductsController(ProductDao productDao)
+    public ProductsController(ProductDao productDao, ProductIndex productIndex, ObjectMapper objectMapper,
+                              ProductChangeFeed changeFeed, ProductViewCounter viewCounter,
+                              BestsellerTracker bestsellerTracker)
     {
         this.productDao = productDao;
+        this.productIndex = productIndex;
+        this.objectMapper = objectMapper;
+        this.changeFeed = changeFeed;
+        this.viewCounter = viewCounter;
+        this.bestsellerTracker = bestsellerTracker;
     }
 
     @GetMapping
     @PreAuthorize("permitAll()")
-    public List<Product> search(@RequestParam(name="cat", required = false) Integer categoryId,
+    public ResponseEntity<MappingJacksonValue> search(@RequestParam(name="cat", required = false) Integer categoryId,
+                                                @RequestParam(name="minPrice", required = false) BigDecimal minPrice,
+                                                @RequestParam(name="maxPrice", required = false) BigDecimal maxPrice,
+                                                @RequestParam(name="color", required = false) String color,
+                                                @RequestParam(name="q", required = false) String text,
+                                                @RequestParam(name="sort", required = false) String sort,
+                                                @RequestParam(name="limit", required = false) Integer limit,
+                                                @RequestParam(name="after", required = false) String after,
+                                                @RequestParam(name="fuzzy", required = false) boolean fuzzy,
+                                                @RequestParam(name="cats", required = false) List<Integer> categoryIds,
+                                                @RequestParam(name="colors", required = false) List<String> colors,
+                                                @RequestParam(name="featured", required = false) Boolean featured,
+                                                @RequestParam(name="inStock", required = false) Boolean inStock,
+                                                @RequestParam(name="fields", required = false) String fields
+                                )
+    {
+
+        try
+        {
+            ProductQuery query = ProductQuery.of(categoryId, minPrice, maxPrice, color, text, sort, limit, after);
+            query.setFuzzy(fuzzy);
+            select(query, categoryIds, colors, featured, inStock);
+            query.setFields(ProductFields.parse(fields));
+            return ProductResponses.page(productDao.search(query), query.getFields());
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    @GetMapping(params = "ids")
+    @PreAuthorize("permitAll()")
+    public MappingJacksonValue getByIds(@RequestParam(name="ids") List<Integer> productIds,
+                                        @RequestParam(name="fields", required = false) String fields)
+    {
+        if (productIds.size() > ProductQuery.MAX_LIMIT)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + ProductQuery.MAX_LIMIT + " ids per request");
+        }
+
+        try
+        {
+            ProductFields selected = ProductFields.parse(fields);
+            return ProductResponses.body(productDao.getByIds(productIds), selected);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    @GetMapping("/facets")
+    @PreAuthorize("permitAll()")
+    public ProductFacets facets(@RequestParam(name="cat", required = false) Integer categoryId,
                                 @RequestParam(name="minPrice", required = false) BigDecimal minPrice,
                                 @RequestParam(name="maxPrice", required = false) BigDecimal maxPrice,
-                                @RequestParam(name="color", required = false) String color
+                                @RequestParam(name="color", required = false) String color,
+                                @RequestParam(name="q", required = false) String text,
+                                @RequestParam(name="fuzzy", required = false) boolean fuzzy,
+                                @RequestParam(name="cats", required = false) List<Integer> categoryIds,
+                                @RequestParam(name="colors", required = false) List<String> colors,
+                                @RequestParam(name="featured", required = false) Boolean featured,
+                                @RequestParam(name="inStock", required = false) Boolean inStock
                                 )
     {
 
         try
         {
-            return productDao.search(categoryId, minPrice, maxPrice, color);
+            ProductQuery query = ProductQuery.filter(categoryId, minPrice, maxPrice, color, text);
+            query.setFuzzy(fuzzy);
+            select(query, categoryIds, colors, featured, inStock);
+            return productIndex.facets(query);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    // multi-select filters: any of the categories, any of the colors, and the flags
+    private static void select(ProductQuery query, List<Integer> categoryIds, List<String> colors,
+                               Boolean featured, Boolean inStock)
+    {
+        query.setCategoryIds(categoryIds);
+        query.setColors(colors);
+        query.setFeatured(featured);
+        query.setInStock(inStock);
+    }
+
+    @GetMapping("/suggest")
+    @PreAuthorize("permitAll()")
+    public List<ProductSuggestion> suggest(@RequestParam(name="prefix", required = false) String prefix,
+                                           @RequestParam(name="limit", required = false) Integer limit)
+    {
+        try
+        {
+            int count = limit == null ? DEFAULT_SUGGESTIONS : Math.max(0, Math.min(limit, MAX_SUGGESTIONS));
+            return productIndex.suggest(prefix, count);
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    // pushes product changes as server-sent events instead of clients polling for them;
+    // without cats or ids every change is sent, with both a change matching either is sent
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("permitAll()")
+    public SseEmitter changes(@RequestParam(name="cats", required = false) List<Integer> categoryIds,
+                              @RequestParam(name="ids", required = false) List<Integer> productIds,
+                              @RequestHeader(name="Last-Event-ID", required = false) Long lastEventId)
+    {
+        try
+        {
+            return changeFeed.subscribe(categoryIds, productIds, lastEventId);
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    // a product page; each one is counted as a view for the trending list
+    @GetMapping("/{productId}")
+    @PreAuthorize("permitAll()")
+    public MappingJacksonValue getById(@PathVariable int productId,
+                                       @RequestParam(name="fields", required = false) String fields)
+    {
+        ProductFields selected;
+        Product product;
+        try
+        {
+            selected = ProductFields.parse(fields);
+            product = productDao.getById(productId);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+
+        if (product == null)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        viewCounter.record(productId);
+        return ProductResponses.body(product, selected);
+    }
+
+    @GetMapping("/trending")
+    @PreAuthorize("permitAll()")
+    public MappingJacksonValue trending(@RequestParam(name="limit", required = false) Integer limit,
+                                        @RequestParam(name="fields", required = false) String fields)
+    {
+        try
+        {
+            ProductFields selected = ProductFields.parse(fields);
+            int count = limit == null ? DEFAULT_TRENDING : Math.max(0, Math.min(limit, MAX_TRENDING));
+            List<Product> products = productDao.getByIds(viewCounter.trending(count + DELETED_SLACK));
+            return ProductResponses.body(products.size() > count ? products.subList(0, count) : products, selected);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    // by=cart ranks by additions to carts, by=orders by units ordered; over the last `minutes`, at most a day
+    @GetMapping("/bestsellers")
+    @PreAuthorize("permitAll()")
+    public MappingJacksonValue bestsellers(@RequestParam(name="by", defaultValue = "cart") String by,
+                                           @RequestParam(name="minutes", required = false) Integer minutes,
+                                           @RequestParam(name="limit", required = false) Integer limit,
+                                           @RequestParam(name="fields", required = false) String fields)
+    {
+        try
+        {
+            ProductFields selected = ProductFields.parse(fields);
+            int count = limit == null ? DEFAULT_BESTSELLERS : Math.max(0, Math.min(limit, MAX_BESTSELLERS));
+            long window = Math.min(TimeUnit.MINUTES.toMillis(minutes == null ? DEFAULT_BESTSELLER_MINUTES : Math.max(1, minutes)),
+                                   BestsellerTracker.MAX_WINDOW_MILLIS);
+
+            List<Integer> productIds;
+            switch (by)
+            {
+                case "cart":
+                    productIds = bestsellerTracker.mostAddedToCart(window, count + DELETED_SLACK);
+                    break;
+                case "orders":
+                    productIds = bestsellerTracker.mostOrdered(window, count + DELETED_SLACK);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported bestseller ranking: " + by);
+            }
+
+            List<Product> products = productDao.getByIds(productIds);
+            return ProductResponses.body(products.size() > count ? products.subList(0, count) : products, selected);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    @GetMapping("/{productId}/related")
+    @PreAuthorize("permitAll()")
+    public MappingJacksonValue getRelated(@PathVariable int productId,
+                                          @RequestParam(name="limit", required = false) Integer limit,
+                                          @RequestParam(name="fields", required = false) String fields)
+    {
+        ProductFields selected;
+        List<Product> related = null;
+        try
+        {
+            selected = ProductFields.parse(fields);
+            if (productDao.getById(productId) != null)
+            {
+                int count = limit == null ? DEFAULT_RELATED : Math.max(0, Math.min(limit, MAX_RELATED));
+                related = productIndex.getRelated(productId, count);
+            }
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
         }
         catch(Exception ex)
         {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
         }
+
+        if (related == null)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return ProductResponses.body(related, selected);
+    }
+
+    @GetMapping("/{productId}/bought-together")
+    @PreAuthorize("permitAll()")
+    public MappingJacksonValue getBoughtTogether(@PathVariable int productId,
+                                                 @RequestParam(name="limit", required = false) Integer limit,
+                                                 @RequestParam(name="fields", required = false) String fields)
+    {
+        ProductFields selected;
+        List<Product> companions = null;
+        try
+        {
+            selected = ProductFields.parse(fields);
+            if (productDao.getById(productId) != null)
+            {
+                companions = productIndex.getBoughtTogether(List.of(productId), boughtTogetherLimit(limit));
+            }
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+
+        if (companions == null)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return ProductResponses.body(companions, selected);
+    }
+
+    static int boughtTogetherLimit(Integer limit)
+    {
+        return limit == null ? DEFAULT_BOUGHT_TOGETHER : Math.max(0, Math.min(limit, MAX_BOUGHT_TOGETHER));
     }
 
     @GetMapping("/cat/{categoryId}")
     @PreAuthorize("permitAll()")
-    public List<Product> listByCategoryId(@PathVariable Integer categoryId )
+    public ResponseEntity<MappingJacksonValue> listByCategoryId(@PathVariable Integer categoryId,
+                                                                @RequestParam(name="sort", required = false) String sort,
+                                                                @RequestParam(name="limit", required = false) Integer limit,
+                                                                @RequestParam(name="after", required = false) String after,
+                                                                @RequestParam(name="fields", required = false) String fields)
     {
 
         try
         {
-            List<Product> products = productDao.listByCategoryId(categoryId);
+            ProductQuery query = ProductQuery.of(categoryId, null, null, null, null, sort, limit, after);
+            query.setFields(ProductFields.parse(fields));
+            ProductPage page = productDao.search(query);
 
-            if(products == null || products.isEmpty())
+            if(page.getProducts().isEmpty() && query.getAfter() == null)
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND);
 
-            return products;
+            return ProductResponses.page(page, query.getFields());
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
         }
         catch(Exception ex)
         {
@@ -79,6 +419,100 @@ public class ProductsController
         }
     }
 
+    @PostMapping(value = "/import", consumes = {ProductImportReader.CSV, ProductImportReader.NDJSON})
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ProductImportReport importProducts(HttpServletRequest request)
+    {
+        try
+        {
+            // the body is read as it is inserted, never buffered as a whole
+            ProductImportReader rows = ProductImportReader.open(request.getContentType(), request.getInputStream());
+            return productDao.importProducts(rows);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(name="format", defaultValue = "json") String format,
+                                                                @RequestParam(name="cat", required = false) Integer categoryId,
+                                                                @RequestParam(name="minPrice", required = false) BigDecimal minPrice,
+                                                                @RequestParam(name="maxPrice", required = false) BigDecimal maxPrice,
+                                                                @RequestParam(name="color", required = false) String color,
+                                                                @RequestParam(name="fields", required = false) String fields)
+    {
+        ProductQuery query;
+        String contentType;
+        try
+        {
+            query = ProductQuery.filter(categoryId, minPrice, maxPrice, color, null);
+            query.setFields(ProductFields.parse(fields));
+            contentType = ProductExportWriter.contentType(format);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+
+        // each product is written as the DAO reads it, so memory use does not grow with the export;
+        // once streaming has started a failure can only cut the response short
+        StreamingResponseBody body = out -> {
+            ProductExportWriter writer = ProductExportWriter.open(format, out, objectMapper, query.getFields());
+            productDao.streamProducts(query, writer);
+            writer.finish();
+        };
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType(contentType))
+                             .body(body);
+    }
+
+    @PutMapping("/bulk/update")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ProductBulkResult updateProducts(@RequestBody ProductBulkChange change)
+    {
+        try
+        {
+            return new ProductBulkResult(productDao.updateProducts(change));
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    @PostMapping("/bulk/delete")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ProductBulkResult deleteProducts(@RequestBody ProductBulkChange filter)
+    {
+        try
+        {
+            return new ProductBulkResult(productDao.deleteProducts(filter));
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(IllegalStateException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
     @PutMapping("/update/{productId}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void updateProduct(@PathVariable int productId, @RequestBody Product product)
@@ -8,7 +8,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
-import org.yearup.data.ProductDao;
+import org.yearup.data.ProductIndex;
 import org.yearup.data.ShoppingCartDao;
 import org.yearup.data.UserDao;
 import org.yearup.models.Product;
@@ -16,6 +16,7 @@ import org.yearup.models.ShoppingCart;
 import org.yearup.models.User;
 
 import java.security.Principal;
+import java.util.List;
 import java.util.Map;
 
 // convert this class to a REST controller
@@ -28,12 +29,12 @@ public class ShoppingCartController
     // a shopping cart requires
     private ShoppingCartDao shoppingCartDao;
     private UserDao userDao;
-    private ProductDao productDao;
+    private ProductIndex productIndex;
 
     @Autowired
-    public ShoppingCartController(UserDao userDao, ProductDao productDao, ShoppingCartDao shoppingCartDao){
+    public ShoppingCartController(UserDao userDao, ProductIndex productIndex, ShoppingCartDao shoppingCartDao){
         this.userDao = userDao;
-        this.productDao = productDao;
+        this.productIndex = productIndex;
         this.shoppingCartDao = shoppingCartDao;
     }
 
@@ -66,6 +67,23 @@ public class ShoppingCartController
         }
     }
 
+    // products most often bought together with what is in the cart
+    // https://localhost:8080/cart/bought-together?limit=4
+    @GetMapping("/bought-together")
+    public List<Product> getBoughtTogether(@RequestParam(name="limit", required = false) Integer limit)
+    {
+        try
+        {
+            User user = getCurrentUser();
+            ShoppingCart cart = shoppingCartDao.getByUserId(user.getId());
+            return productIndex.getBoughtTogether(cart.getItems().keySet(), ProductsController.boughtTogetherLimit(limit));
+        }
+        catch (Exception e)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
     // add a POST method to add a product to the cart - the url should be
     // https://localhost:8080/cart/products/15 (15 is the productId to be added
     @PostMapping("/products/{productId}")
@@ -0,0 +1,41 @@
+package org.yearup.data;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter that changes whenever products or categories change. Catalog
+ * responses derive their ETag from it, so a client's cached copy stays
+ * valid until the next write. Responses ranked by recent views also
+ * change when new view scores arrive, without any write; they carry the
+ * {@link #currentRanking() ranking version} instead.
+ */
+@Component
+public class CatalogVersion
+{
+    // versions restart at zero on every boot, so tags also carry the start time
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong ranking = new AtomicLong();
+
+    public void bump()
+    {
+        version.incrementAndGet();
+    }
+
+    public String current()
+    {
+        return epoch + "-" + version.get();
+    }
+
+    public void bumpRanking()
+    {
+        ranking.incrementAndGet();
+    }
+
+    public String currentRanking()
+    {
+        return current() + "-" + ranking.get();
+    }
+}
@@ -1,6 +1,7 @@
 package org.yearup.data;
 
 import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
 
 import java.util.List;
 
@@ -9,6 +10,38 @@ public interface CategoryDao
     List<Category> getAllCategories(Integer categoryId, String name);
     Category getById(int id);
     Category create(Category category);
+    // a category without a parent keeps the one it has; see moveCategory
     void updateCategory(int categoryId, Category category);
-    void deleteCategory(int categoryId);
+    // true when a category was deleted
+    boolean deleteCategory(int categoryId);
+
+    /**
+     * Moves a category, with everything below it, under another category, or
+     * to the top level when {@code parentCategoryId} is null. Moving a
+     * category below itself is an {@link IllegalArgumentException}.
+     */
+    void moveCategory(int categoryId, Integer parentCategoryId);
+
+    /**
+     * The direct children of a category, or the top-level categories when
+     * {@code parentCategoryId} is null.
+     */
+    List<Category> getChildren(Integer parentCategoryId);
+
+    /**
+     * The categories from the top level down to and including the given one,
+     * or an empty list when there is no such category.
+     */
+    List<Category> getBreadcrumbs(int categoryId);
+
+    /**
+     * The ids of the category and of every category below it, or an empty
+     * list when there is no such category.
+     */
+    List<Integer> getSubtreeIds(int categoryId);
+
+    /**
+     * The whole hierarchy, top-level categories first.
+     */
+    List<CategoryNode> getTree();
 }
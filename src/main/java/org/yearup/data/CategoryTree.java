@@ -0,0 +1,117 @@
+package org.yearup.data;
+
+import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The category hierarchy in memory, for breadcrumbs, navigation and subtree
+ * product listings.
+ *
+ * Categories are laid out in depth-first order, so, as with the materialized
+ * path in the database, every subtree is one contiguous range: the ids of a
+ * subtree are a slice of that order and need no walk of the tree. A category
+ * whose parent does not exist is treated as a top-level one. Instances are
+ * immutable; the category cache rebuilds its tree whenever a category is
+ * written.
+ */
+public final class CategoryTree
+{
+    private final Map<Integer, Category> byId = new HashMap<>();
+    // keyed by parent id, null for the top level
+    private final Map<Integer, List<Category>> children = new HashMap<>();
+    private final int[] order;
+    // position of each category in the depth-first order, and the end of its subtree there
+    private final Map<Integer, int[]> ranges = new HashMap<>();
+    private final List<CategoryNode> roots;
+
+    private CategoryTree(List<Category> categories)
+    {
+        for (Category category : categories)
+        {
+            byId.put(category.getCategoryId(), category);
+        }
+        for (Category category : categories)
+        {
+            children.computeIfAbsent(parentOf(category), id -> new ArrayList<>()).add(category);
+        }
+        children.replaceAll((id, list) -> List.copyOf(list));
+
+        order = new int[categories.size()];
+        List<CategoryNode> nodes = new ArrayList<>();
+        int size = 0;
+        for (Category root : children(null))
+        {
+            size = layOut(root, size, nodes);
+        }
+        roots = Collections.unmodifiableList(nodes);
+    }
+
+    public static CategoryTree of(List<Category> categories)
+    {
+        return new CategoryTree(categories);
+    }
+
+    public List<Category> children(Integer parentCategoryId)
+    {
+        return children.getOrDefault(parentCategoryId, List.of());
+    }
+
+    public List<Category> breadcrumbs(int categoryId)
+    {
+        List<Category> trail = new ArrayList<>();
+        Category category = byId.get(categoryId);
+        // the bound stops at a cycle of parents, which the database does not prevent
+        while (category != null && trail.size() < byId.size())
+        {
+            trail.add(category);
+            Integer parentId = parentOf(category);
+            category = parentId == null ? null : byId.get(parentId);
+        }
+        Collections.reverse(trail);
+        return trail;
+    }
+
+    public List<Integer> subtreeIds(int categoryId)
+    {
+        int[] range = ranges.get(categoryId);
+        if (range == null)
+        {
+            return List.of();
+        }
+        return Arrays.stream(order, range[0], range[1]).boxed().toList();
+    }
+
+    public List<CategoryNode> roots()
+    {
+        return roots;
+    }
+
+    // appends the category and its subtree to the depth-first order; returns the new size of the order
+    private int layOut(Category category, int size, List<CategoryNode> siblings)
+    {
+        int start = size;
+        order[size++] = category.getCategoryId();
+        List<CategoryNode> nodes = new ArrayList<>();
+        for (Category child : children(category.getCategoryId()))
+        {
+            size = layOut(child, size, nodes);
+        }
+        ranges.put(category.getCategoryId(), new int[]{start, size});
+        siblings.add(new CategoryNode(category.getCategoryId(), category.getName(), Collections.unmodifiableList(nodes)));
+        return size;
+    }
+
+    // null for a top-level category, or one whose parent is missing
+    private Integer parentOf(Category category)
+    {
+        Integer parentId = category.getParentCategoryId();
+        return parentId != null && byId.containsKey(parentId) && parentId != category.getCategoryId() ? parentId : null;
+    }
+}
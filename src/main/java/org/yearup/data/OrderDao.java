@@ -0,0 +1,27 @@
+package org.yearup.data;
+
+import java.time.Instant;
+import java.util.function.ObjIntConsumer;
+
+public interface OrderDao
+{
+    /**
+     * Hands the distinct product ids of every order with an id above
+     * {@code afterOrderId} to the sink together with the order id, one
+     * order at a time in order id order, as the line items are read rather
+     * than collected into a list first.
+     */
+    void streamBaskets(int afterOrderId, ObjIntConsumer<int[]> sink);
+
+    /**
+     * Hands every line item of the orders with an id above
+     * {@code afterOrderId} that were placed at or after {@code placedSince}
+     * to the sink, in order id order, as they are read.
+     */
+    void streamLineItems(int afterOrderId, Instant placedSince, LineItemSink sink);
+
+    interface LineItemSink
+    {
+        void accept(int orderId, Instant placedAt, int productId, int quantity);
+    }
+}
@@ -0,0 +1,98 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last product on a page, handed to clients as an opaque
+ * token. The next page starts right after (sortKey, productId) in the
+ * requested sort order, so no rows before it ever have to be skipped.
+ */
+public class PageCursor
+{
+    private final ProductSort sort;
+    private final String sortKey;
+    private final int productId;
+
+    public PageCursor(ProductSort sort, String sortKey, int productId)
+    {
+        this.sort = sort;
+        this.sortKey = sortKey;
+        this.productId = productId;
+    }
+
+    public ProductSort getSort()
+    {
+        return sort;
+    }
+
+    public String getSortKey()
+    {
+        return sortKey;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    /**
+     * Cursor pointing just past the given product in the given sort order.
+     */
+    public static PageCursor after(ProductSort sort, Product product)
+    {
+        return new PageCursor(sort, sortKeyOf(sort, product), product.getProductId());
+    }
+
+    /**
+     * The value a product is ordered by. Relevance depends on the query
+     * rather than the product, so the caller has to supply that key itself.
+     */
+    public static String sortKeyOf(ProductSort sort, Product product)
+    {
+        switch (sort)
+        {
+            case PRICE:
+                return product.getPrice().toPlainString();
+            case NAME:
+                return product.getName();
+            case RELEVANCE:
+                throw new IllegalArgumentException("Relevance has no per-product sort key");
+            default:
+                return "";
+        }
+    }
+
+    public String encode()
+    {
+        String raw = sort.name() + ":" + productId + ":" + (sortKey == null ? "" : sortKey);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by {@link #encode()} and checks that it was
+     * issued for the same sort order.
+     */
+    public static PageCursor decode(String token, ProductSort expectedSort)
+    {
+        try
+        {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+
+            ProductSort sort = ProductSort.valueOf(parts[0]);
+            if (sort != expectedSort)
+            {
+                throw new IllegalArgumentException("Cursor was issued for sort " + sort);
+            }
+
+            return new PageCursor(sort, parts[2], Integer.parseInt(parts[1]));
+        }
+        catch (RuntimeException ex)
+        {
+            throw new IllegalArgumentException("Invalid cursor: " + token, ex);
+        }
+    }
+}
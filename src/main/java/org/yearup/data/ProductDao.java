@@ -1,16 +1,40 @@
 package org.yearup.data;
 
 import org.yearup.models.Product;
+import org.yearup.models.ProductBulkChange;
+import org.yearup.models.ProductImportReport;
+import org.yearup.models.ProductImportRow;
+import org.yearup.models.ProductPage;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductDao
 {
     List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color);
+    ProductPage search(ProductQuery query);
     List<Product> listByCategoryId(Integer categoryId);
     Product getById(int productId);
+    /**
+     * Returns the products with the given ids in the order the ids are given.
+     * Ids without a product are skipped and repeated ids are returned once.
+     */
+    List<Product> getByIds(Collection<Integer> productIds);
     Product createProduct(Product product);
     void updateProduct(int productId, Product product);
     void deleteProduct(int productId);
+    int updateProducts(ProductBulkChange change);
+    int deleteProducts(ProductBulkChange filter);
+    ProductImportReport importProducts(Iterator<ProductImportRow> rows);
+    /**
+     * Hands each product matching the query's category, price and color
+     * filters to the sink in product id order, as it is read rather than
+     * collected into a list first. Text search and the category, color,
+     * featured and stock selections are not supported and are rejected
+     * with an IllegalArgumentException.
+     */
+    void streamProducts(ProductQuery query, Consumer<Product> sink);
 }
@@ -0,0 +1,126 @@
+package org.yearup.data;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The product properties a client asked for with {@code fields=}, such as
+ * {@code fields=productId,name,price,imageUrl} for a grid view. It narrows
+ * both the SQL column list and the JSON written for each product.
+ */
+public final class ProductFields
+{
+    /**
+     * Id of the Jackson filter declared on {@link org.yearup.models.Product}.
+     */
+    public static final String FILTER = "productFields";
+
+    public enum Field
+    {
+        PRODUCT_ID("productId", "product_id"),
+        NAME("name", "name"),
+        PRICE("price", "price"),
+        CATEGORY_ID("categoryId", "category_id"),
+        DESCRIPTION("description", "description"),
+        COLOR("color", "color"),
+        STOCK("stock", "stock"),
+        FEATURED("featured", "featured"),
+        IMAGE_URL("imageUrl", "image_url");
+
+        private final String property;
+        private final String column;
+
+        Field(String property, String column)
+        {
+            this.property = property;
+            this.column = column;
+        }
+
+        public String getProperty()
+        {
+            return property;
+        }
+
+        public String getColumn()
+        {
+            return column;
+        }
+    }
+
+    private final EnumSet<Field> fields;
+
+    private ProductFields(EnumSet<Field> fields)
+    {
+        this.fields = fields;
+    }
+
+    /**
+     * Parses a comma-separated list of property names. Returns null for a
+     * blank list, which means every field.
+     */
+    public static ProductFields parse(String fields)
+    {
+        if (fields == null || fields.isBlank())
+        {
+            return null;
+        }
+
+        EnumSet<Field> selected = EnumSet.noneOf(Field.class);
+        for (String name : fields.split(","))
+        {
+            String property = name.trim();
+            if (property.isEmpty())
+            {
+                continue;
+            }
+            selected.add(byProperty(property));
+        }
+        return selected.isEmpty() ? null : new ProductFields(selected);
+    }
+
+    private static Field byProperty(String property)
+    {
+        for (Field field : Field.values())
+        {
+            if (field.property.equalsIgnoreCase(property))
+            {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field: " + property.toLowerCase(Locale.ROOT));
+    }
+
+    public boolean contains(Field field)
+    {
+        return fields.contains(field);
+    }
+
+    /**
+     * The JSON property names to write.
+     */
+    public Set<String> getProperties()
+    {
+        Set<String> properties = new LinkedHashSet<>();
+        for (Field field : fields)
+        {
+            properties.add(field.property);
+        }
+        return Collections.unmodifiableSet(properties);
+    }
+
+    /**
+     * A bit per field, used to key cached statement texts.
+     */
+    public int getMask()
+    {
+        int mask = 0;
+        for (Field field : fields)
+        {
+            mask |= 1 << field.ordinal();
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,41 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductSuggestion;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Product queries that are answered from the in-memory catalog indexes
+ * rather than by SQL. Only the catalog cache implements this interface;
+ * every {@link ProductDao} method works against MySQL alone.
+ */
+public interface ProductIndex
+{
+    /**
+     * Counts per category, color, price band and flag of the products
+     * matching the query, each facet leaving out its own filter.
+     */
+    ProductFacets facets(ProductQuery query);
+
+    /**
+     * Returns up to {@code limit} products whose name has a word starting
+     * with the prefix, the most viewed lately first.
+     */
+    List<ProductSuggestion> suggest(String prefix, int limit);
+
+    /**
+     * Returns up to {@code limit} products similar to the given one, most
+     * similar first, or an empty list when the product does not exist.
+     */
+    List<Product> getRelated(int productId, int limit);
+
+    /**
+     * Returns up to {@code limit} products most often bought in the same
+     * order as any of the given ones, most often first, leaving out the
+     * given products themselves.
+     */
+    List<Product> getBoughtTogether(Collection<Integer> productIds, int limit);
+}
@@ -0,0 +1,291 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+import org.yearup.models.ProductPage;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Filters, sort order and page window for a product search. Every filter is
+ * optional; a null limit returns all matching products, which only internal
+ * callers such as exports and catalog loads use. Queries built from request
+ * parameters by {@link #of} are always paged.
+ */
+public class ProductQuery
+{
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private Integer categoryId;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private String color;
+    private String text;
+    private boolean fuzzy;
+    private Set<Integer> categoryIds;
+    private Set<String> colors;
+    private Boolean featured;
+    private Boolean inStock;
+    private ProductFields fields;
+    private ProductSort sort = ProductSort.ID;
+    private Integer limit;
+    private PageCursor after;
+
+    public Integer getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public void setCategoryId(Integer categoryId)
+    {
+        this.categoryId = categoryId;
+    }
+
+    public BigDecimal getMinPrice()
+    {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice)
+    {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice)
+    {
+        this.maxPrice = maxPrice;
+    }
+
+    public String getColor()
+    {
+        return color;
+    }
+
+    public void setColor(String color)
+    {
+        this.color = color;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    public void setText(String text)
+    {
+        this.text = text == null || text.isBlank() ? null : text;
+    }
+
+    public boolean hasText()
+    {
+        return text != null;
+    }
+
+    public boolean isFuzzy()
+    {
+        return fuzzy;
+    }
+
+    /**
+     * Lets misspelled words of the text query match the closest product name words.
+     */
+    public void setFuzzy(boolean fuzzy)
+    {
+        this.fuzzy = fuzzy;
+    }
+
+    public Set<Integer> getCategoryIds()
+    {
+        return categoryIds;
+    }
+
+    /**
+     * Multi-select category filter: products in any of the given categories.
+     */
+    public void setCategoryIds(Collection<Integer> categoryIds)
+    {
+        this.categoryIds = categoryIds == null || categoryIds.isEmpty() ? null : new LinkedHashSet<>(categoryIds);
+    }
+
+    public Set<String> getColors()
+    {
+        return colors;
+    }
+
+    /**
+     * Multi-select color filter: products in any of the given colors.
+     */
+    public void setColors(Collection<String> colors)
+    {
+        this.colors = colors == null || colors.isEmpty() ? null : new LinkedHashSet<>(colors);
+    }
+
+    public Boolean getFeatured()
+    {
+        return featured;
+    }
+
+    public void setFeatured(Boolean featured)
+    {
+        this.featured = featured;
+    }
+
+    public Boolean getInStock()
+    {
+        return inStock;
+    }
+
+    public void setInStock(Boolean inStock)
+    {
+        this.inStock = inStock;
+    }
+
+    /**
+     * True when any multi-select filter (categories, colors, featured, in stock) is used.
+     */
+    public boolean hasSelections()
+    {
+        return categoryIds != null || colors != null || featured != null || inStock != null;
+    }
+
+    public ProductFields getFields()
+    {
+        return fields;
+    }
+
+    /**
+     * Restricts the columns read for each product; null reads them all.
+     */
+    public void setFields(ProductFields fields)
+    {
+        this.fields = fields;
+    }
+
+    public ProductSort getSort()
+    {
+        return sort;
+    }
+
+    public void setSort(ProductSort sort)
+    {
+        this.sort = sort == null ? ProductSort.ID : sort;
+    }
+
+    public Integer getLimit()
+    {
+        return limit;
+    }
+
+    public void setLimit(Integer limit)
+    {
+        if (limit != null && limit < 1)
+        {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.limit = limit == null ? null : Math.min(limit, MAX_LIMIT);
+    }
+
+    public PageCursor getAfter()
+    {
+        return after;
+    }
+
+    public void setAfter(PageCursor after)
+    {
+        this.after = after;
+    }
+
+    /**
+     * Builds a query from the filter parameters of the endpoints that do not
+     * page, such as facets and exports; it matches every product that
+     * passes the filters.
+     */
+    public static ProductQuery filter(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color,
+                                      String text)
+    {
+        ProductQuery query = new ProductQuery();
+        query.setCategoryId(categoryId);
+        query.setMinPrice(minPrice);
+        query.setMaxPrice(maxPrice);
+        query.setColor(color);
+        query.setText(text);
+        return query;
+    }
+
+    /**
+     * Builds a query from the request parameters shared by the product
+     * listing endpoints. Text searches are ordered by relevance unless
+     * another sort is asked for. Without a limit a page holds
+     * {@link #DEFAULT_LIMIT} products, so a listing never returns the whole
+     * catalog at once; the next page is reached through the cursor.
+     */
+    public static ProductQuery of(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color,
+                                  String text, String sort, Integer limit, String after)
+    {
+        ProductQuery query = filter(categoryId, minPrice, maxPrice, color, text);
+
+        if (sort == null || sort.isBlank())
+        {
+            query.setSort(query.hasText() ? ProductSort.RELEVANCE : ProductSort.ID);
+        }
+        else
+        {
+            query.setSort(ProductSort.fromParam(sort));
+        }
+        if (query.getSort() == ProductSort.RELEVANCE && !query.hasText())
+        {
+            throw new IllegalArgumentException("sort=relevance requires a q parameter");
+        }
+
+        query.setLimit(limit == null ? DEFAULT_LIMIT : limit);
+        if (after != null && !after.isBlank())
+        {
+            query.setAfter(PageCursor.decode(after, query.getSort()));
+        }
+        return query;
+    }
+
+    /**
+     * Number of rows a DAO should fetch for this query: one more than the
+     * limit, so it can tell whether another page follows.
+     */
+    public Integer getFetchSize()
+    {
+        return limit == null ? null : limit + 1;
+    }
+
+    /**
+     * Trims rows fetched with {@link #getFetchSize()} down to one page and
+     * attaches the cursor for the next page when there is one.
+     */
+    public ProductPage toPage(List<Product> rows)
+    {
+        return toPage(rows, product -> PageCursor.sortKeyOf(sort, product));
+    }
+
+    /**
+     * Same as {@link #toPage(List)}, for sort orders whose key is not a
+     * product field.
+     */
+    public ProductPage toPage(List<Product> rows, Function<Product, String> sortKey)
+    {
+        if (limit == null || rows.size() <= limit)
+        {
+            return new ProductPage(rows, null);
+        }
+
+        List<Product> page = rows.subList(0, limit);
+        Product last = page.get(page.size() - 1);
+        return new ProductPage(page, new PageCursor(sort, sortKey.apply(last), last.getProductId()).encode());
+    }
+}
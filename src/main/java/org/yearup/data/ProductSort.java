@@ -0,0 +1,28 @@
+package org.yearup.data;
+
+import java.util.Locale;
+
+public enum ProductSort
+{
+    ID,
+    PRICE,
+    NAME,
+    RELEVANCE;
+
+    public static ProductSort fromParam(String value)
+    {
+        if (value == null || value.isBlank())
+        {
+            return ID;
+        }
+
+        try
+        {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new IllegalArgumentException("Unknown sort: " + value);
+        }
+    }
+}
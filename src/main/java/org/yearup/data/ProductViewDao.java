@@ -0,0 +1,24 @@
+package org.yearup.data;
+
+import java.time.Instant;
+import java.util.Map;
+
+public interface ProductViewDao
+{
+    /**
+     * Adds the given number of views per product to the hour starting at
+     * {@code hour}, in one batch.
+     */
+    void addViews(Instant hour, Map<Integer, Long> views);
+
+    /**
+     * Hands the view counts of every hour from {@code since} on to the sink,
+     * one product and hour at a time.
+     */
+    void streamViews(Instant since, ViewSink sink);
+
+    interface ViewSink
+    {
+        void accept(int productId, Instant hour, long views);
+    }
+}
@@ -0,0 +1,100 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Best sellers over sliding windows of up to a day: the products most often
+ * added to a cart, and the products ordered in the largest quantities.
+ *
+ * Both are {@link HeavyHitters} of five-minute buckets, so memory is fixed at
+ * {@link #BUCKETS} times {@link #CAPACITY} counters each however large the
+ * catalog grows. Cart additions are counted as they happen. Orders are read
+ * from the order tables every refresh, by order id above the last one seen,
+ * and are counted at the time they were placed.
+ */
+@Component
+public class BestsellerTracker
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BestsellerTracker.class);
+
+    static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final int BUCKETS = 288;
+    static final int CAPACITY = 256;
+    public static final long MAX_WINDOW_MILLIS = BUCKET_MILLIS * BUCKETS;
+    // how long a ranking is reused before the buckets are added up again
+    private static final long RANKING_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final OrderDao orderDao;
+    private final LongSupplier clock;
+    private final HeavyHitters cartAdditions = new HeavyHitters(BUCKET_MILLIS, BUCKETS, CAPACITY, RANKING_MILLIS);
+    private final HeavyHitters unitsOrdered = new HeavyHitters(BUCKET_MILLIS, BUCKETS, CAPACITY, RANKING_MILLIS);
+    // only used by the refresh, which never runs concurrently with itself
+    private int lastOrderId;
+
+    @Autowired
+    public BestsellerTracker(OrderDao orderDao)
+    {
+        this(orderDao, System::currentTimeMillis);
+    }
+
+    BestsellerTracker(OrderDao orderDao, LongSupplier clock)
+    {
+        this.orderDao = orderDao;
+        this.clock = clock;
+    }
+
+    public void cartItemAdded(int productId)
+    {
+        cartAdditions.add(productId, 1, clock.getAsLong());
+    }
+
+    /**
+     * Counts the orders placed since the last refresh, or the orders of the
+     * last {@link #MAX_WINDOW_MILLIS} the first time.
+     */
+    @Scheduled(fixedDelayString = "${orders.bestsellers.refresh-ms:60000}")
+    public void refresh()
+    {
+        try
+        {
+            Instant since = Instant.ofEpochMilli(clock.getAsLong() - MAX_WINDOW_MILLIS);
+            orderDao.streamLineItems(lastOrderId, since, (orderId, placedAt, productId, quantity) -> {
+                unitsOrdered.add(productId, quantity, placedAt.toEpochMilli());
+                lastOrderId = Math.max(lastOrderId, orderId);
+            });
+        }
+        catch (RuntimeException e)
+        {
+            // the counts so far keep being served; the next refresh carries on after the last order read
+            LOG.warn("Unable to refresh the best sellers", e);
+        }
+    }
+
+    /**
+     * Up to {@code limit} products most often added to a cart in the last
+     * {@code windowMillis}, counted in whole buckets.
+     */
+    public List<Integer> mostAddedToCart(long windowMillis, int limit)
+    {
+        return cartAdditions.top(windowMillis, limit, clock.getAsLong());
+    }
+
+    /**
+     * Up to {@code limit} products ordered in the largest quantities in the
+     * last {@code windowMillis}, counted in whole buckets.
+     */
+    public List<Integer> mostOrdered(long windowMillis, int limit)
+    {
+        return unitsOrdered.top(windowMillis, limit, clock.getAsLong());
+    }
+}
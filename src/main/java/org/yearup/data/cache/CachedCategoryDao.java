@@ -0,0 +1,239 @@
+package org.yearup.data.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.CategoryTree;
+import org.yearup.data.mysql.MySqlCategoryDao;
+import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CategoryDao that reads through to MySQL and remembers the answers, by id
+ * and by case-folded name, including the lookups that found nothing, so
+ * repeated requests for a missing category do not reach the database either.
+ * The hierarchy is kept as a {@link CategoryTree} built from the full list,
+ * so children, breadcrumbs and subtrees are answered without a query.
+ *
+ * Every write through this DAO drops everything it remembers. Entries live
+ * in a {@link Directory} that is replaced after the write has gone to the
+ * database, so a read that raced with the write can only fill the directory
+ * that was dropped, never the new one. The {@link CatalogVersion} is bumped
+ * only after that, so a response tagged with the new version can only have
+ * been read from the new directory.
+ */
+@Component
+@Primary
+public class CachedCategoryDao implements CategoryDao
+{
+    // lookups remembered per map; past this, e.g. when someone walks the id space, answers are no longer kept
+    static final int MAX_ENTRIES = 10_000;
+
+    private final CategoryDao delegate;
+    private final CatalogVersion catalogVersion;
+    private volatile Directory directory = new Directory();
+
+    @Autowired
+    public CachedCategoryDao(MySqlCategoryDao delegate, CatalogVersion catalogVersion)
+    {
+        this((CategoryDao) delegate, catalogVersion);
+    }
+
+    CachedCategoryDao(CategoryDao delegate, CatalogVersion catalogVersion)
+    {
+        this.delegate = delegate;
+        this.catalogVersion = catalogVersion;
+    }
+
+    @Override
+    public List<Category> getAllCategories(Integer categoryId, String name)
+    {
+        Directory current = directory;
+        if (categoryId != null)
+        {
+            Category category = getById(current, categoryId);
+            return category != null && (name == null || fold(name).equals(fold(category.getName())))
+                   ? List.of(category)
+                   : List.of();
+        }
+        if (name != null)
+        {
+            String key = fold(name);
+            List<Category> categories = current.byName.get(key);
+            if (categories == null)
+            {
+                categories = List.copyOf(delegate.getAllCategories(null, name));
+                remember(current.byName, key, categories);
+            }
+            return categories;
+        }
+        return getAllCategories(current);
+    }
+
+    @Override
+    public Category getById(int id)
+    {
+        return getById(directory, id);
+    }
+
+    @Override
+    public Category create(Category category)
+    {
+        Category created;
+        try
+        {
+            created = delegate.create(category);
+        }
+        finally
+        {
+            directory = new Directory();
+        }
+        if (created != null)
+        {
+            catalogVersion.bump();
+        }
+        return created;
+    }
+
+    @Override
+    public void updateCategory(int categoryId, Category category)
+    {
+        try
+        {
+            delegate.updateCategory(categoryId, category);
+        }
+        finally
+        {
+            directory = new Directory();
+        }
+        catalogVersion.bump();
+    }
+
+    @Override
+    public void moveCategory(int categoryId, Integer parentCategoryId)
+    {
+        try
+        {
+            delegate.moveCategory(categoryId, parentCategoryId);
+        }
+        finally
+        {
+            directory = new Directory();
+        }
+        catalogVersion.bump();
+    }
+
+    @Override
+    public boolean deleteCategory(int categoryId)
+    {
+        boolean deleted;
+        try
+        {
+            deleted = delegate.deleteCategory(categoryId);
+        }
+        finally
+        {
+            directory = new Directory();
+        }
+        if (deleted)
+        {
+            catalogVersion.bump();
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Category> getChildren(Integer parentCategoryId)
+    {
+        return tree().children(parentCategoryId);
+    }
+
+    @Override
+    public List<Category> getBreadcrumbs(int categoryId)
+    {
+        return tree().breadcrumbs(categoryId);
+    }
+
+    @Override
+    public List<Integer> getSubtreeIds(int categoryId)
+    {
+        return tree().subtreeIds(categoryId);
+    }
+
+    @Override
+    public List<CategoryNode> getTree()
+    {
+        return tree().roots();
+    }
+
+    private List<Category> getAllCategories(Directory current)
+    {
+        List<Category> all = current.all;
+        if (all == null)
+        {
+            all = List.copyOf(delegate.getAllCategories(null, null));
+            for (Category category : all)
+            {
+                remember(current.byId, category.getCategoryId(), Optional.of(category));
+            }
+            current.all = all;
+        }
+        return all;
+    }
+
+    private CategoryTree tree()
+    {
+        Directory current = directory;
+        CategoryTree tree = current.tree;
+        if (tree == null)
+        {
+            // built at most once per write, from the same full list getAllCategories serves
+            tree = CategoryTree.of(getAllCategories(current));
+            current.tree = tree;
+        }
+        return tree;
+    }
+
+    private Category getById(Directory current, int id)
+    {
+        Optional<Category> category = current.byId.get(id);
+        if (category == null)
+        {
+            // read outside the map, so a slow query does not hold up lookups of other ids
+            category = Optional.ofNullable(delegate.getById(id));
+            remember(current.byId, id, category);
+        }
+        return category.orElse(null);
+    }
+
+    private static <K, V> void remember(Map<K, V> entries, K key, V value)
+    {
+        if (entries.size() < MAX_ENTRIES)
+        {
+            entries.putIfAbsent(key, value);
+        }
+    }
+
+    // close to the comparison MySQL's case-insensitive collation makes when the name is matched in SQL
+    private static String fold(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Directory
+    {
+        // Optional.empty() and the empty list are remembered misses
+        private final Map<Integer, Optional<Category>> byId = new ConcurrentHashMap<>();
+        private final Map<String, List<Category>> byName = new ConcurrentHashMap<>();
+        private volatile List<Category> all;
+        private volatile CategoryTree tree;
+    }
+}
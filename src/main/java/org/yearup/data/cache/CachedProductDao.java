@@ -0,0 +1,467 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductIndex;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ProductBulkChange;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductImportReport;
+import org.yearup.models.ProductImportRow;
+import org.yearup.models.ProductPage;
+import org.yearup.models.ProductSuggestion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ProductDao that answers every read from an in-memory {@link CatalogSnapshot}
+ * and writes through to MySQL. It is also the {@link ProductIndex}, for the
+ * queries only the in-memory indexes can answer.
+ *
+ * The snapshot is loaded once from the database and then replaced atomically
+ * after each successful write, so searches never touch a connection. Every
+ * change is also passed on to the registered {@link ProductChangeListener}s,
+ * which keep the secondary indexes (such as full-text search) current.
+ *
+ * Product records are kept off-heap in a {@link MappedProductStore}. When
+ * {@code catalog.store.path} is set the store is a file that outlives the
+ * process, and a restart reopens it, so the catalog is served without waiting
+ * for MySQL. Once the application is ready the catalog is reloaded from
+ * MySQL while reads are still answered from the reopened one, which picks up
+ * whatever was written to the products table while the application was
+ * down; the listeners receive it as a reload over the reopened catalog.
+ */
+@Component
+@Primary
+public class CachedProductDao implements ProductDao, ProductIndex
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CachedProductDao.class);
+    private static final int DELETED_SLACK = 4;
+
+    private final MySqlProductDao delegate;
+    private final CatalogVersion catalogVersion;
+    private final ProductTextIndex textIndex;
+    private final ProductSuggestIndex suggestIndex;
+    private final ProductTrigramIndex trigramIndex;
+    private final ProductFilterIndex filterIndex;
+    private final ProductRelatedIndex relatedIndex;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private final List<ProductChangeListener> listeners;
+    private final Path storePath;
+    private final Object writeLock = new Object();
+    private volatile CatalogSnapshot snapshot;
+    // set while the snapshot is the store reopened from an earlier run; guarded by the write lock
+    private boolean restored;
+
+    public CachedProductDao(MySqlProductDao delegate, CatalogVersion catalogVersion, ProductTextIndex textIndex,
+                            ProductSuggestIndex suggestIndex, ProductTrigramIndex trigramIndex,
+                            ProductFilterIndex filterIndex, ProductRelatedIndex relatedIndex,
+                            CoPurchaseIndex coPurchaseIndex, List<ProductChangeListener> listeners,
+                            @Value("${catalog.store.path:}") String storePath)
+    {
+        this.delegate = delegate;
+        this.catalogVersion = catalogVersion;
+        this.textIndex = textIndex;
+        this.suggestIndex = suggestIndex;
+        this.trigramIndex = trigramIndex;
+        this.filterIndex = filterIndex;
+        this.relatedIndex = relatedIndex;
+        this.coPurchaseIndex = coPurchaseIndex;
+        this.listeners = listeners;
+        this.storePath = storePath == null || storePath.isBlank() ? null : Path.of(storePath);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp()
+    {
+        try
+        {
+            snapshot();
+        }
+        catch (RuntimeException e)
+        {
+            // the catalog is loaded on first use instead
+            LOG.warn("Unable to preload the product catalog", e);
+            return;
+        }
+
+        try
+        {
+            synchronized (writeLock)
+            {
+                if (restored)
+                {
+                    reload();
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // the reopened catalog stays in use until the next reload
+            LOG.warn("Unable to reload the reopened product catalog from MySQL", e);
+        }
+    }
+
+    @Override
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        return snapshot().search(categoryId, minPrice, maxPrice, color);
+    }
+
+    @Override
+    public ProductPage search(ProductQuery query)
+    {
+        CatalogSnapshot current = snapshot();
+        return current.page(query, query.hasText() ? textMatches(query) : null, selection(query));
+    }
+
+    @Override
+    public ProductFacets facets(ProductQuery query)
+    {
+        CatalogSnapshot current = snapshot();
+        return current.facets(query, query.hasText() ? textMatches(query) : null, selection(query));
+    }
+
+    private FilterSelection selection(ProductQuery query)
+    {
+        return query.hasSelections() ? filterIndex.select(query) : FilterSelection.NONE;
+    }
+
+    private TextMatches textMatches(ProductQuery query)
+    {
+        String text = query.getText();
+        if (query.isFuzzy())
+        {
+            text = trigramIndex.correct(text, textIndex::containsTerm);
+        }
+        return textIndex.search(text);
+    }
+
+    @Override
+    public List<ProductSuggestion> suggest(String prefix, int limit)
+    {
+        // the index is filled by the catalog load
+        snapshot();
+        return suggestIndex.suggest(prefix, limit);
+    }
+
+    @Override
+    public List<Product> listByCategoryId(Integer categoryId)
+    {
+        return snapshot().listByCategoryId(categoryId);
+    }
+
+    @Override
+    public Product getById(int productId)
+    {
+        return snapshot().getById(productId);
+    }
+
+    @Override
+    public List<Product> getByIds(Collection<Integer> productIds)
+    {
+        CatalogSnapshot current = snapshot();
+        List<Product> products = new ArrayList<>(productIds.size());
+        for (int productId : new LinkedHashSet<>(productIds))
+        {
+            Product product = current.getById(productId);
+            if (product != null)
+            {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public List<Product> getRelated(int productId, int limit)
+    {
+        // the index is filled by the catalog load, and its entries are only ids
+        CatalogSnapshot current = snapshot();
+        List<Product> products = new ArrayList<>();
+        for (int relatedId : relatedIndex.related(productId, limit))
+        {
+            Product product = current.getById(relatedId);
+            if (product != null)
+            {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public List<Product> getBoughtTogether(Collection<Integer> productIds, int limit)
+    {
+        // ask for a few extra in case some of them have been deleted since they were ordered
+        List<Integer> companions = coPurchaseIndex.companions(productIds, limit + DELETED_SLACK);
+        List<Product> products = getByIds(companions);
+        return products.size() > limit ? products.subList(0, limit) : products;
+    }
+
+    @Override
+    public Product createProduct(Product product)
+    {
+        synchronized (writeLock)
+        {
+            Product created = delegate.createProduct(product);
+            if (created != null)
+            {
+                saved(created);
+            }
+            catalogVersion.bump();
+            return created;
+        }
+    }
+
+    @Override
+    public void updateProduct(int productId, Product product)
+    {
+        synchronized (writeLock)
+        {
+            delegate.updateProduct(productId, product);
+
+            // re-read the row so the cache holds exactly what MySQL stored
+            Product updated = delegate.getById(productId);
+            if (updated != null)
+            {
+                saved(updated);
+            }
+            else
+            {
+                deleted(productId);
+            }
+            catalogVersion.bump();
+        }
+    }
+
+    @Override
+    public void deleteProduct(int productId)
+    {
+        synchronized (writeLock)
+        {
+            delegate.deleteProduct(productId);
+            deleted(productId);
+            catalogVersion.bump();
+        }
+    }
+
+    @Override
+    public int updateProducts(ProductBulkChange change)
+    {
+        synchronized (writeLock)
+        {
+            int affected = delegate.updateProducts(change);
+            if (affected > 0)
+            {
+                snapshot = load();
+                catalogVersion.bump();
+            }
+            return affected;
+        }
+    }
+
+    @Override
+    public int deleteProducts(ProductBulkChange filter)
+    {
+        synchronized (writeLock)
+        {
+            int affected = delegate.deleteProducts(filter);
+            if (affected > 0)
+            {
+                snapshot = load();
+                catalogVersion.bump();
+            }
+            return affected;
+        }
+    }
+
+    @Override
+    public ProductImportReport importProducts(Iterator<ProductImportRow> rows)
+    {
+        synchronized (writeLock)
+        {
+            try
+            {
+                return delegate.importProducts(rows);
+            }
+            finally
+            {
+                // rebuild once for the whole feed instead of once per row; committed chunks
+                // must show up even when the import stopped part way through
+                snapshot = load();
+                catalogVersion.bump();
+            }
+        }
+    }
+
+    @Override
+    public void streamProducts(ProductQuery query, Consumer<Product> sink)
+    {
+        if (query.hasText() || query.hasSelections())
+        {
+            throw new IllegalArgumentException("Only category, price and color filters can be streamed");
+        }
+        // the snapshot is already in memory; iterating it holds no connection while a slow client reads
+        snapshot().forEach(query.getCategoryId(), query.getMinPrice(), query.getMaxPrice(), query.getColor(), sink);
+    }
+
+    /**
+     * Discards the current snapshot and reloads the catalog from MySQL.
+     */
+    public void reload()
+    {
+        synchronized (writeLock)
+        {
+            snapshot = load();
+            catalogVersion.bump();
+        }
+    }
+
+    // callers hold the write lock
+    private void saved(Product product)
+    {
+        CatalogSnapshot current = snapshot();
+        Product previous = current.getById(product.getProductId());
+        snapshot = current.with(product);
+        notifyListeners(listener -> listener.productSaved(product, previous));
+    }
+
+    // callers hold the write lock
+    private void deleted(int productId)
+    {
+        CatalogSnapshot current = snapshot();
+        Product previous = current.getById(productId);
+        snapshot = current.without(productId);
+        notifyListeners(listener -> listener.productDeleted(productId, previous));
+    }
+
+    private CatalogSnapshot snapshot()
+    {
+        CatalogSnapshot current = snapshot;
+        if (current == null)
+        {
+            synchronized (writeLock)
+            {
+                current = snapshot;
+                if (current == null)
+                {
+                    current = restore();
+                    restored = current != null;
+                    if (current == null)
+                    {
+                        current = load();
+                    }
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // callers hold the write lock; null when there is no store from an earlier run to reopen
+    private CatalogSnapshot restore()
+    {
+        if (storePath == null || !Files.exists(storePath))
+        {
+            return null;
+        }
+
+        try
+        {
+            CatalogSnapshot restored = CatalogSnapshot.of(MappedProductStore.open(storePath).compact());
+            notifyListeners(listener -> listener.catalogLoaded(restored.products()));
+            return restored;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOG.warn("Unable to reopen the product store at {}, reloading from MySQL", storePath, e);
+            return null;
+        }
+    }
+
+    // callers hold the write lock
+    private CatalogSnapshot load()
+    {
+        MappedProductStore store = newStore();
+        try
+        {
+            // rows go straight from the streaming result set into the store, never into a list
+            delegate.streamProducts(new ProductQuery(), store::append);
+            if (store.isPersistent())
+            {
+                store.publish();
+            }
+        }
+        catch (IOException e)
+        {
+            store.close();
+            throw new UncheckedIOException(e);
+        }
+        catch (RuntimeException e)
+        {
+            store.close();
+            throw e;
+        }
+
+        CatalogSnapshot loaded = CatalogSnapshot.of(store);
+        restored = false;
+        CatalogSnapshot previous = snapshot;
+        if (previous == null)
+        {
+            notifyListeners(listener -> listener.catalogLoaded(loaded.products()));
+            return loaded;
+        }
+        // readers of the previous snapshot keep its mapping; only appending stops
+        previous.store().close();
+        notifyListeners(listener -> listener.catalogReloaded(previous, loaded));
+        return loaded;
+    }
+
+    private MappedProductStore newStore()
+    {
+        try
+        {
+            return storePath == null ? MappedProductStore.temporary() : MappedProductStore.create(storePath);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the database write has already happened, so one failing listener must not undo it for the others
+    private void notifyListeners(Consumer<ProductChangeListener> change)
+    {
+        for (ProductChangeListener listener : listeners)
+        {
+            try
+            {
+                change.accept(listener);
+            }
+            catch (RuntimeException e)
+            {
+                LOG.error("Product change listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package org.yearup.data.cache;
+
+import org.yearup.data.ProductQuery;
+import org.yearup.models.PriceBucket;
+import org.yearup.models.Product;
+import org.yearup.models.ProductFacets;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact, column-oriented form of the cached products, one array slot per
+ * snapshot ordinal.
+ *
+ * Only what filtering and sorting read stays on the heap: the product id,
+ * the price as whole cents, the category and color as small dictionary codes,
+ * and the offset of the full record in the {@link MappedProductStore}. Names,
+ * descriptions and the other text fields are decoded from the store when they
+ * are needed, and a row becomes a {@link Product} again only when the DAO
+ * returns it.
+ *
+ * The dictionary is shared by every snapshot that descends from the same
+ * load and is copied only when a write brings a category or color it has not
+ * seen, so a write copies the primitive arrays and nothing else.
+ */
+final class CatalogColumns
+{
+    // lower bounds of the price buckets, in cents; the last bucket is open-ended
+    private static final long[] PRICE_BUCKET_FLOORS = {0, 2500, 5000, 10000, 25000, 50000, 100000};
+
+    /** The color code of a product without a color. */
+    static final int NO_CODE = -1;
+    /** The code of a filter value that is not in the dictionary, which no row has. */
+    static final int UNKNOWN_CODE = -2;
+
+    private final long[] offsets;
+    private final int[] ids;
+    private final long[] priceCents;
+    private final int[] categoryCodes;
+    private final int[] colorCodes;
+    private Dictionary dictionary;
+
+    CatalogColumns(int size)
+    {
+        this(new long[size], new int[size], new long[size], new int[size], new int[size], Dictionary.EMPTY);
+    }
+
+    private CatalogColumns(long[] offsets, int[] ids, long[] priceCents, int[] categoryCodes, int[] colorCodes,
+                           Dictionary dictionary)
+    {
+        this.offsets = offsets;
+        this.ids = ids;
+        this.priceCents = priceCents;
+        this.categoryCodes = categoryCodes;
+        this.colorCodes = colorCodes;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Encodes the product into the row. Only called while the columns are
+     * being built, before any reader can see them.
+     */
+    void set(int ordinal, long offset, Product product)
+    {
+        dictionary = dictionary.with(product.getCategoryId(), product.getColor());
+        offsets[ordinal] = offset;
+        ids[ordinal] = product.getProductId();
+        priceCents[ordinal] = cents(product.getPrice(), RoundingMode.HALF_UP);
+        categoryCodes[ordinal] = dictionary.categoryCode(product.getCategoryId());
+        colorCodes[ordinal] = dictionary.colorCode(product.getColor());
+    }
+
+    /**
+     * A copy with the given number of rows removed at the position and room
+     * for new ones there.
+     */
+    CatalogColumns splice(int at, int removed, int inserted)
+    {
+        return new CatalogColumns(splice(offsets, at, removed, inserted), splice(ids, at, removed, inserted),
+                                  splice(priceCents, at, removed, inserted), splice(categoryCodes, at, removed, inserted),
+                                  splice(colorCodes, at, removed, inserted), dictionary);
+    }
+
+    CatalogColumns truncate(int size)
+    {
+        return size == ids.length ? this : splice(size, ids.length - size, 0);
+    }
+
+    int size()
+    {
+        return ids.length;
+    }
+
+    /**
+     * Record offsets in ordinal order. The array is not copied; do not modify it.
+     */
+    long[] offsets()
+    {
+        return offsets;
+    }
+
+    long offset(int ordinal)
+    {
+        return offsets[ordinal];
+    }
+
+    int productId(int ordinal)
+    {
+        return ids[ordinal];
+    }
+
+    long priceCents(int ordinal)
+    {
+        return priceCents[ordinal];
+    }
+
+    int categoryCode(int ordinal)
+    {
+        return categoryCodes[ordinal];
+    }
+
+    int colorCode(int ordinal)
+    {
+        return colorCodes[ordinal];
+    }
+
+    int categoryCount()
+    {
+        return dictionary.categoryValues.length;
+    }
+
+    int colorCount()
+    {
+        return dictionary.colorValues.length;
+    }
+
+    /**
+     * The code of a category filter, or {@link #UNKNOWN_CODE}.
+     */
+    int categoryCodeOf(int categoryId)
+    {
+        return dictionary.categoryCodes.getOrDefault(categoryId, UNKNOWN_CODE);
+    }
+
+    /**
+     * The code of a color filter, matched case-insensitively, or {@link #UNKNOWN_CODE}.
+     */
+    int colorCodeOf(String color)
+    {
+        return dictionary.colorCodes.getOrDefault(CatalogSnapshot.colorKey(color), UNKNOWN_CODE);
+    }
+
+    /**
+     * Counts every facet in a single pass over the columns. A row counts
+     * towards a facet when it passes all filters except that facet's own.
+     *
+     * @param restrictTo          ordinals every counted row must be in (text matches, flags), or null
+     * @param categorySelection   ordinals in the selected categories, or null when none are selected
+     * @param colorSelection      ordinals in the selected colors, or null when none are selected
+     */
+    ProductFacets facets(ProductQuery query, BitSet restrictTo, BitSet categorySelection, BitSet colorSelection)
+    {
+        boolean hasCategory = query.getCategoryId() != null;
+        int categoryFilter = hasCategory ? categoryCodeOf(query.getCategoryId()) : NO_CODE;
+        boolean hasColor = query.getColor() != null && !query.getColor().isEmpty();
+        int colorFilter = hasColor ? colorCodeOf(query.getColor()) : NO_CODE;
+        long minCents = query.getMinPrice() == null ? Long.MIN_VALUE : cents(query.getMinPrice(), RoundingMode.CEILING);
+        long maxCents = query.getMaxPrice() == null ? Long.MAX_VALUE : cents(query.getMaxPrice(), RoundingMode.FLOOR);
+
+        Dictionary dictionary = this.dictionary;
+        int[] categoryCounts = new int[dictionary.categoryValues.length];
+        int[] colorCounts = new int[dictionary.colorValues.length];
+        int[] priceCounts = new int[PRICE_BUCKET_FLOORS.length];
+        int total = 0;
+
+        for (int i = 0; i < priceCents.length; i++)
+        {
+            if (restrictTo != null && !restrictTo.get(i)) continue;
+
+            boolean categoryOk = (!hasCategory || categoryCodes[i] == categoryFilter)
+                    && (categorySelection == null || categorySelection.get(i));
+            boolean colorOk = (!hasColor || colorCodes[i] == colorFilter)
+                    && (colorSelection == null || colorSelection.get(i));
+            boolean priceOk = priceCents[i] >= minCents && priceCents[i] <= maxCents;
+
+            if (colorOk && priceOk) categoryCounts[categoryCodes[i]]++;
+            if (categoryOk && priceOk && colorCodes[i] != NO_CODE) colorCounts[colorCodes[i]]++;
+            if (categoryOk && colorOk) priceCounts[priceBucket(priceCents[i])]++;
+            if (categoryOk && colorOk && priceOk) total++;
+        }
+
+        ProductFacets facets = new ProductFacets();
+        facets.setTotal(total);
+        for (int code = 0; code < categoryCounts.length; code++)
+        {
+            if (categoryCounts[code] > 0) facets.getCategories().put(dictionary.categoryValues[code], categoryCounts[code]);
+        }
+        for (int code = 0; code < colorCounts.length; code++)
+        {
+            if (colorCounts[code] > 0) facets.getColors().put(dictionary.colorValues[code], colorCounts[code]);
+        }
+        for (int bucket = 0; bucket < priceCounts.length; bucket++)
+        {
+            BigDecimal min = BigDecimal.valueOf(PRICE_BUCKET_FLOORS[bucket], 2);
+            BigDecimal max = bucket + 1 < PRICE_BUCKET_FLOORS.length ? BigDecimal.valueOf(PRICE_BUCKET_FLOORS[bucket + 1], 2) : null;
+            facets.getPrices().add(new PriceBucket(min, max, priceCounts[bucket]));
+        }
+        return facets;
+    }
+
+    // prices are DECIMAL(10,2), so whole cents hold them exactly
+    static long cents(BigDecimal amount, RoundingMode rounding)
+    {
+        return amount.movePointRight(2).setScale(0, rounding).longValue();
+    }
+
+    private static int priceBucket(long cents)
+    {
+        int bucket = 0;
+        while (bucket + 1 < PRICE_BUCKET_FLOORS.length && cents >= PRICE_BUCKET_FLOORS[bucket + 1])
+        {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static long[] splice(long[] array, int at, int removed, int inserted)
+    {
+        long[] copy = new long[array.length - removed + inserted];
+        System.arraycopy(array, 0, copy, 0, at);
+        System.arraycopy(array, at + removed, copy, at + inserted, array.length - at - removed);
+        return copy;
+    }
+
+    private static int[] splice(int[] array, int at, int removed, int inserted)
+    {
+        int[] copy = new int[array.length - removed + inserted];
+        System.arraycopy(array, 0, copy, 0, at);
+        System.arraycopy(array, at + removed, copy, at + inserted, array.length - at - removed);
+        return copy;
+    }
+
+    // immutable; codes are handed out in the order values are first seen and never reused
+    private static final class Dictionary
+    {
+        private static final Dictionary EMPTY = new Dictionary(new int[0], new HashMap<>(), new String[0], new HashMap<>());
+
+        private final int[] categoryValues;
+        private final Map<Integer, Integer> categoryCodes;
+        // the first spelling seen for a color is the one shown to clients
+        private final String[] colorValues;
+        private final Map<String, Integer> colorCodes;
+
+        private Dictionary(int[] categoryValues, Map<Integer, Integer> categoryCodes,
+                           String[] colorValues, Map<String, Integer> colorCodes)
+        {
+            this.categoryValues = categoryValues;
+            this.categoryCodes = categoryCodes;
+            this.colorValues = colorValues;
+            this.colorCodes = colorCodes;
+        }
+
+        private int categoryCode(int categoryId)
+        {
+            return categoryCodes.get(categoryId);
+        }
+
+        private int colorCode(String color)
+        {
+            String key = CatalogSnapshot.colorKey(color);
+            return key.isEmpty() ? NO_CODE : colorCodes.get(key);
+        }
+
+        // this dictionary when it already has both values, otherwise a copy that adds them
+        private Dictionary with(int categoryId, String color)
+        {
+            String colorKey = CatalogSnapshot.colorKey(color);
+            boolean newCategory = !categoryCodes.containsKey(categoryId);
+            boolean newColor = !colorKey.isEmpty() && !colorCodes.containsKey(colorKey);
+            if (!newCategory && !newColor)
+            {
+                return this;
+            }
+
+            int[] categories = categoryValues;
+            Map<Integer, Integer> categoryMap = categoryCodes;
+            if (newCategory)
+            {
+                categories = Arrays.copyOf(categoryValues, categoryValues.length + 1);
+                categories[categoryValues.length] = categoryId;
+                categoryMap = new HashMap<>(categoryCodes);
+                categoryMap.put(categoryId, categoryValues.length);
+            }
+
+            String[] colors = colorValues;
+            Map<String, Integer> colorMap = colorCodes;
+            if (newColor)
+            {
+                colors = Arrays.copyOf(colorValues, colorValues.length + 1);
+                colors[colorValues.length] = color.trim();
+                colorMap = new HashMap<>(colorCodes);
+                colorMap.put(colorKey, colorValues.length);
+            }
+            return new Dictionary(categories, categoryMap, colors, colorMap);
+        }
+    }
+}
@@ -0,0 +1,759 @@
+package org.yearup.data.cache;
+
+import org.yearup.data.PageCursor;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
+import org.yearup.models.Product;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductPage;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Immutable, indexed view of the product catalog.
+ *
+ * Products are kept in product id order, and every index stores "ordinals"
+ * (positions in that order). The full product records live off-heap in a
+ * {@link MappedProductStore}; on the heap the snapshot only holds the
+ * {@link CatalogColumns} its filters and sorts read plus the index arrays,
+ * and decodes a {@link Product} when one is returned. A snapshot is never modified after it
+ * is built; writes append to the store and produce a new snapshot through
+ * {@link #with(Product)} and {@link #without(int)}, so readers can use one
+ * without any locking.
+ */
+final class CatalogSnapshot
+{
+    private static final int[] NO_ORDINALS = new int[0];
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER);
+
+    private final MappedProductStore store;
+    private final CatalogColumns columns;
+    // ordinals per category and color code
+    private final int[][] categoryIndex;
+    private final int[][] colorIndex;
+    private final int[] idOrder;
+    private final int[] priceOrder;
+    private final int[] priceRank;
+    private final int[] nameOrder;
+    private final int[] nameRank;
+
+    private CatalogSnapshot(MappedProductStore store, CatalogColumns columns, int[] priceOrder, int[] nameOrder)
+    {
+        this.store = store;
+        this.columns = columns;
+        int size = columns.size();
+        this.categoryIndex = buildIndex(columns.categoryCount(), size, columns::categoryCode);
+        this.colorIndex = buildIndex(columns.colorCount(), size, columns::colorCode);
+
+        this.idOrder = new int[size];
+        for (int i = 0; i < idOrder.length; i++)
+        {
+            idOrder[i] = i;
+        }
+
+        this.priceOrder = priceOrder;
+        this.priceRank = ranks(priceOrder);
+        this.nameOrder = nameOrder;
+        this.nameRank = ranks(nameOrder);
+    }
+
+    /**
+     * Builds a snapshot of the given products in a store of its own.
+     */
+    static CatalogSnapshot of(Collection<Product> products)
+    {
+        MappedProductStore store = MappedProductStore.temporary();
+        products.stream()
+                .sorted(Comparator.comparingInt(Product::getProductId))
+                .forEach(store::append);
+        return of(store);
+    }
+
+    /**
+     * Builds a snapshot of the latest record of every product in the store.
+     */
+    static CatalogSnapshot of(MappedProductStore store)
+    {
+        long[] offsets = store.liveOffsets();
+        CatalogColumns columns = new CatalogColumns(offsets.length);
+        // names are only kept while sorting; afterwards they are read from the store
+        String[] names = new String[offsets.length];
+        int size = 0;
+        for (long offset : offsets)
+        {
+            Product product = store.read(offset);
+            if (product.getPrice() != null)
+            {
+                columns.set(size, offset, product);
+                names[size++] = product.getName();
+            }
+        }
+
+        CatalogColumns built = columns.truncate(size);
+        // ties keep id order because the sorts are stable
+        int[] priceOrder = sortedOrdinals(size, (a, b) -> Long.compare(built.priceCents(a), built.priceCents(b)));
+        int[] nameOrder = sortedOrdinals(size, (a, b) -> NAME_ORDER.compare(names[a], names[b]));
+        return new CatalogSnapshot(store, built, priceOrder, nameOrder);
+    }
+
+    MappedProductStore store()
+    {
+        return store;
+    }
+
+    /**
+     * The products of this snapshot in product id order, decoded as they are iterated.
+     */
+    Collection<Product> products()
+    {
+        return store.products(columns.offsets());
+    }
+
+    /**
+     * Returns a new snapshot in which the given product has been added, or
+     * replaces the product with the same id. The product is appended to the
+     * store, which leaves the records of this snapshot untouched, and only
+     * the changed row is placed into the sort orders.
+     */
+    CatalogSnapshot with(Product product)
+    {
+        if (product.getPrice() == null)
+        {
+            // like a load, which leaves out products without a price
+            return without(product.getProductId());
+        }
+
+        long offset = store.append(product);
+        int ordinal = ordinalOf(product.getProductId());
+        boolean replaced = ordinal >= 0;
+        if (!replaced)
+        {
+            ordinal = -(ordinal + 1);
+        }
+
+        CatalogColumns copy = columns.splice(ordinal, replaced ? 1 : 0, 1);
+        copy.set(ordinal, offset, product);
+        int[] prices = reorder(priceOrder, ordinal, replaced, true,
+                               (a, b) -> Long.compare(copy.priceCents(a), copy.priceCents(b)));
+        int[] names = reorder(nameOrder, ordinal, replaced, true,
+                              (a, b) -> NAME_ORDER.compare(store.readName(copy.offset(a)), store.readName(copy.offset(b))));
+        return new CatalogSnapshot(store, copy, prices, names);
+    }
+
+    /**
+     * Returns a new snapshot without the given product, or this snapshot if
+     * the product is not part of it.
+     */
+    CatalogSnapshot without(int productId)
+    {
+        int ordinal = ordinalOf(productId);
+        if (ordinal < 0)
+        {
+            return this;
+        }
+
+        store.appendDeleted(productId);
+        return new CatalogSnapshot(store, columns.splice(ordinal, 1, 0),
+                                   reorder(priceOrder, ordinal, true, false, null),
+                                   reorder(nameOrder, ordinal, true, false, null));
+    }
+
+    Product getById(int productId)
+    {
+        int ordinal = ordinalOf(productId);
+        return ordinal >= 0 ? product(ordinal) : null;
+    }
+
+    /**
+     * Hands every product that differs from the previous snapshot to the
+     * sink as (product, previous), with null for the snapshot it is missing
+     * from, in product id order. Both snapshots are walked in id order and
+     * their records are compared in the stores, so only the changes are
+     * decoded. Returns false without calling the sink when more than
+     * {@code limit} products differ.
+     */
+    boolean changesSince(CatalogSnapshot previous, int limit, BiConsumer<Product, Product> sink)
+    {
+        // ordinals of the changed products in this snapshot and in the previous one, -1 where one has none
+        int[] changed = new int[limit];
+        int[] before = new int[limit];
+        int count = 0;
+
+        int size = columns.size();
+        int previousSize = previous.columns.size();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < previousSize)
+        {
+            boolean added = j == previousSize || (i < size && columns.productId(i) < previous.columns.productId(j));
+            boolean removed = !added && (i == size || previous.columns.productId(j) < columns.productId(i));
+            int ordinal = removed ? -1 : i++;
+            int previousOrdinal = added ? -1 : j++;
+            if (!added && !removed
+                && store.sameRecord(columns.offset(ordinal), previous.store, previous.columns.offset(previousOrdinal)))
+            {
+                continue;
+            }
+            if (count == limit)
+            {
+                return false;
+            }
+            changed[count] = ordinal;
+            before[count] = previousOrdinal;
+            count++;
+        }
+
+        for (int k = 0; k < count; k++)
+        {
+            sink.accept(changed[k] < 0 ? null : product(changed[k]), before[k] < 0 ? null : previous.product(before[k]));
+        }
+        return true;
+    }
+
+    private Product product(int ordinal)
+    {
+        return store.read(columns.offset(ordinal));
+    }
+
+    List<Product> listByCategoryId(int categoryId)
+    {
+        return toProducts(ordinals(categoryIndex, columns.categoryCodeOf(categoryId)));
+    }
+
+    List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        int[] matches = match(categoryId, minPrice, maxPrice, color);
+        if (matches == null)
+        {
+            return toProducts(idOrder);
+        }
+        return toProducts(matches);
+    }
+
+    /**
+     * Passes the products matching the filters to the sink in product id
+     * order, without building a result list.
+     */
+    void forEach(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color, Consumer<Product> sink)
+    {
+        int[] matches = match(categoryId, minPrice, maxPrice, color);
+        if (matches == null)
+        {
+            for (long offset : columns.offsets())
+            {
+                sink.accept(store.read(offset));
+            }
+            return;
+        }
+        for (int ordinal : matches)
+        {
+            sink.accept(product(ordinal));
+        }
+    }
+
+    /**
+     * Returns one page of matching products. The page start is found by
+     * binary search on the cursor, so a deep page costs the same as the first.
+     */
+    ProductPage page(ProductQuery query)
+    {
+        return page(query, null, FilterSelection.NONE);
+    }
+
+    /**
+     * Returns one page of products that are in the text matches (when
+     * given), in the multi-select selection and pass the query filters.
+     */
+    ProductPage page(ProductQuery query, TextMatches text, FilterSelection selection)
+    {
+        int[] restrictTo = intersect(text == null ? null : ordinalsOf(text), ordinalsOf(selection.all()));
+        int[] matches = match(query.getCategoryId(), query.getMinPrice(), query.getMaxPrice(), query.getColor(), restrictTo);
+
+        if (query.getSort() == ProductSort.RELEVANCE)
+        {
+            return relevancePage(query, text, matches);
+        }
+
+        int[] ordered = inSortOrder(matches, query.getSort());
+
+        int from = query.getAfter() == null ? 0 : firstAfter(ordered, query.getAfter());
+        int to = query.getFetchSize() == null
+                ? ordered.length
+                : (int) Math.min((long) from + query.getFetchSize(), ordered.length);
+
+        List<Product> rows = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++)
+        {
+            rows.add(product(ordered[i]));
+        }
+        return query.toPage(rows);
+    }
+
+    /**
+     * Facet counts for the query filters, restricted to the text matches
+     * when given. The category and color selections are passed on separately
+     * so each facet can leave out its own.
+     */
+    ProductFacets facets(ProductQuery query, TextMatches text, FilterSelection selection)
+    {
+        int[] restrictTo = intersect(text == null ? null : ordinalsOf(text), ordinalsOf(selection.flags()));
+        return columns.facets(query, bits(restrictTo), bits(ordinalsOf(selection.categories())),
+                              bits(ordinalsOf(selection.colors())));
+    }
+
+    // text matches are already ranked; keep those that passed the filters and resume after the cursor
+    private ProductPage relevancePage(ProductQuery query, TextMatches text, int[] matches)
+    {
+        BitSet matched = new BitSet(columns.size());
+        for (int ordinal : matches)
+        {
+            matched.set(ordinal);
+        }
+
+        Integer fetchSize = query.getFetchSize();
+        int from = query.getAfter() == null ? 0 : firstAfter(text, query.getAfter());
+
+        List<Product> rows = new ArrayList<>();
+        Map<Integer, Float> scores = new HashMap<>();
+        for (int i = from; i < text.size() && (fetchSize == null || rows.size() < fetchSize); i++)
+        {
+            int ordinal = ordinalOf(text.productId(i));
+            if (ordinal >= 0 && matched.get(ordinal))
+            {
+                rows.add(product(ordinal));
+                scores.put(text.productId(i), text.score(i));
+            }
+        }
+        return query.toPage(rows, product -> Float.toString(scores.get(product.getProductId())));
+    }
+
+    // ordinals of the text matches that are in this snapshot, in product id order
+    private int[] ordinalsOf(TextMatches text)
+    {
+        int[] ordinals = new int[text.size()];
+        int count = 0;
+        for (int i = 0; i < text.size(); i++)
+        {
+            int ordinal = ordinalOf(text.productId(i));
+            if (ordinal >= 0)
+            {
+                ordinals[count++] = ordinal;
+            }
+        }
+        ordinals = Arrays.copyOf(ordinals, count);
+        Arrays.sort(ordinals);
+        return ordinals;
+    }
+
+    // ordinals of the given ascending product ids that are in this snapshot, or null for null;
+    // both lists are in id order, so one merge walk finds them all
+    private int[] ordinalsOf(int[] productIds)
+    {
+        if (productIds == null)
+        {
+            return null;
+        }
+
+        IntUnaryOperator ids = columns::productId;
+        int size = columns.size();
+        int[] ordinals = new int[productIds.length];
+        int count = 0;
+        int position = 0;
+        for (int productId : productIds)
+        {
+            position = seek(ids, position, size, productId);
+            if (position == size)
+            {
+                break;
+            }
+            if (columns.productId(position) == productId)
+            {
+                ordinals[count++] = position;
+            }
+        }
+        return Arrays.copyOf(ordinals, count);
+    }
+
+    private BitSet bits(int[] ordinals)
+    {
+        if (ordinals == null)
+        {
+            return null;
+        }
+        BitSet bits = new BitSet(columns.size());
+        for (int ordinal : ordinals)
+        {
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+
+    // intersection of two ascending ordinal lists where null means "no restriction"
+    private static int[] intersect(int[] a, int[] b)
+    {
+        if (a == null) return b;
+        if (b == null) return a;
+
+        // walk the shorter list and gallop through the longer one
+        int[] shorter = a.length <= b.length ? a : b;
+        int[] longer = shorter == a ? b : a;
+        IntUnaryOperator values = i -> longer[i];
+
+        int[] result = new int[shorter.length];
+        int count = 0;
+        int position = 0;
+        for (int value : shorter)
+        {
+            position = seek(values, position, longer.length, value);
+            if (position == longer.length)
+            {
+                break;
+            }
+            if (longer[position] == value)
+            {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * First position from {@code from} on whose value is at least the
+     * target, in values ascending up to {@code size}. The search gallops,
+     * doubling its step before it binary searches the last one, so seeking m
+     * ascending targets through n values costs O(m log(n/m)) in total.
+     */
+    private static int seek(IntUnaryOperator values, int from, int size, int target)
+    {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < size && values.applyAsInt(high) < target)
+        {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (values.applyAsInt(mid) < target) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private int[] match(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        return match(categoryId, minPrice, maxPrice, color, null);
+    }
+
+    // ordinals of the matching products in product id order, or null when no filter applies
+    private int[] match(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color, int[] restrictTo)
+    {
+        boolean hasColor = color != null && !color.isEmpty();
+        boolean hasPrice = minPrice != null || maxPrice != null;
+        int categoryCode = categoryId == null ? CatalogColumns.NO_CODE : columns.categoryCodeOf(categoryId);
+        int colorCode = hasColor ? columns.colorCodeOf(color) : CatalogColumns.NO_CODE;
+        long minCents = minPrice == null ? Long.MIN_VALUE : CatalogColumns.cents(minPrice, RoundingMode.CEILING);
+        long maxCents = maxPrice == null ? Long.MAX_VALUE : CatalogColumns.cents(maxPrice, RoundingMode.FLOOR);
+
+        // start from the narrowest index that applies, then check the remaining filters row by row
+        int[] candidates = restrictTo;
+        if (categoryId != null)
+        {
+            candidates = narrowest(candidates, ordinals(categoryIndex, categoryCode));
+        }
+        if (hasColor)
+        {
+            candidates = narrowest(candidates, ordinals(colorIndex, colorCode));
+        }
+        if (hasPrice && (candidates == null || candidates.length > priceUpperBound(maxCents) - priceLowerBound(minCents)))
+        {
+            candidates = priceRange(minCents, maxCents);
+        }
+        if (candidates == null)
+        {
+            return null;
+        }
+        // candidates are ascending too, so the restriction is merged in rather than searched per row
+        int[] allowed = candidates == restrictTo ? null : restrictTo;
+        IntUnaryOperator allowedAt = allowed == null ? null : i -> allowed[i];
+        int next = 0;
+
+        int[] results = new int[candidates.length];
+        int count = 0;
+        for (int ordinal : candidates)
+        {
+            if (allowed != null)
+            {
+                next = seek(allowedAt, next, allowed.length, ordinal);
+                if (next == allowed.length) break;
+                if (allowed[next] != ordinal) continue;
+            }
+            if (categoryId != null && columns.categoryCode(ordinal) != categoryCode) continue;
+            if (hasColor && columns.colorCode(ordinal) != colorCode) continue;
+            long cents = columns.priceCents(ordinal);
+            if (cents < minCents || cents > maxCents) continue;
+            results[count++] = ordinal;
+        }
+        return count == results.length ? results : Arrays.copyOf(results, count);
+    }
+
+    // reorders id-ordered matches by sorting their precomputed ranks, which avoids comparing products
+    private int[] inSortOrder(int[] matches, ProductSort sort)
+    {
+        if (sort == ProductSort.ID)
+        {
+            return matches == null ? idOrder : matches;
+        }
+
+        int[] order = sort == ProductSort.PRICE ? priceOrder : nameOrder;
+        int[] rank = sort == ProductSort.PRICE ? priceRank : nameRank;
+        if (matches == null)
+        {
+            return order;
+        }
+
+        int[] ranks = new int[matches.length];
+        for (int i = 0; i < matches.length; i++)
+        {
+            ranks[i] = rank[matches[i]];
+        }
+        Arrays.sort(ranks);
+        for (int i = 0; i < ranks.length; i++)
+        {
+            ranks[i] = order[ranks[i]];
+        }
+        return ranks;
+    }
+
+    // first position in ordered whose product sorts after the cursor
+    private int firstAfter(int[] ordered, PageCursor cursor)
+    {
+        long cursorCents = cursor.getSort() == ProductSort.PRICE
+                ? CatalogColumns.cents(new BigDecimal(cursor.getSortKey()), RoundingMode.HALF_UP)
+                : 0;
+
+        int low = 0;
+        int high = ordered.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (compareToCursor(ordered[mid], cursor, cursorCents) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // first position in the ranked text matches that comes after the cursor
+    private static int firstAfter(TextMatches text, PageCursor cursor)
+    {
+        float cursorScore = Float.parseFloat(cursor.getSortKey());
+
+        int low = 0;
+        int high = text.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            int result = Float.compare(cursorScore, text.score(mid));
+            if (result == 0) result = Integer.compare(text.productId(mid), cursor.getProductId());
+            if (result <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private int compareToCursor(int ordinal, PageCursor cursor, long cursorCents)
+    {
+        int result = 0;
+        if (cursor.getSort() == ProductSort.PRICE)
+        {
+            result = Long.compare(columns.priceCents(ordinal), cursorCents);
+        }
+        else if (cursor.getSort() == ProductSort.NAME)
+        {
+            // only the few names the search probes are decoded
+            result = NAME_ORDER.compare(store.readName(columns.offset(ordinal)), cursor.getSortKey());
+        }
+        return result != 0 ? result : Integer.compare(columns.productId(ordinal), cursor.getProductId());
+    }
+
+    private int ordinalOf(int productId)
+    {
+        int low = 0;
+        int high = columns.size() - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int midId = columns.productId(mid);
+            if (midId < productId) low = mid + 1;
+            else if (midId > productId) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    // ordinals of all products in the price range, in product id order
+    private int[] priceRange(long minCents, long maxCents)
+    {
+        int from = priceLowerBound(minCents);
+        int to = priceUpperBound(maxCents);
+        if (from >= to)
+        {
+            return NO_ORDINALS;
+        }
+
+        int[] range = Arrays.copyOfRange(priceOrder, from, to);
+        Arrays.sort(range);
+        return range;
+    }
+
+    // first position in price order whose price is >= minCents
+    private int priceLowerBound(long minCents)
+    {
+        int low = 0;
+        int high = priceOrder.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (columns.priceCents(priceOrder[mid]) < minCents) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // first position in price order whose price is > maxCents
+    private int priceUpperBound(long maxCents)
+    {
+        int low = 0;
+        int high = priceOrder.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (columns.priceCents(priceOrder[mid]) <= maxCents) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private List<Product> toProducts(int[] ordinals)
+    {
+        List<Product> results = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals)
+        {
+            results.add(product(ordinal));
+        }
+        return results;
+    }
+
+    private static int[] sortedOrdinals(int size, Comparator<Integer> comparator)
+    {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, comparator);
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The sort order after one row changed: the entry of a replaced or
+     * removed row at the ordinal is taken out, the ordinals after it move by
+     * the rows inserted or removed there, and an inserted row is put in its
+     * place by binary search. Ties keep id order, as in a full sort.
+     */
+    private static int[] reorder(int[] order, int at, boolean removed, boolean inserted, Comparator<Integer> comparator)
+    {
+        int shift = (inserted ? 1 : 0) - (removed ? 1 : 0);
+        int[] result = new int[order.length + shift];
+        int count = 0;
+        for (int ordinal : order)
+        {
+            if (removed && ordinal == at) continue;
+            result[count++] = ordinal >= at ? ordinal + shift : ordinal;
+        }
+        if (!inserted)
+        {
+            return result;
+        }
+
+        Comparator<Integer> withTies = comparator.thenComparingInt(Integer::intValue);
+        int low = 0;
+        int high = count;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (withTies.compare(result[mid], at) < 0) low = mid + 1;
+            else high = mid;
+        }
+        System.arraycopy(result, low, result, low + 1, count - low);
+        result[low] = at;
+        return result;
+    }
+
+    private static int[] ranks(int[] order)
+    {
+        int[] rank = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            rank[order[i]] = i;
+        }
+        return rank;
+    }
+
+    private static int[] narrowest(int[] current, int[] other)
+    {
+        return current == null || other.length < current.length ? other : current;
+    }
+
+    // MySQL compares colors case-insensitively, so the index does too
+    static String colorKey(String color)
+    {
+        return color == null ? "" : color.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int[] ordinals(int[][] index, int code)
+    {
+        return code >= 0 && code < index.length ? index[code] : NO_ORDINALS;
+    }
+
+    // ordinals per code, in ordinal order; rows with a negative code are left out
+    private static int[][] buildIndex(int codes, int size, IntUnaryOperator code)
+    {
+        int[] counts = new int[codes];
+        for (int i = 0; i < size; i++)
+        {
+            int c = code.applyAsInt(i);
+            if (c >= 0) counts[c]++;
+        }
+
+        int[][] index = new int[codes][];
+        for (int c = 0; c < codes; c++)
+        {
+            index[c] = counts[c] == 0 ? NO_ORDINALS : new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            int c = code.applyAsInt(i);
+            if (c >= 0) index[c][counts[c]++] = i;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,216 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Frequently bought together": how often two products were bought in the
+ * same order, as a sparse co-occurrence matrix held in memory.
+ *
+ * Every product keeps counters for at most {@link #COMPANIONS} other
+ * products. Once they are full, a new companion takes over the lowest counter
+ * and continues from its count (the Space-Saving algorithm): products that
+ * really are bought together keep their place while one-off pairs churn
+ * through the lowest slots, and no count is overestimated by more than that
+ * lowest count. Memory therefore grows with the number of products, not with
+ * the number of orders, and the first build streams every line item once.
+ *
+ * The first refresh reads all orders; after that a refresh only reads the
+ * orders above the highest order id seen so far, so new orders are counted
+ * within one refresh interval.
+ */
+@Component
+public class CoPurchaseIndex
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CoPurchaseIndex.class);
+
+    static final int COMPANIONS = 32;
+    // a very large order says little about any one pair and costs a number of updates quadratic in its size
+    static final int MAX_BASKET = 50;
+
+    private final OrderDao orderDao;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Integer, Companions> matrix = new HashMap<>();
+    // only used by the refresh, which never runs concurrently with itself
+    private int lastOrderId;
+    private boolean loaded;
+
+    public CoPurchaseIndex(OrderDao orderDao)
+    {
+        this.orderDao = orderDao;
+    }
+
+    /**
+     * Counts the orders placed since the last refresh, or builds the
+     * matrix from all orders the first time.
+     */
+    @Scheduled(fixedDelayString = "${orders.co-purchase.refresh-ms:60000}")
+    public void refresh()
+    {
+        try
+        {
+            if (!loaded)
+            {
+                // built aside and swapped in, so the long first pass blocks no reader
+                Map<Integer, Companions> built = new HashMap<>();
+                orderDao.streamBaskets(0, (basket, orderId) -> {
+                    count(built, basket);
+                    lastOrderId = orderId;
+                });
+                swap(built);
+                loaded = true;
+                return;
+            }
+
+            orderDao.streamBaskets(lastOrderId, (basket, orderId) -> {
+                lock.writeLock().lock();
+                try
+                {
+                    count(matrix, basket);
+                }
+                finally
+                {
+                    lock.writeLock().unlock();
+                }
+                lastOrderId = orderId;
+            });
+        }
+        catch (RuntimeException e)
+        {
+            // the current counts keep being served; the next refresh tries again
+            LOG.warn("Unable to refresh the co-purchase counts", e);
+        }
+    }
+
+    /**
+     * Up to {@code limit} products most often bought together with the
+     * given one, most often first.
+     */
+    public List<Integer> companions(int productId, int limit)
+    {
+        return companions(List.of(productId), limit);
+    }
+
+    /**
+     * Up to {@code limit} products most often bought together with any of
+     * the given ones, such as the contents of a cart, leaving out the given
+     * products themselves. Counts for the same companion are added up.
+     */
+    public List<Integer> companions(Collection<Integer> productIds, int limit)
+    {
+        Set<Integer> given = new HashSet<>(productIds);
+        Map<Integer, Long> totals = new HashMap<>();
+
+        lock.readLock().lock();
+        try
+        {
+            for (int productId : given)
+            {
+                Companions companions = matrix.get(productId);
+                if (companions == null) continue;
+                for (int i = 0; i < companions.size; i++)
+                {
+                    if (!given.contains(companions.ids[i]))
+                    {
+                        totals.merge(companions.ids[i], (long) companions.counts[i], Long::sum);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        List<Integer> ranked = new ArrayList<>(totals.keySet());
+        ranked.sort((a, b) -> {
+            int result = Long.compare(totals.get(b), totals.get(a));
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+        return ranked.subList(0, Math.max(0, Math.min(limit, ranked.size())));
+    }
+
+    private void swap(Map<Integer, Companions> built)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            matrix = built;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // adds one to every pair of distinct products in the basket, in both directions
+    private static void count(Map<Integer, Companions> matrix, int[] basket)
+    {
+        int size = Math.min(basket.length, MAX_BASKET);
+        for (int i = 0; i < size; i++)
+        {
+            Companions companions = matrix.computeIfAbsent(basket[i], id -> new Companions());
+            for (int j = 0; j < size; j++)
+            {
+                if (i != j)
+                {
+                    companions.add(basket[j]);
+                }
+            }
+        }
+    }
+
+    // one row of the matrix: bounded counters, in no particular order
+    private static final class Companions
+    {
+        private int[] ids = new int[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        private void add(int productId)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (ids[i] == productId)
+                {
+                    counts[i]++;
+                    return;
+                }
+            }
+
+            if (size < COMPANIONS)
+            {
+                if (size == ids.length)
+                {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                }
+                ids[size] = productId;
+                counts[size++] = 1;
+                return;
+            }
+
+            int lowest = 0;
+            for (int i = 1; i < size; i++)
+            {
+                if (counts[i] < counts[lowest]) lowest = i;
+            }
+            ids[lowest] = productId;
+            counts[lowest]++;
+        }
+    }
+}
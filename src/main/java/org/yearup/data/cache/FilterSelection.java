@@ -0,0 +1,47 @@
+package org.yearup.data.cache;
+
+/**
+ * Product ids, ascending, that pass the multi-select filters of a query.
+ * Each array is null when the corresponding filter was not used. Facets need
+ * the filters one by one, because a facet ignores its own filter.
+ */
+final class FilterSelection
+{
+    static final FilterSelection NONE = new FilterSelection(null, null, null, null);
+
+    private final int[] categories;
+    private final int[] colors;
+    private final int[] flags;
+    private final int[] all;
+
+    FilterSelection(int[] categories, int[] colors, int[] flags, int[] all)
+    {
+        this.categories = categories;
+        this.colors = colors;
+        this.flags = flags;
+        this.all = all;
+    }
+
+    int[] categories()
+    {
+        return categories;
+    }
+
+    int[] colors()
+    {
+        return colors;
+    }
+
+    int[] flags()
+    {
+        return flags;
+    }
+
+    /**
+     * Products passing every selected filter.
+     */
+    int[] all()
+    {
+        return all;
+    }
+}
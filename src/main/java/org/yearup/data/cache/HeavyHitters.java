@@ -0,0 +1,199 @@
+package org.yearup.data.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most frequent products of a stream of (product, count, time) events
+ * over a sliding window, in memory that does not grow with the catalog.
+ *
+ * Time is cut into fixed buckets held in a ring. Each bucket counts at most
+ * {@code capacity} products with the Space-Saving algorithm: once it is full,
+ * a new product takes over the smallest counter and continues from its count.
+ * A product that is frequent within a bucket keeps its counter, and no count
+ * is overestimated by more than the smallest count of its bucket. A window is
+ * answered by adding up the buckets it covers, including the current one, so
+ * it slides one bucket at a time.
+ */
+final class HeavyHitters
+{
+    private final long bucketMillis;
+    private final Bucket[] buckets;
+    private final int capacity;
+    private final long rankingMillis;
+    // rankings per window length in buckets, reused for rankingMillis
+    private final Map<Integer, Ranking> rankings = new HashMap<>();
+
+    HeavyHitters(long bucketMillis, int bucketCount, int capacity, long rankingMillis)
+    {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new Bucket[bucketCount];
+        this.capacity = capacity;
+        this.rankingMillis = rankingMillis;
+        for (int i = 0; i < bucketCount; i++)
+        {
+            buckets[i] = new Bucket(capacity);
+        }
+    }
+
+    /**
+     * Counts an event that happened at {@code timeMillis}. Events older than
+     * the ring are ignored.
+     */
+    synchronized void add(int productId, long count, long timeMillis)
+    {
+        long epoch = timeMillis / bucketMillis;
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) buckets.length)];
+        if (bucket.epoch > epoch)
+        {
+            return;
+        }
+        if (bucket.epoch < epoch)
+        {
+            bucket.reset(epoch);
+        }
+        bucket.add(productId, count);
+    }
+
+    /**
+     * Up to {@code limit} product ids, most frequent first, over the buckets
+     * that cover the last {@code windowMillis} before {@code nowMillis}.
+     */
+    synchronized List<Integer> top(long windowMillis, int limit, long nowMillis)
+    {
+        int windowBuckets = (int) Math.max(1, Math.min(buckets.length, (windowMillis + bucketMillis - 1) / bucketMillis));
+        long current = nowMillis / bucketMillis;
+
+        Ranking ranking = rankings.get(windowBuckets);
+        if (ranking == null || ranking.epoch != current || nowMillis - ranking.rankedAt >= rankingMillis)
+        {
+            ranking = new Ranking(current, nowMillis, rank(current - windowBuckets + 1, current));
+            rankings.put(windowBuckets, ranking);
+        }
+        List<Integer> ids = ranking.ids;
+        return ids.subList(0, Math.max(0, Math.min(limit, ids.size())));
+    }
+
+    private List<Integer> rank(long firstEpoch, long lastEpoch)
+    {
+        Map<Integer, Long> totals = new HashMap<>();
+        for (Bucket bucket : buckets)
+        {
+            if (bucket.epoch < firstEpoch || bucket.epoch > lastEpoch) continue;
+            for (int i = 0; i < bucket.size; i++)
+            {
+                totals.merge(bucket.ids[i], bucket.counts[i], Long::sum);
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>(totals.keySet());
+        ranked.sort((a, b) -> {
+            int result = Long.compare(totals.get(b), totals.get(a));
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+        // a product past the capacity of a single bucket is not known well enough to rank
+        return List.copyOf(ranked.subList(0, Math.min(capacity, ranked.size())));
+    }
+
+    private static final class Ranking
+    {
+        private final long epoch;
+        private final long rankedAt;
+        private final List<Integer> ids;
+
+        private Ranking(long epoch, long rankedAt, List<Integer> ids)
+        {
+            this.epoch = epoch;
+            this.rankedAt = rankedAt;
+            this.ids = ids;
+        }
+    }
+
+    // Space-Saving counters kept as a min-heap on count, so the smallest is always at the root
+    private static final class Bucket
+    {
+        private long epoch = Long.MIN_VALUE;
+        private final int[] ids;
+        private final long[] counts;
+        private final Map<Integer, Integer> positions = new HashMap<>();
+        private int size;
+
+        private Bucket(int capacity)
+        {
+            ids = new int[capacity];
+            counts = new long[capacity];
+        }
+
+        private void reset(long epoch)
+        {
+            this.epoch = epoch;
+            positions.clear();
+            size = 0;
+        }
+
+        private void add(int productId, long count)
+        {
+            Integer position = positions.get(productId);
+            if (position != null)
+            {
+                counts[position] += count;
+                siftDown(position);
+            }
+            else if (size < ids.length)
+            {
+                ids[size] = productId;
+                counts[size] = count;
+                positions.put(productId, size);
+                siftUp(size++);
+            }
+            else
+            {
+                positions.remove(ids[0]);
+                ids[0] = productId;
+                counts[0] += count;
+                positions.put(productId, 0);
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int position)
+        {
+            while (position > 0)
+            {
+                int parent = (position - 1) / 2;
+                if (counts[parent] <= counts[position]) return;
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position)
+        {
+            while (true)
+            {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) smallest = left;
+                if (right < size && counts[right] < counts[smallest]) smallest = right;
+                if (smallest == position) return;
+                swap(smallest, position);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b)
+        {
+            int id = ids[a];
+            long count = counts[a];
+            ids[a] = ids[b];
+            counts[a] = counts[b];
+            ids[b] = id;
+            counts[b] = count;
+            positions.put(ids[a], a);
+            positions.put(ids[b], b);
+        }
+    }
+}
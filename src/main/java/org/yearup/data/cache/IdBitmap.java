@@ -0,0 +1,459 @@
+package org.yearup.data.cache;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of product ids in the style of a roaring bitmap.
+ *
+ * Ids are split by their high 16 bits into chunks. A sparse chunk stores its
+ * low 16 bits as a sorted char array; once it holds more than
+ * {@value #ARRAY_LIMIT} ids it switches to a plain 8 KB bitset, which is the
+ * smaller of the two from that point on. Intersections and unions work chunk
+ * by chunk, so both dense and sparse sets stay compact and fast to combine.
+ */
+final class IdBitmap
+{
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1 << 10;
+
+    // high 16 bits of each chunk, ascending
+    private int[] keys;
+    // per chunk either a char[] (sorted, sparse) or a long[WORDS] (dense)
+    private Object[] chunks;
+    // cardinality per chunk
+    private int[] sizes;
+    private int count;
+
+    IdBitmap()
+    {
+        this(4);
+    }
+
+    private IdBitmap(int capacity)
+    {
+        this.keys = new int[capacity];
+        this.chunks = new Object[capacity];
+        this.sizes = new int[capacity];
+    }
+
+    static IdBitmap of(int... ids)
+    {
+        IdBitmap bitmap = new IdBitmap();
+        for (int id : ids)
+        {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    int cardinality()
+    {
+        int total = 0;
+        for (int i = 0; i < count; i++)
+        {
+            total += sizes[i];
+        }
+        return total;
+    }
+
+    boolean contains(int id)
+    {
+        int chunk = Arrays.binarySearch(keys, 0, count, id >>> 16);
+        if (chunk < 0)
+        {
+            return false;
+        }
+        char low = (char) id;
+        Object values = chunks[chunk];
+        if (values instanceof long[])
+        {
+            return (((long[]) values)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) values, 0, sizes[chunk], low) >= 0;
+    }
+
+    void add(int id)
+    {
+        int key = id >>> 16;
+        char low = (char) id;
+        int chunk = Arrays.binarySearch(keys, 0, count, key);
+        if (chunk < 0)
+        {
+            chunk = -(chunk + 1);
+            insertChunk(chunk, key, new char[4], 0);
+        }
+
+        Object values = chunks[chunk];
+        if (values instanceof long[])
+        {
+            long[] words = (long[]) values;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0)
+            {
+                words[low >>> 6] |= bit;
+                sizes[chunk]++;
+            }
+            return;
+        }
+
+        char[] array = (char[]) values;
+        int size = sizes[chunk];
+        int position = Arrays.binarySearch(array, 0, size, low);
+        if (position >= 0)
+        {
+            return;
+        }
+        position = -(position + 1);
+
+        if (size == ARRAY_LIMIT)
+        {
+            long[] words = toWords(array, size);
+            words[low >>> 6] |= 1L << low;
+            chunks[chunk] = words;
+            sizes[chunk] = size + 1;
+            return;
+        }
+        if (size == array.length)
+        {
+            array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, size * 2));
+            chunks[chunk] = array;
+        }
+        System.arraycopy(array, position, array, position + 1, size - position);
+        array[position] = low;
+        sizes[chunk] = size + 1;
+    }
+
+    void remove(int id)
+    {
+        int chunk = Arrays.binarySearch(keys, 0, count, id >>> 16);
+        if (chunk < 0)
+        {
+            return;
+        }
+
+        char low = (char) id;
+        Object values = chunks[chunk];
+        if (values instanceof long[])
+        {
+            long[] words = (long[]) values;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0)
+            {
+                words[low >>> 6] &= ~bit;
+                sizes[chunk]--;
+                if (sizes[chunk] <= ARRAY_LIMIT)
+                {
+                    chunks[chunk] = toArray(words, sizes[chunk]);
+                }
+            }
+        }
+        else
+        {
+            char[] array = (char[]) values;
+            int size = sizes[chunk];
+            int position = Arrays.binarySearch(array, 0, size, low);
+            if (position < 0)
+            {
+                return;
+            }
+            System.arraycopy(array, position + 1, array, position, size - position - 1);
+            sizes[chunk] = size - 1;
+        }
+
+        if (sizes[chunk] == 0)
+        {
+            removeChunk(chunk);
+        }
+    }
+
+    /**
+     * The ids in ascending order.
+     */
+    int[] toArray()
+    {
+        int[] ids = new int[cardinality()];
+        int next = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int high = keys[i] << 16;
+            Object values = chunks[i];
+            if (values instanceof long[])
+            {
+                long[] words = (long[]) values;
+                for (int w = 0; w < WORDS; w++)
+                {
+                    long word = words[w];
+                    while (word != 0)
+                    {
+                        ids[next++] = high | (w << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            }
+            else
+            {
+                char[] array = (char[]) values;
+                for (int j = 0; j < sizes[i]; j++)
+                {
+                    ids[next++] = high | array[j];
+                }
+            }
+        }
+        return ids;
+    }
+
+    static IdBitmap and(IdBitmap a, IdBitmap b)
+    {
+        IdBitmap result = new IdBitmap(Math.max(1, Math.min(a.count, b.count)));
+        int i = 0;
+        int j = 0;
+        while (i < a.count && j < b.count)
+        {
+            if (a.keys[i] < b.keys[j]) i++;
+            else if (a.keys[i] > b.keys[j]) j++;
+            else
+            {
+                result.appendChunk(a.keys[i], combine(a.chunks[i], a.sizes[i], b.chunks[j], b.sizes[j], Op.AND));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    static IdBitmap or(IdBitmap a, IdBitmap b)
+    {
+        IdBitmap result = new IdBitmap(Math.max(1, a.count + b.count));
+        int i = 0;
+        int j = 0;
+        while (i < a.count || j < b.count)
+        {
+            if (j == b.count || (i < a.count && a.keys[i] < b.keys[j]))
+            {
+                result.appendChunk(a.keys[i], copy(a.chunks[i], a.sizes[i]));
+                i++;
+            }
+            else if (i == a.count || b.keys[j] < a.keys[i])
+            {
+                result.appendChunk(b.keys[j], copy(b.chunks[j], b.sizes[j]));
+                j++;
+            }
+            else
+            {
+                result.appendChunk(a.keys[i], combine(a.chunks[i], a.sizes[i], b.chunks[j], b.sizes[j], Op.OR));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The ids of a that are not in b.
+     */
+    static IdBitmap andNot(IdBitmap a, IdBitmap b)
+    {
+        IdBitmap result = new IdBitmap(Math.max(1, a.count));
+        int j = 0;
+        for (int i = 0; i < a.count; i++)
+        {
+            while (j < b.count && b.keys[j] < a.keys[i])
+            {
+                j++;
+            }
+            if (j < b.count && b.keys[j] == a.keys[i])
+            {
+                result.appendChunk(a.keys[i], combine(a.chunks[i], a.sizes[i], b.chunks[j], b.sizes[j], Op.AND_NOT));
+            }
+            else
+            {
+                result.appendChunk(a.keys[i], copy(a.chunks[i], a.sizes[i]));
+            }
+        }
+        return result;
+    }
+
+    private enum Op
+    {
+        AND, OR, AND_NOT
+    }
+
+    // chunk results are built as a bitset when either side is one, then shrunk back if sparse
+    private static Chunk combine(Object a, int aSize, Object b, int bSize, Op op)
+    {
+        if (a instanceof char[] && b instanceof char[])
+        {
+            return mergeArrays((char[]) a, aSize, (char[]) b, bSize, op);
+        }
+        if (op == Op.AND && a instanceof char[])
+        {
+            return filterArray((char[]) a, aSize, (long[]) b, true);
+        }
+        if (op == Op.AND && b instanceof char[])
+        {
+            return filterArray((char[]) b, bSize, (long[]) a, true);
+        }
+        if (op == Op.AND_NOT && a instanceof char[])
+        {
+            return filterArray((char[]) a, aSize, (long[]) b, false);
+        }
+
+        long[] left = a instanceof long[] ? ((long[]) a).clone() : toWords((char[]) a, aSize);
+        long[] right = b instanceof long[] ? (long[]) b : toWords((char[]) b, bSize);
+        int size = 0;
+        for (int w = 0; w < WORDS; w++)
+        {
+            switch (op)
+            {
+                case AND: left[w] &= right[w]; break;
+                case OR: left[w] |= right[w]; break;
+                default: left[w] &= ~right[w];
+            }
+            size += Long.bitCount(left[w]);
+        }
+        return size <= ARRAY_LIMIT ? new Chunk(toArray(left, size), size) : new Chunk(left, size);
+    }
+
+    private static Chunk mergeArrays(char[] a, int aSize, char[] b, int bSize, Op op)
+    {
+        char[] out = new char[op == Op.OR ? aSize + bSize : aSize];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < aSize && j < bSize)
+        {
+            if (a[i] < b[j])
+            {
+                if (op != Op.AND) out[size++] = a[i];
+                i++;
+            }
+            else if (a[i] > b[j])
+            {
+                if (op == Op.OR) out[size++] = b[j];
+                j++;
+            }
+            else
+            {
+                if (op != Op.AND_NOT) out[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        if (op != Op.AND)
+        {
+            while (i < aSize) out[size++] = a[i++];
+        }
+        if (op == Op.OR)
+        {
+            while (j < bSize) out[size++] = b[j++];
+        }
+
+        if (size > ARRAY_LIMIT)
+        {
+            return new Chunk(toWords(out, size), size);
+        }
+        return new Chunk(out, size);
+    }
+
+    private static Chunk filterArray(char[] array, int size, long[] words, boolean keepMembers)
+    {
+        char[] out = new char[size];
+        int kept = 0;
+        for (int i = 0; i < size; i++)
+        {
+            char value = array[i];
+            boolean member = (words[value >>> 6] & (1L << value)) != 0;
+            if (member == keepMembers)
+            {
+                out[kept++] = value;
+            }
+        }
+        return new Chunk(out, kept);
+    }
+
+    private static Chunk copy(Object values, int size)
+    {
+        return values instanceof long[]
+                ? new Chunk(((long[]) values).clone(), size)
+                : new Chunk(Arrays.copyOf((char[]) values, Math.max(size, 1)), size);
+    }
+
+    private static long[] toWords(char[] array, int size)
+    {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < size; i++)
+        {
+            words[array[i] >>> 6] |= 1L << array[i];
+        }
+        return words;
+    }
+
+    private static char[] toArray(long[] words, int size)
+    {
+        char[] array = new char[Math.max(size, 1)];
+        int next = 0;
+        for (int w = 0; w < WORDS; w++)
+        {
+            long word = words[w];
+            while (word != 0)
+            {
+                array[next++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    // callers append in ascending key order
+    private void appendChunk(int key, Chunk chunk)
+    {
+        if (chunk.size > 0)
+        {
+            insertChunk(count, key, chunk.values, chunk.size);
+        }
+    }
+
+    private void insertChunk(int position, int key, Object values, int size)
+    {
+        if (count == keys.length)
+        {
+            int capacity = Math.max(4, count * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            chunks = Arrays.copyOf(chunks, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        System.arraycopy(keys, position, keys, position + 1, count - position);
+        System.arraycopy(chunks, position, chunks, position + 1, count - position);
+        System.arraycopy(sizes, position, sizes, position + 1, count - position);
+        keys[position] = key;
+        chunks[position] = values;
+        sizes[position] = size;
+        count++;
+    }
+
+    private void removeChunk(int position)
+    {
+        System.arraycopy(keys, position + 1, keys, position, count - position - 1);
+        System.arraycopy(chunks, position + 1, chunks, position, count - position - 1);
+        System.arraycopy(sizes, position + 1, sizes, position, count - position - 1);
+        count--;
+        chunks[count] = null;
+    }
+
+    private static final class Chunk
+    {
+        private final Object values;
+        private final int size;
+
+        private Chunk(Object values, int size)
+        {
+            this.values = values;
+            this.size = size;
+        }
+    }
+}
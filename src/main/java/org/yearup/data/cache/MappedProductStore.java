@@ -0,0 +1,544 @@
+package org.yearup.data.cache;
+
+import org.yearup.models.Product;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Product records laid out in a memory-mapped file, outside the Java heap.
+ *
+ * The file is append-only: saving a product appends a new record and
+ * deleting one appends a tombstone, so an offset handed out once keeps
+ * pointing at the same bytes for as long as the store is open. That lets
+ * every {@link CatalogSnapshot} keep its own offsets while newer snapshots
+ * are built on top of the same file. Records are decoded into
+ * {@link Product}s only when they are read.
+ *
+ * The file is mapped in fixed-size segments and no record crosses a segment
+ * boundary. Its header records where the last complete record ends, so a
+ * store can be reopened after a restart; the latest record of each product
+ * id is found by scanning the record headers.
+ */
+final class MappedProductStore
+{
+    private static final int MAGIC = 0x45505331; // "EPS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int END_POSITION = 8;
+
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final byte DELETED = 0;
+    private static final byte PRODUCT = 1;
+    // length, product id, kind
+    private static final int RECORD_HEADER = 9;
+    // the name is the first string, after the record header and the fixed-size fields
+    private static final int NAME_POSITION = RECORD_HEADER + 18;
+    private static final int NULL_STRING = -1;
+    private static final byte NO_PRICE = Byte.MIN_VALUE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long end;
+
+    private MappedProductStore(Path path, FileChannel channel)
+    {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Starts a new, empty store next to the given path. It replaces the file
+     * at that path once {@link #publish()} is called.
+     */
+    static MappedProductStore create(Path path) throws IOException
+    {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null)
+        {
+            Files.createDirectories(parent);
+        }
+        Path building = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(building, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedProductStore store = new MappedProductStore(path, channel);
+        store.initialize();
+        return store;
+    }
+
+    /**
+     * A store that lives only as long as this process, for catalogs that
+     * are not persisted.
+     */
+    static MappedProductStore temporary()
+    {
+        try
+        {
+            Path file = Files.createTempFile("catalog", ".store");
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // the open channel and its mappings keep the data reachable
+            try
+            {
+                Files.delete(file);
+            }
+            catch (IOException e)
+            {
+                // platforms that cannot delete an open file remove it at exit instead
+                file.toFile().deleteOnExit();
+            }
+            MappedProductStore store = new MappedProductStore(null, channel);
+            store.initialize();
+            return store;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reopens a store written by an earlier run.
+     *
+     * @throws IOException when the file is missing or is not a product store
+     */
+    static MappedProductStore open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedProductStore store = new MappedProductStore(path, channel);
+        try
+        {
+            // checked before mapping, since mapping a segment grows a short file
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+            {
+                throw new IOException(path + " is not a product store");
+            }
+            store.end = header.getLong(END_POSITION);
+            if (store.end < HEADER_SIZE || store.end > channel.size())
+            {
+                throw new IOException(path + " has a damaged header");
+            }
+            return store;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void initialize() throws IOException
+    {
+        MappedByteBuffer header = segment(0);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        end = HEADER_SIZE;
+        header.putLong(END_POSITION, end);
+    }
+
+    /**
+     * Writes the mapped pages to disk and moves a store made by
+     * {@link #create(Path)} over the file it replaces.
+     */
+    void publish() throws IOException
+    {
+        force();
+        Path building = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.move(building, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    boolean isPersistent()
+    {
+        return path != null;
+    }
+
+    /**
+     * Bytes in use, including records that have since been replaced.
+     */
+    long size()
+    {
+        return end;
+    }
+
+    /**
+     * Appends the product and returns the offset of its record. Callers
+     * append one at a time.
+     */
+    long append(Product product)
+    {
+        byte[] name = utf8(product.getName());
+        byte[] description = utf8(product.getDescription());
+        byte[] color = utf8(product.getColor());
+        byte[] imageUrl = utf8(product.getImageUrl());
+
+        BigDecimal price = product.getPrice();
+        int length = RECORD_HEADER + 4 + 4 + 1 + 1 + 8
+                + stringSize(name) + stringSize(description) + stringSize(color) + stringSize(imageUrl);
+
+        long offset = reserve(length);
+        MappedByteBuffer segment = segmentAt(offset);
+        int position = (int) (offset & SEGMENT_MASK);
+
+        segment.putInt(position, length);
+        segment.putInt(position + 4, product.getProductId());
+        segment.put(position + 8, PRODUCT);
+        position += RECORD_HEADER;
+        segment.putInt(position, product.getCategoryId());
+        segment.putInt(position + 4, product.getStock());
+        segment.put(position + 8, (byte) (product.isFeatured() ? 1 : 0));
+        // prices are DECIMAL(10,2), so the unscaled value fits a long
+        segment.put(position + 9, price == null ? NO_PRICE : (byte) price.scale());
+        segment.putLong(position + 10, price == null ? 0 : price.unscaledValue().longValueExact());
+        position += 18;
+        position = putString(segment, position, name);
+        position = putString(segment, position, description);
+        position = putString(segment, position, color);
+        putString(segment, position, imageUrl);
+
+        commit(offset + length);
+        return offset;
+    }
+
+    /**
+     * Copies the live records into a fresh file when replaced and deleted
+     * records take up more than half of this one. Returns the store to use
+     * from then on, which is this one when nothing was copied.
+     */
+    MappedProductStore compact() throws IOException
+    {
+        long[] live = liveOffsets();
+        long liveBytes = 0;
+        for (long offset : live)
+        {
+            liveBytes += segmentAt(offset).getInt((int) (offset & SEGMENT_MASK));
+        }
+        if (!isPersistent() || liveBytes * 2 >= end - HEADER_SIZE)
+        {
+            return this;
+        }
+
+        MappedProductStore compacted = create(path);
+        byte[] record = new byte[0];
+        for (long offset : live)
+        {
+            MappedByteBuffer source = segmentAt(offset);
+            int position = (int) (offset & SEGMENT_MASK);
+            int length = source.getInt(position);
+            if (record.length < length)
+            {
+                record = new byte[length];
+            }
+            source.get(position, record, 0, length);
+
+            long target = compacted.reserve(length);
+            compacted.segmentAt(target).put((int) (target & SEGMENT_MASK), record, 0, length);
+            compacted.commit(target + length);
+        }
+        compacted.publish();
+        close();
+        return compacted;
+    }
+
+    /**
+     * Records that the product is gone, so a reopened store does not bring it back.
+     */
+    void appendDeleted(int productId)
+    {
+        long offset = reserve(RECORD_HEADER);
+        MappedByteBuffer segment = segmentAt(offset);
+        int position = (int) (offset & SEGMENT_MASK);
+        segment.putInt(position, RECORD_HEADER);
+        segment.putInt(position + 4, productId);
+        segment.put(position + 8, DELETED);
+        commit(offset + RECORD_HEADER);
+    }
+
+    /**
+     * Decodes the product record at the offset.
+     */
+    Product read(long offset)
+    {
+        MappedByteBuffer segment = segmentAt(offset);
+        int position = (int) (offset & SEGMENT_MASK);
+
+        int productId = segment.getInt(position + 4);
+        position += RECORD_HEADER;
+        int categoryId = segment.getInt(position);
+        int stock = segment.getInt(position + 4);
+        boolean featured = segment.get(position + 8) != 0;
+        byte scale = segment.get(position + 9);
+        BigDecimal price = scale == NO_PRICE ? null : BigDecimal.valueOf(segment.getLong(position + 10), scale);
+        position += 18;
+
+        String[] strings = new String[4];
+        for (int i = 0; i < strings.length; i++)
+        {
+            strings[i] = getString(segment, position);
+            position += stringSize(segment.getInt(position));
+        }
+
+        return new Product(productId, strings[0], price, categoryId, strings[1], strings[2], stock, featured, strings[3]);
+    }
+
+    /**
+     * Decodes only the name of the product record at the offset.
+     */
+    String readName(long offset)
+    {
+        int position = (int) (offset & SEGMENT_MASK) + NAME_POSITION;
+        return getString(segmentAt(offset), position);
+    }
+
+    /**
+     * Whether the record at the offset holds exactly the same product as
+     * the record at {@code otherOffset} in the other store, compared byte
+     * for byte without decoding either.
+     */
+    boolean sameRecord(long offset, MappedProductStore other, long otherOffset)
+    {
+        return record(offset).equals(other.record(otherOffset));
+    }
+
+    // the bytes of the record at the offset, header included
+    private ByteBuffer record(long offset)
+    {
+        MappedByteBuffer segment = segmentAt(offset);
+        int position = (int) (offset & SEGMENT_MASK);
+        return segment.slice(position, segment.getInt(position));
+    }
+
+    /**
+     * Offsets of the latest record of every product that has not been
+     * deleted, in product id order.
+     */
+    long[] liveOffsets()
+    {
+        // (product id, record number) pairs sort so the last record of each id comes last
+        long[] keys = new long[1024];
+        long[] offsets = new long[1024];
+        int count = 0;
+
+        long offset = HEADER_SIZE;
+        long limit = end;
+        while (offset < limit)
+        {
+            MappedByteBuffer segment = segmentAt(offset);
+            int position = (int) (offset & SEGMENT_MASK);
+            int length = SEGMENT_SIZE - position < RECORD_HEADER ? 0 : segment.getInt(position);
+            if (length == 0)
+            {
+                // the rest of the segment was skipped because the next record did not fit
+                offset = (offset | SEGMENT_MASK) + 1;
+                continue;
+            }
+
+            if (count == keys.length)
+            {
+                keys = Arrays.copyOf(keys, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            keys[count] = (long) segment.getInt(position + 4) << 32 | count;
+            offsets[count] = segment.get(position + 8) == PRODUCT ? offset : -1;
+            count++;
+            offset += length;
+        }
+
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+
+        long[] live = new long[count];
+        int liveCount = 0;
+        for (int i = 0; i < count; i++)
+        {
+            boolean latest = i + 1 == count || keys[i + 1] >>> 32 != keys[i] >>> 32;
+            long recordOffset = offsets[(int) keys[i]];
+            if (latest && recordOffset >= 0)
+            {
+                live[liveCount++] = recordOffset;
+            }
+        }
+        return Arrays.copyOf(live, liveCount);
+    }
+
+    /**
+     * A read-only view that decodes each product as it is iterated.
+     */
+    Collection<Product> products(long[] offsets)
+    {
+        return new AbstractCollection<>()
+        {
+            @Override
+            public Iterator<Product> iterator()
+            {
+                return new Iterator<>()
+                {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return next < offsets.length;
+                    }
+
+                    @Override
+                    public Product next()
+                    {
+                        if (!hasNext())
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        return read(offsets[next++]);
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return offsets.length;
+            }
+        };
+    }
+
+    /**
+     * Writes the mapped pages to disk.
+     */
+    void force()
+    {
+        for (MappedByteBuffer segment : segments)
+        {
+            segment.force();
+        }
+    }
+
+    /**
+     * Stops appending. Offsets that were handed out stay readable, since
+     * the mappings outlive the channel.
+     */
+    void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // start of a record of the given length; a record that would cross into the next segment starts there instead
+    private long reserve(int length)
+    {
+        if (length > SEGMENT_SIZE)
+        {
+            throw new IllegalArgumentException("Product record of " + length + " bytes is too large");
+        }
+        long offset = end;
+        if ((offset & SEGMENT_MASK) + length > SEGMENT_SIZE)
+        {
+            offset = (offset | SEGMENT_MASK) + 1;
+        }
+        return offset;
+    }
+
+    // the header is updated last, so a reopened store never sees a half-written record
+    private void commit(long newEnd)
+    {
+        end = newEnd;
+        segmentAt(0).putLong(END_POSITION, newEnd);
+    }
+
+    private MappedByteBuffer segmentAt(long offset)
+    {
+        int index = (int) (offset >>> SEGMENT_SHIFT);
+        MappedByteBuffer[] current = segments;
+        if (index < current.length)
+        {
+            return current[index];
+        }
+        try
+        {
+            return segment(index);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // maps segments up to and including the given one; mapping past the end grows the file
+    private synchronized MappedByteBuffer segment(int index) throws IOException
+    {
+        MappedByteBuffer[] current = segments;
+        if (index >= current.length)
+        {
+            MappedByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+            for (int i = current.length; i <= index; i++)
+            {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * SEGMENT_SIZE, SEGMENT_SIZE);
+            }
+            segments = grown;
+            current = grown;
+        }
+        return current[index];
+    }
+
+    private static byte[] utf8(String value)
+    {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] value)
+    {
+        return 4 + (value == null ? 0 : value.length);
+    }
+
+    private static int stringSize(int length)
+    {
+        return 4 + (length == NULL_STRING ? 0 : length);
+    }
+
+    private static String getString(MappedByteBuffer segment, int position)
+    {
+        int length = segment.getInt(position);
+        if (length == NULL_STRING)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        segment.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int putString(MappedByteBuffer segment, int position, byte[] value)
+    {
+        if (value == null)
+        {
+            segment.putInt(position, NULL_STRING);
+            return position + 4;
+        }
+        segment.putInt(position, value.length);
+        segment.put(position + 4, value);
+        return position + 4 + value.length;
+    }
+}
@@ -0,0 +1,405 @@
+package org.yearup.data.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.yearup.models.Product;
+import org.yearup.models.ProductChange;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes every product change to subscribed clients as server-sent events,
+ * so storefronts no longer have to poll for price and stock updates.
+ *
+ * A subscription is an {@link SseEmitter}: an async request that holds no
+ * servlet thread while it waits, so idle subscribers only cost a socket and a
+ * few objects. Events are numbered and fanned out on a single dispatcher
+ * thread, which keeps the DAO's write path from waiting on client sockets and
+ * gives every subscriber the events in commit order.
+ *
+ * The dispatcher never writes to a socket itself. It only puts each event on
+ * the bounded queue of every subscriber that wants it, and a pool of sender
+ * threads drains those queues. A client that stops reading holds up at most
+ * one sender thread, but it holds it for as long as the blocking socket write
+ * takes to time out; its queue meanwhile fills up, and it is dropped and can
+ * reconnect with the id of the last event it received. The pool therefore
+ * has to be larger than the number of clients expected to stall at once;
+ * when every sender is stuck, the other subscribers wait too and fall behind
+ * until their queues are full.
+ *
+ * Bulk updates, bulk deletes and imports reach the feed as a reload of the
+ * whole catalog. The feed compares the reloaded snapshot with the previous
+ * one record by record, in their off-heap stores, and sends the saved and
+ * deleted events of the products that changed. A reload that changed more
+ * than {@link #RELOAD_EVENTS} products, which would fill the subscribers'
+ * queues, is sent as a single reset instead, as is the first load, which
+ * has nothing to compare with.
+ *
+ * Every event carries an id, and the most recent {@link #REPLAY_SIZE} are
+ * kept, so a client that reconnects with {@code Last-Event-ID} receives what
+ * it missed. A client that has been away longer is sent a reset instead.
+ */
+@Component
+public class ProductChangeFeed implements ProductChangeListener
+{
+    static final int REPLAY_SIZE = 1024;
+    // events a subscriber may fall behind by; a client further behind could not be replayed to either
+    static final int QUEUE_SIZE = REPLAY_SIZE;
+    // products a reload may change before it is sent as a reset, leaving room in queues that are not empty
+    static final int RELOAD_EVENTS = QUEUE_SIZE / 4;
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(daemon("product-change-feed"));
+    private final ExecutorService senders;
+
+    // dispatcher only
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private final Event[] recent = new Event[REPLAY_SIZE];
+    private long lastEventId;
+
+    @Autowired
+    public ProductChangeFeed(@Value("${products.changes.sender-threads:16}") int senderThreads)
+    {
+        this(Executors.newFixedThreadPool(senderThreads, daemon("product-change-sender")));
+    }
+
+    ProductChangeFeed(ExecutorService senders)
+    {
+        this.senders = senders;
+    }
+
+    /**
+     * Opens a subscription to the changes of the given categories or
+     * products, or of every product when neither is given.
+     *
+     * @param lastEventId the id of the last event the client received before reconnecting, or null
+     */
+    public SseEmitter subscribe(Collection<Integer> categoryIds, Collection<Integer> productIds, Long lastEventId)
+    {
+        // no timeout of its own; the connection stays open until either side closes it
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(categoryIds, productIds, new EventSink()
+        {
+            @Override
+            public void send(Event event) throws IOException
+            {
+                emitter.send(event == null
+                        ? SseEmitter.event().comment("heartbeat")
+                        : SseEmitter.event()
+                                .id(Long.toString(event.id))
+                                .name(event.change.getType())
+                                .data(event.change, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close()
+            {
+                emitter.complete();
+            }
+        });
+
+        Runnable unsubscribe = () -> dispatcher.execute(() -> subscribers.remove(subscriber));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        subscribe(subscriber, lastEventId);
+        return emitter;
+    }
+
+    void subscribe(Subscriber subscriber, Long lastEventId)
+    {
+        dispatcher.execute(() -> {
+            if (lastEventId != null && !replay(subscriber, lastEventId))
+            {
+                return;
+            }
+            subscribers.add(subscriber);
+        });
+    }
+
+    // the first load, or a store reopened after a restart; there is nothing to compare with
+    @Override
+    public void catalogLoaded(Collection<Product> products)
+    {
+        publishReset();
+    }
+
+    @Override
+    public void catalogReloaded(CatalogSnapshot previous, CatalogSnapshot loaded)
+    {
+        boolean compared = loaded.changesSince(previous, RELOAD_EVENTS, (product, before) -> {
+            if (product == null)
+            {
+                productDeleted(before.getProductId(), before);
+            }
+            else
+            {
+                productSaved(product, before);
+            }
+        });
+        if (!compared)
+        {
+            publishReset();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        productSaved(product, null);
+    }
+
+    @Override
+    public void productDeleted(int productId)
+    {
+        productDeleted(productId, null);
+    }
+
+    @Override
+    public void productSaved(Product product, Product previous)
+    {
+        int categoryId = product.getCategoryId();
+        // a product that moved is also announced to the subscribers of the category it left
+        int[] categories = previous == null || previous.getCategoryId() == categoryId
+                ? new int[]{categoryId}
+                : new int[]{categoryId, previous.getCategoryId()};
+        publish(new ProductChange(ProductChange.SAVED, product.getProductId(), product), categories);
+    }
+
+    @Override
+    public void productDeleted(int productId, Product previous)
+    {
+        publish(new ProductChange(ProductChange.DELETED, productId, null),
+                previous == null ? new int[0] : new int[]{previous.getCategoryId()});
+    }
+
+    /**
+     * Sends a comment to every subscriber. It keeps proxies from closing idle
+     * connections and finds the clients that have gone away.
+     */
+    @Scheduled(fixedRateString = "${products.changes.heartbeat-ms:30000}")
+    public void heartbeat()
+    {
+        dispatcher.execute(() -> sendToAll(Event.HEARTBEAT));
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    // waits until everything handed to the dispatcher so far has been sent; for tests with a single sender thread
+    void awaitDispatch()
+    {
+        try
+        {
+            dispatcher.submit(() -> { }).get();
+            senders.submit(() -> { }).get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void publishReset()
+    {
+        publish(new ProductChange(ProductChange.RESET, 0, null), null);
+    }
+
+    // categories is null for events every subscriber receives
+    private void publish(ProductChange change, int[] categories)
+    {
+        dispatcher.execute(() -> {
+            Event event = new Event(++lastEventId, change, categories);
+            recent[(int) (event.id % REPLAY_SIZE)] = event;
+            sendToAll(event);
+        });
+    }
+
+    private void sendToAll(Event event)
+    {
+        List<Subscriber> gone = new ArrayList<>();
+        for (Subscriber subscriber : subscribers)
+        {
+            if (!subscriber.offer(event, senders))
+            {
+                gone.add(subscriber);
+            }
+        }
+        gone.forEach(subscribers::remove);
+    }
+
+    // false when the subscriber is gone
+    private boolean replay(Subscriber subscriber, long after)
+    {
+        long oldest = Math.max(1, lastEventId - REPLAY_SIZE + 1);
+        if (after < oldest - 1 || after > lastEventId)
+        {
+            // the missed events are no longer kept, or the id is from before a restart
+            return subscriber.offer(new Event(lastEventId, new ProductChange(ProductChange.RESET, 0, null), null), senders);
+        }
+        for (long id = after + 1; id <= lastEventId; id++)
+        {
+            if (!subscriber.offer(recent[(int) (id % REPLAY_SIZE)], senders))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ThreadFactory daemon(String name)
+    {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // null is a heartbeat; calls come from one sender thread at a time
+    interface EventSink
+    {
+        void send(Event event) throws IOException;
+
+        default void close()
+        {
+        }
+    }
+
+    static final class Event
+    {
+        private static final Event HEARTBEAT = new Event(0, null, null);
+
+        final long id;
+        final ProductChange change;
+        private final int[] categoryIds;
+
+        private Event(long id, ProductChange change, int[] categoryIds)
+        {
+            this.id = id;
+            this.change = change;
+            this.categoryIds = categoryIds;
+        }
+    }
+
+    static final class Subscriber
+    {
+        private final Set<Integer> categoryIds;
+        private final Set<Integer> productIds;
+        private final EventSink sink;
+        private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+        // set while a sender thread drains the queue, so events are sent one at a time and in order
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean dropped;
+        // sender only
+        private boolean closed;
+
+        Subscriber(Collection<Integer> categoryIds, Collection<Integer> productIds, EventSink sink)
+        {
+            this.categoryIds = categoryIds == null ? Set.of() : Set.copyOf(categoryIds);
+            this.productIds = productIds == null ? Set.of() : Set.copyOf(productIds);
+            this.sink = sink;
+        }
+
+        // a subscriber with a filter gets the events of its categories and of its products; heartbeats go to all
+        private boolean wants(Event event)
+        {
+            if (event.categoryIds == null || (categoryIds.isEmpty() && productIds.isEmpty()))
+            {
+                return true;
+            }
+            if (productIds.contains(event.change.getProductId()))
+            {
+                return true;
+            }
+            for (int categoryId : event.categoryIds)
+            {
+                if (categoryIds.contains(categoryId)) return true;
+            }
+            return false;
+        }
+
+        // queues the event without waiting; false when the client has gone away or fallen too far behind
+        private boolean offer(Event event, Executor senders)
+        {
+            if (dropped)
+            {
+                return false;
+            }
+            if (!wants(event))
+            {
+                return true;
+            }
+            if (!queue.offer(event))
+            {
+                dropped = true;
+            }
+            if (draining.compareAndSet(false, true))
+            {
+                senders.execute(this::drain);
+            }
+            return !dropped;
+        }
+
+        private void drain()
+        {
+            do
+            {
+                Event event;
+                while (!dropped && (event = queue.poll()) != null)
+                {
+                    try
+                    {
+                        sink.send(event == Event.HEARTBEAT ? null : event);
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        dropped = true;
+                    }
+                }
+                if (dropped && !closed)
+                {
+                    closed = true;
+                    queue.clear();
+                    try
+                    {
+                        sink.close();
+                    }
+                    catch (RuntimeException e)
+                    {
+                        // the connection is gone either way
+                    }
+                }
+                draining.set(false);
+            }
+            // an event queued after the last poll, but before the flag was cleared, is not left behind
+            while (!dropped && !queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.yearup.data.cache;
+
+import org.yearup.models.Product;
+
+import java.util.Collection;
+
+/**
+ * Receives every change the {@link CachedProductDao} applies to its catalog.
+ * Calls are made one at a time, in commit order, while the DAO holds its
+ * write lock, so implementations only need to guard against concurrent
+ * readers.
+ */
+public interface ProductChangeListener
+{
+    /**
+     * The whole catalog was (re)loaded. The products come in product id
+     * order and may be decoded as they are iterated, so implementations
+     * should go through them once and not keep the collection.
+     */
+    void catalogLoaded(Collection<Product> products);
+
+    /**
+     * The catalog was reloaded over an earlier one, after a bulk change or
+     * import. Listeners that only keep the current catalog rebuild from the
+     * loaded snapshot; the previous one stays readable for the call, so the
+     * two can be compared instead.
+     */
+    default void catalogReloaded(CatalogSnapshot previous, CatalogSnapshot loaded)
+    {
+        catalogLoaded(loaded.products());
+    }
+
+    /**
+     * A product was created or updated.
+     */
+    void productSaved(Product product);
+
+    void productDeleted(int productId);
+
+    /**
+     * The DAO's form of {@link #productSaved(Product)}, with what the
+     * catalog held of the product before, or null when it is new.
+     */
+    default void productSaved(Product product, Product previous)
+    {
+        productSaved(product);
+    }
+
+    /**
+     * The DAO's form of {@link #productDeleted(int)}, with what the catalog
+     * held of the product before, or null when it held nothing.
+     */
+    default void productDeleted(int productId, Product previous)
+    {
+        productDeleted(productId);
+    }
+}
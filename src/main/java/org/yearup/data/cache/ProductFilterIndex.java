@@ -0,0 +1,197 @@
+package org.yearup.data.cache;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductQuery;
+import org.yearup.models.Product;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed bitmaps of product ids for the multi-select filters: one per
+ * category, one per color, and one each for featured and in-stock products.
+ *
+ * A selection such as "Black or Gray, in Electronics or Fashion, in stock"
+ * is answered by a union within each filter and an intersection across
+ * them. The bitmaps are keyed by product id rather than snapshot ordinal,
+ * so a write only flips the bits of the one product that changed.
+ */
+@Component
+public class ProductFilterIndex implements ProductChangeListener
+{
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, IdBitmap> categories = new HashMap<>();
+    private final Map<String, IdBitmap> colors = new HashMap<>();
+    private IdBitmap all = new IdBitmap();
+    private IdBitmap featured = new IdBitmap();
+    private IdBitmap inStock = new IdBitmap();
+
+    /**
+     * Evaluates the multi-select filters of the query.
+     */
+    FilterSelection select(ProductQuery query)
+    {
+        lock.readLock().lock();
+        try
+        {
+            IdBitmap categorySelection = union(categories, query.getCategoryIds());
+            IdBitmap colorSelection = union(colors, colorKeys(query.getColors()));
+            IdBitmap flagSelection = null;
+            if (query.getFeatured() != null)
+            {
+                flagSelection = query.getFeatured() ? featured : IdBitmap.andNot(all, featured);
+            }
+            if (query.getInStock() != null)
+            {
+                IdBitmap stock = query.getInStock() ? inStock : IdBitmap.andNot(all, inStock);
+                flagSelection = flagSelection == null ? stock : IdBitmap.and(flagSelection, stock);
+            }
+
+            IdBitmap combined = null;
+            for (IdBitmap selection : new IdBitmap[]{categorySelection, colorSelection, flagSelection})
+            {
+                if (selection != null)
+                {
+                    combined = combined == null ? selection : IdBitmap.and(combined, selection);
+                }
+            }
+
+            return new FilterSelection(ids(categorySelection), ids(colorSelection), ids(flagSelection), ids(combined));
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void catalogLoaded(Collection<Product> products)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            categories.clear();
+            colors.clear();
+            all = new IdBitmap();
+            featured = new IdBitmap();
+            inStock = new IdBitmap();
+            products.forEach(this::add);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(product.getProductId());
+            add(product);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productDeleted(int productId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(productId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Product product)
+    {
+        int id = product.getProductId();
+        all.add(id);
+        int categoryId = product.getCategoryId();
+        categories.computeIfAbsent(categoryId, k -> new IdBitmap()).add(id);
+        String color = CatalogSnapshot.colorKey(product.getColor());
+        if (!color.isEmpty())
+        {
+            colors.computeIfAbsent(color, k -> new IdBitmap()).add(id);
+        }
+        if (product.isFeatured()) featured.add(id);
+        if (product.getStock() > 0) inStock.add(id);
+    }
+
+    private void remove(int productId)
+    {
+        if (!all.contains(productId))
+        {
+            return;
+        }
+
+        // there are only a few categories and colors, so clearing the id from each
+        // costs less than remembering per product where it was indexed
+        all.remove(productId);
+        clear(categories, productId);
+        clear(colors, productId);
+        featured.remove(productId);
+        inStock.remove(productId);
+    }
+
+    private static <K> void clear(Map<K, IdBitmap> bitmaps, int productId)
+    {
+        bitmaps.values().removeIf(bitmap -> {
+            bitmap.remove(productId);
+            return bitmap.isEmpty();
+        });
+    }
+
+    // null when nothing is selected, which means the filter does not apply
+    private static <K> IdBitmap union(Map<K, IdBitmap> bitmaps, Set<K> selected)
+    {
+        if (selected == null || selected.isEmpty())
+        {
+            return null;
+        }
+
+        IdBitmap result = new IdBitmap();
+        for (K key : selected)
+        {
+            IdBitmap bitmap = bitmaps.get(key);
+            if (bitmap != null)
+            {
+                result = IdBitmap.or(result, bitmap);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> colorKeys(Set<String> colors)
+    {
+        if (colors == null)
+        {
+            return null;
+        }
+        Set<String> keys = new HashSet<>();
+        for (String color : colors)
+        {
+            keys.add(CatalogSnapshot.colorKey(color));
+        }
+        return keys;
+    }
+
+    private static int[] ids(IdBitmap bitmap)
+    {
+        return bitmap == null ? null : bitmap.toArray();
+    }
+}
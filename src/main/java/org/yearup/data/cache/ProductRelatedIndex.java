@@ -0,0 +1,454 @@
+package org.yearup.data.cache;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Precomputed "related products" table: for every product, its most similar
+ * products in order, so a lookup is a single map read.
+ *
+ * Similarity blends the same category, the same color, how close the prices
+ * are (on a log scale, so 10 vs 12 is as close as 100 vs 120) and the
+ * description terms two products share, weighted by how rare the terms are.
+ * Comparing every pair is quadratic, so the candidates for a product are only
+ * those that share one of its rarest terms and its nearest neighbours by
+ * price band within its category.
+ *
+ * The table is built in full when the catalog loads. A product change
+ * rescores that product, drops it from the lists it was on (recomputing
+ * those) and offers it to the lists of its own candidates, which keeps the
+ * table current without another full build.
+ */
+@Component
+public class ProductRelatedIndex implements ProductChangeListener
+{
+    private static final int NEIGHBOURS = 12;
+
+    // only the rarest terms of a product pick candidates, and only while few products share them
+    private static final int KEY_TERMS = 8;
+    private static final int MAX_POSTING = 64;
+    private static final int CATEGORY_CANDIDATES = 16;
+
+    private static final double CATEGORY_WEIGHT = 0.4;
+    private static final double TERMS_WEIGHT = 0.35;
+    private static final double PRICE_WEIGHT = 0.15;
+    private static final double COLOR_WEIGHT = 0.1;
+    // one price band per 25% step, and prices 4x apart no longer count as similar
+    private static final double BAND_STEP = Math.log(1.25);
+    private static final double PRICE_RANGE = Math.log(4);
+    private static final int NO_BAND = -1;
+
+    private static final Comparator<Features> BY_ID = Comparator.comparingInt(f -> f.productId);
+    private static final Comparator<Features> BY_BAND = Comparator.<Features>comparingInt(f -> f.band).thenComparing(BY_ID);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Features> products = new HashMap<>();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private int[] documentFrequency = new int[1024];
+    private final Map<Integer, IdBitmap> postings = new HashMap<>();
+    // the products of each category sorted by price band, then id, for the nearest products by price
+    private final Map<Integer, Features[]> categories = new HashMap<>();
+
+    /**
+     * Ids of up to {@code limit} products most related to the given one,
+     * best first. Empty when the product is unknown.
+     */
+    int[] related(int productId, int limit)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Features features = products.get(productId);
+            if (features == null || limit <= 0)
+            {
+                return new int[0];
+            }
+
+            long[] related = features.related;
+            int[] ids = new int[Math.min(limit, related.length)];
+            for (int i = 0; i < ids.length; i++)
+            {
+                ids[i] = productId(related[i]);
+            }
+            return ids;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void catalogLoaded(Collection<Product> catalog)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            products.clear();
+            termIds.clear();
+            documentFrequency = new int[1024];
+            postings.clear();
+            categories.clear();
+
+            // key terms depend on how common each term is, which is only known once every product is in
+            catalog.forEach(product -> products.put(product.getProductId(), features(product)));
+            Map<Integer, List<Features>> byCategory = new HashMap<>();
+            for (Features features : products.values())
+            {
+                chooseKeyTerms(features);
+                indexTerms(features);
+                byCategory.computeIfAbsent(features.categoryId, id -> new ArrayList<>()).add(features);
+            }
+            byCategory.forEach((categoryId, members) -> {
+                Features[] category = members.toArray(new Features[0]);
+                Arrays.sort(category, BY_BAND);
+                categories.put(categoryId, category);
+            });
+            for (Features features : products.values())
+            {
+                features.related = neighbours(features);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(product.getProductId());
+
+            Features features = features(product);
+            chooseKeyTerms(features);
+            products.put(features.productId, features);
+            indexTerms(features);
+            indexCategory(features);
+            features.related = neighbours(features);
+
+            // offer the product to the lists of the products it could be related to
+            for (Features other : candidates(features))
+            {
+                other.related = offer(other.related, features.productId, score(other, features));
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productDeleted(int productId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(productId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // takes the product out of every structure and recomputes the lists it was on
+    private void remove(int productId)
+    {
+        Features features = products.remove(productId);
+        if (features == null)
+        {
+            return;
+        }
+
+        for (int i = 0; i < features.terms.length; i++)
+        {
+            int term = features.terms[i];
+            documentFrequency[term]--;
+            if (i < features.keyTerms)
+            {
+                IdBitmap posting = postings.get(term);
+                posting.remove(productId);
+                if (posting.isEmpty()) postings.remove(term);
+            }
+        }
+        Features[] category = categories.get(features.categoryId);
+        int position = Arrays.binarySearch(category, features, BY_BAND);
+        if (category.length == 1)
+        {
+            categories.remove(features.categoryId);
+        }
+        else
+        {
+            Features[] copy = new Features[category.length - 1];
+            System.arraycopy(category, 0, copy, 0, position);
+            System.arraycopy(category, position + 1, copy, position, copy.length - position);
+            categories.put(features.categoryId, copy);
+        }
+
+        // a scan of the fixed-size lists is cheaper than keeping a reverse index
+        for (Features other : products.values())
+        {
+            if (contains(other.related, productId))
+            {
+                other.related = neighbours(other);
+            }
+        }
+    }
+
+    private Features features(Product product)
+    {
+        List<String> tokens = TextTokenizer.tokenize(product.getName());
+        tokens.addAll(TextTokenizer.tokenize(product.getDescription()));
+
+        int[] terms = new int[tokens.size()];
+        for (int i = 0; i < terms.length; i++)
+        {
+            terms[i] = termIds.computeIfAbsent(tokens.get(i), token -> termIds.size());
+        }
+        terms = Arrays.stream(terms).sorted().distinct().toArray();
+        for (int term : terms)
+        {
+            if (term >= documentFrequency.length)
+            {
+                documentFrequency = Arrays.copyOf(documentFrequency, Math.max(term + 1, documentFrequency.length * 2));
+            }
+            documentFrequency[term]++;
+        }
+
+        BigDecimal price = product.getPrice();
+        double logPrice = price == null || price.signum() <= 0 ? Double.NaN : Math.log(price.doubleValue());
+        String color = CatalogSnapshot.colorKey(product.getColor());
+        return new Features(product.getProductId(), product.getCategoryId(), color.isEmpty() ? null : color, logPrice, terms);
+    }
+
+    // moves the rarest terms to the front, sorted by term id so two products' key terms merge in one pass
+    private void chooseKeyTerms(Features features)
+    {
+        int[] terms = features.terms;
+        Integer[] byRarity = Arrays.stream(terms).boxed().toArray(Integer[]::new);
+        Arrays.sort(byRarity, (a, b) -> documentFrequency[a] != documentFrequency[b]
+                ? Integer.compare(documentFrequency[a], documentFrequency[b])
+                : Integer.compare(a, b));
+
+        features.keyTerms = Math.min(KEY_TERMS, terms.length);
+        for (int i = 0; i < terms.length; i++)
+        {
+            terms[i] = byRarity[i];
+        }
+        Arrays.sort(terms, 0, features.keyTerms);
+
+        // weighted once, with the term counts of the moment, so scoring needs no logarithms
+        features.weights = new double[features.keyTerms];
+        double norm = 0;
+        for (int i = 0; i < features.keyTerms; i++)
+        {
+            features.weights[i] = Math.log(1 + (double) products.size() / Math.max(1, documentFrequency[terms[i]]));
+            norm += features.weights[i] * features.weights[i];
+        }
+        features.norm = Math.sqrt(norm);
+    }
+
+    private void indexTerms(Features features)
+    {
+        for (int i = 0; i < features.keyTerms; i++)
+        {
+            postings.computeIfAbsent(features.terms[i], term -> new IdBitmap()).add(features.productId);
+        }
+    }
+
+    private void indexCategory(Features features)
+    {
+        Features[] category = categories.getOrDefault(features.categoryId, new Features[0]);
+        int position = -(Arrays.binarySearch(category, features, BY_BAND) + 1);
+        Features[] copy = new Features[category.length + 1];
+        System.arraycopy(category, 0, copy, 0, position);
+        copy[position] = features;
+        System.arraycopy(category, position, copy, position + 1, category.length - position);
+        categories.put(features.categoryId, copy);
+    }
+
+    // products that share a rare key term or are nearest by price in the same category, in id order
+    private Features[] candidates(Features features)
+    {
+        Features[] candidates = new Features[KEY_TERMS * MAX_POSTING + 2 * CATEGORY_CANDIDATES];
+        int count = 0;
+        for (int i = 0; i < features.keyTerms; i++)
+        {
+            IdBitmap posting = postings.get(features.terms[i]);
+            if (posting != null && posting.cardinality() <= MAX_POSTING)
+            {
+                for (int id : posting.toArray())
+                {
+                    candidates[count++] = products.get(id);
+                }
+            }
+        }
+
+        Features[] category = categories.get(features.categoryId);
+        if (category != null)
+        {
+            // the product itself may or may not be in the category yet
+            int position = Arrays.binarySearch(category, features, BY_BAND);
+            int below = position >= 0 ? position - 1 : -(position + 1) - 1;
+            int above = position >= 0 ? position + 1 : -(position + 1);
+            for (int i = below; i >= 0 && i > below - CATEGORY_CANDIDATES; i--)
+            {
+                candidates[count++] = category[i];
+            }
+            for (int i = above; i < category.length && i < above + CATEGORY_CANDIDATES; i++)
+            {
+                candidates[count++] = category[i];
+            }
+        }
+
+        Arrays.sort(candidates, 0, count, BY_ID);
+        int distinct = 0;
+        for (int i = 0; i < count; i++)
+        {
+            Features candidate = candidates[i];
+            if (candidate.productId != features.productId && (distinct == 0 || candidates[distinct - 1] != candidate))
+            {
+                candidates[distinct++] = candidate;
+            }
+        }
+        return Arrays.copyOf(candidates, distinct);
+    }
+
+    // the best candidates as (score bits << 32 | product id), best first
+    private long[] neighbours(Features features)
+    {
+        Features[] candidates = candidates(features);
+        long[] scored = new long[candidates.length];
+        int count = 0;
+        for (Features candidate : candidates)
+        {
+            double score = score(features, candidate);
+            if (score > 0)
+            {
+                scored[count++] = entry(score, candidate.productId);
+            }
+        }
+
+        Arrays.sort(scored, 0, count);
+        long[] best = new long[Math.min(count, NEIGHBOURS)];
+        for (int i = 0; i < best.length; i++)
+        {
+            best[i] = scored[count - 1 - i];
+        }
+        return best;
+    }
+
+    // the list with the product put in its place, or the same list when it does not make the cut
+    private static long[] offer(long[] related, int productId, double score)
+    {
+        if (score <= 0)
+        {
+            return related;
+        }
+
+        long entry = entry(score, productId);
+        int position = 0;
+        while (position < related.length && related[position] > entry)
+        {
+            position++;
+        }
+        if (position >= NEIGHBOURS)
+        {
+            return related;
+        }
+
+        long[] copy = new long[Math.min(related.length + 1, NEIGHBOURS)];
+        System.arraycopy(related, 0, copy, 0, position);
+        copy[position] = entry;
+        System.arraycopy(related, position, copy, position + 1, copy.length - position - 1);
+        return copy;
+    }
+
+    private double score(Features a, Features b)
+    {
+        double score = 0;
+        if (a.categoryId == b.categoryId) score += CATEGORY_WEIGHT;
+        if (a.color != null && a.color.equals(b.color)) score += COLOR_WEIGHT;
+        if (!Double.isNaN(a.logPrice) && !Double.isNaN(b.logPrice))
+        {
+            score += PRICE_WEIGHT * Math.max(0, 1 - Math.abs(a.logPrice - b.logPrice) / PRICE_RANGE);
+        }
+        return score + TERMS_WEIGHT * termSimilarity(a, b);
+    }
+
+    // cosine of the idf-weighted key term sets
+    private static double termSimilarity(Features a, Features b)
+    {
+        double shared = 0;
+        for (int i = 0, j = 0; i < a.keyTerms && j < b.keyTerms; )
+        {
+            int termA = a.terms[i];
+            int termB = b.terms[j];
+            if (termA < termB) i++;
+            else if (termA > termB) j++;
+            else shared += a.weights[i++] * b.weights[j++];
+        }
+        return shared == 0 ? 0 : shared / (a.norm * b.norm);
+    }
+
+    // positive float bits sort like the floats, so entries sort by score, then by product id
+    private static long entry(double score, int productId)
+    {
+        return ((long) Float.floatToIntBits((float) score) << 32) | (Integer.MAX_VALUE - productId);
+    }
+
+    private static boolean contains(long[] related, int productId)
+    {
+        for (long entry : related)
+        {
+            if (productId(entry) == productId) return true;
+        }
+        return false;
+    }
+
+    private static int productId(long entry)
+    {
+        return Integer.MAX_VALUE - (int) entry;
+    }
+
+    private static final class Features
+    {
+        private final int productId;
+        private final int categoryId;
+        private final String color;
+        private final double logPrice;
+        private final int band;
+        // distinct term ids; the first keyTerms are the rarest, sorted by id
+        private final int[] terms;
+        private int keyTerms;
+        private double[] weights;
+        private double norm;
+        private long[] related = new long[0];
+
+        private Features(int productId, int categoryId, String color, double logPrice, int[] terms)
+        {
+            this.productId = productId;
+            this.categoryId = categoryId;
+            this.color = color;
+            this.logPrice = logPrice;
+            this.band = Double.isNaN(logPrice) ? NO_BAND : (int) Math.floor(logPrice / BAND_STEP);
+            this.terms = terms;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package org.yearup.data.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CatalogVersion;
+import org.yearup.models.Product;
+import org.yearup.models.ProductSuggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Typeahead over product names.
+ *
+ * Every word start of every name is an entry, so "lam" completes both
+ * "Lamp Shade" and "Brass Desk Lamp". The entries are kept sorted as
+ * (name, offset) pairs into the lowercased names instead of as copied
+ * strings, which makes the structure a flattened suffix-of-words trie: the
+ * entries below a prefix are one contiguous range, found with two binary
+ * searches. A max segment tree over the entry weights then yields the k
+ * most popular entries of that range in O(k log n), however many names
+ * share the prefix. Popularity is the recent views of the product first,
+ * from the {@link ProductViewCounter}, and whether it is featured and in
+ * stock after that.
+ *
+ * Lookups read an immutable {@link Entries} instance that is swapped on
+ * every change. A single product change merges its few entries into the
+ * sorted arrays in linear time instead of sorting everything again; the
+ * slot of a replaced product stays behind unused until the next full load.
+ * New view scores only change the weights, so the entries are not sorted
+ * again; the weights and the tree over them are rebuilt in linear time,
+ * and the ranking version of the {@link CatalogVersion} is bumped so cached
+ * suggestions are revalidated.
+ */
+@Component
+public class ProductSuggestIndex implements ProductChangeListener, ProductViewListener
+{
+    // the view rank sits above the other popularity (bits 40-41) and below the sign bit
+    private static final int VIEW_RANK_BITS = 21;
+
+    private volatile Entries entries = Entries.build(List.of(), Map.of());
+    // guarded by this, like every change to the entries; lookups only read the entries
+    private Map<Integer, Double> views = Map.of();
+    private final CatalogVersion catalogVersion;
+
+    @Autowired
+    public ProductSuggestIndex(CatalogVersion catalogVersion)
+    {
+        this.catalogVersion = catalogVersion;
+    }
+
+    ProductSuggestIndex()
+    {
+        this(new CatalogVersion());
+    }
+
+    /**
+     * Returns up to {@code limit} distinct products whose name has a word
+     * starting with the prefix, most popular first.
+     */
+    List<ProductSuggestion> suggest(String prefix, int limit)
+    {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0)
+        {
+            return List.of();
+        }
+        return entries.top(key, limit);
+    }
+
+    @Override
+    public synchronized void catalogLoaded(Collection<Product> catalog)
+    {
+        entries = Entries.build(catalog, views);
+    }
+
+    @Override
+    public synchronized void productSaved(Product product)
+    {
+        entries = entries.with(product, views);
+    }
+
+    @Override
+    public synchronized void productDeleted(int productId)
+    {
+        entries = entries.without(productId);
+    }
+
+    @Override
+    public synchronized void viewsScored(Map<Integer, Double> scores)
+    {
+        views = scores;
+        entries = entries.withViews(scores);
+        catalogVersion.bumpRanking();
+    }
+
+    /**
+     * Higher is more popular. Featured products come first, then products
+     * that are in stock; recent views outrank both, see {@link #viewRank}.
+     */
+    static int popularity(Product product)
+    {
+        return (product.isFeatured() ? 2 : 0) + (product.getStock() > 0 ? 1 : 0);
+    }
+
+    /**
+     * The view score on a log scale, so scores from a few views to millions
+     * fit the weight bits and still rank in order.
+     */
+    static int viewRank(Double score)
+    {
+        if (score == null || score <= 0)
+        {
+            return 0;
+        }
+        return (int) Math.min(Math.round(Math.log1p(score) * 64), (1 << VIEW_RANK_BITS) - 1);
+    }
+
+    private static String normalize(String text)
+    {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entries
+    {
+        // per slot, one slot per product; slots left behind by a change hold product id -1
+        private final int[] productIds;
+        private final String[] names;
+        private final String[] keys;
+        private final int[] popularity;
+        private final int[] views;
+
+        // entries in (key suffix) order
+        private final int[] entrySlot;
+        private final int[] entryOffset;
+        private final long[] entryWeight;
+
+        // tree[node] is the entry with the highest weight below node; leaves start at leafBase
+        private final int[] tree;
+        private final int leafBase;
+
+        private Entries(int[] productIds, String[] names, String[] keys, int[] popularity, int[] views,
+                        int[] entrySlot, int[] entryOffset)
+        {
+            this.productIds = productIds;
+            this.names = names;
+            this.keys = keys;
+            this.popularity = popularity;
+            this.views = views;
+            this.entrySlot = entrySlot;
+            this.entryOffset = entryOffset;
+
+            this.entryWeight = new long[entrySlot.length];
+            for (int i = 0; i < entrySlot.length; i++)
+            {
+                int slot = entrySlot[i];
+                // views first, then the other popularity, then a match at the start of the name, then the shorter name
+                int atStart = entryOffset[i] == 0 ? 1 : 0;
+                entryWeight[i] = ((long) views[slot] << 42)
+                        | ((long) popularity[slot] << 40)
+                        | ((long) atStart << 32)
+                        | (Integer.MAX_VALUE - keys[slot].length());
+            }
+
+            int base = 1;
+            while (base < entrySlot.length)
+            {
+                base <<= 1;
+            }
+            this.leafBase = base;
+            this.tree = new int[2 * base];
+            for (int i = 0; i < base; i++)
+            {
+                tree[base + i] = i < entrySlot.length ? i : -1;
+            }
+            for (int node = base - 1; node >= 1; node--)
+            {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        static Entries build(Collection<Product> catalog, Map<Integer, Double> scores)
+        {
+            int count = catalog.size();
+            int[] productIds = new int[count];
+            String[] names = new String[count];
+            String[] keys = new String[count];
+            int[] popularity = new int[count];
+            int[] views = new int[count];
+
+            List<int[]> entries = new ArrayList<>();
+            int slot = 0;
+            for (Product product : catalog)
+            {
+                fill(slot, product, scores, productIds, names, keys, popularity, views);
+                addWordStarts(slot, keys[slot], entries);
+                slot++;
+            }
+            entries.sort((a, b) -> compareSuffixes(keys[a[0]], a[1], keys[b[0]], b[1]));
+
+            int[] entrySlot = new int[entries.size()];
+            int[] entryOffset = new int[entries.size()];
+            for (int i = 0; i < entrySlot.length; i++)
+            {
+                entrySlot[i] = entries.get(i)[0];
+                entryOffset[i] = entries.get(i)[1];
+            }
+            return new Entries(productIds, names, keys, popularity, views, entrySlot, entryOffset);
+        }
+
+        Entries with(Product product, Map<Integer, Double> scores)
+        {
+            int slot = productIds.length;
+            int[] ids = Arrays.copyOf(productIds, slot + 1);
+            String[] newNames = Arrays.copyOf(names, slot + 1);
+            String[] newKeys = Arrays.copyOf(keys, slot + 1);
+            int[] newPopularity = Arrays.copyOf(popularity, slot + 1);
+            int[] newViews = Arrays.copyOf(views, slot + 1);
+            int replaced = slotOf(product.getProductId());
+            if (replaced >= 0)
+            {
+                ids[replaced] = -1;
+            }
+            fill(slot, product, scores, ids, newNames, newKeys, newPopularity, newViews);
+
+            List<int[]> added = new ArrayList<>();
+            addWordStarts(slot, newKeys[slot], added);
+            added.sort((a, b) -> compareSuffixes(newKeys[a[0]], a[1], newKeys[b[0]], b[1]));
+
+            return merge(ids, newNames, newKeys, newPopularity, newViews, replaced, added);
+        }
+
+        Entries without(int productId)
+        {
+            int removed = slotOf(productId);
+            if (removed < 0)
+            {
+                return this;
+            }
+            int[] ids = productIds.clone();
+            ids[removed] = -1;
+            return merge(ids, names, keys, popularity, views, removed, List.of());
+        }
+
+        // the same entries in the same order, weighed by the new view scores
+        Entries withViews(Map<Integer, Double> scores)
+        {
+            int[] newViews = new int[productIds.length];
+            for (int slot = 0; slot < productIds.length; slot++)
+            {
+                newViews[slot] = productIds[slot] < 0 ? 0 : viewRank(scores.get(productIds[slot]));
+            }
+            return new Entries(productIds, names, keys, popularity, newViews, entrySlot, entryOffset);
+        }
+
+        // a scan over a primitive array is cheaper than copying an id map on every change
+        private int slotOf(int productId)
+        {
+            for (int slot = 0; slot < productIds.length; slot++)
+            {
+                if (productIds[slot] == productId)
+                {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        // copies the sorted entries without those of removedSlot, merging the sorted added entries in
+        private Entries merge(int[] ids, String[] newNames, String[] newKeys, int[] newPopularity, int[] newViews,
+                              int removedSlot, List<int[]> added)
+        {
+            int capacity = entrySlot.length + added.size();
+            int[] slots = new int[capacity];
+            int[] offsets = new int[capacity];
+            int count = 0;
+            int next = 0;
+
+            for (int i = 0; i < entrySlot.length; i++)
+            {
+                if (entrySlot[i] == removedSlot)
+                {
+                    continue;
+                }
+                while (next < added.size()
+                        && compareSuffixes(newKeys[added.get(next)[0]], added.get(next)[1], keys[entrySlot[i]], entryOffset[i]) < 0)
+                {
+                    slots[count] = added.get(next)[0];
+                    offsets[count++] = added.get(next++)[1];
+                }
+                slots[count] = entrySlot[i];
+                offsets[count++] = entryOffset[i];
+            }
+            while (next < added.size())
+            {
+                slots[count] = added.get(next)[0];
+                offsets[count++] = added.get(next++)[1];
+            }
+
+            return new Entries(ids, newNames, newKeys, newPopularity, newViews,
+                               Arrays.copyOf(slots, count), Arrays.copyOf(offsets, count));
+        }
+
+        private static void fill(int slot, Product product, Map<Integer, Double> scores,
+                                 int[] productIds, String[] names, String[] keys, int[] popularity, int[] views)
+        {
+            productIds[slot] = product.getProductId();
+            names[slot] = product.getName();
+            keys[slot] = normalize(product.getName());
+            popularity[slot] = popularity(product);
+            views[slot] = viewRank(scores.get(product.getProductId()));
+        }
+
+        private static void addWordStarts(int slot, String key, List<int[]> entries)
+        {
+            for (int i = 0; i < key.length(); i++)
+            {
+                boolean wordStart = Character.isLetterOrDigit(key.charAt(i))
+                        && (i == 0 || !Character.isLetterOrDigit(key.charAt(i - 1)));
+                if (wordStart)
+                {
+                    entries.add(new int[]{slot, i});
+                }
+            }
+        }
+
+        List<ProductSuggestion> top(String prefix, int limit)
+        {
+            int from = lowerBound(prefix);
+            int to = upperBound(prefix, from);
+            if (from >= to)
+            {
+                return List.of();
+            }
+
+            // best-first walk: take the top entry of a range, then split the range around it
+            PriorityQueue<long[]> ranges = new PriorityQueue<>((a, b) -> Long.compare(entryWeight[(int) b[2]], entryWeight[(int) a[2]]));
+            ranges.add(new long[]{from, to, best(from, to)});
+
+            List<ProductSuggestion> suggestions = new ArrayList<>(limit);
+            Set<Integer> seen = new HashSet<>();
+            while (!ranges.isEmpty() && suggestions.size() < limit)
+            {
+                long[] range = ranges.poll();
+                int lo = (int) range[0];
+                int hi = (int) range[1];
+                int entry = (int) range[2];
+
+                int slot = entrySlot[entry];
+                if (seen.add(slot))
+                {
+                    suggestions.add(new ProductSuggestion(productIds[slot], names[slot]));
+                }
+                if (lo < entry)
+                {
+                    ranges.add(new long[]{lo, entry, best(lo, entry)});
+                }
+                if (entry + 1 < hi)
+                {
+                    ranges.add(new long[]{entry + 1, hi, best(entry + 1, hi)});
+                }
+            }
+            return suggestions;
+        }
+
+        // the entry with the highest weight in [from, to)
+        private int best(int from, int to)
+        {
+            int result = -1;
+            for (int lo = from + leafBase, hi = to + leafBase; lo < hi; lo >>= 1, hi >>= 1)
+            {
+                if ((lo & 1) == 1) result = better(result, tree[lo++]);
+                if ((hi & 1) == 1) result = better(result, tree[--hi]);
+            }
+            return result;
+        }
+
+        private int better(int a, int b)
+        {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            return entryWeight[b] > entryWeight[a] ? b : a;
+        }
+
+        // first entry whose suffix is >= the prefix
+        private int lowerBound(String prefix)
+        {
+            int lo = 0;
+            int hi = entrySlot.length;
+            while (lo < hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                if (comparePrefix(mid, prefix) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // first entry from 'from' whose suffix no longer starts with the prefix
+        private int upperBound(String prefix, int from)
+        {
+            int lo = from;
+            int hi = entrySlot.length;
+            while (lo < hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                if (comparePrefix(mid, prefix) <= 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // compares the entry's suffix, cut to the prefix length, with the prefix
+        private int comparePrefix(int entry, String prefix)
+        {
+            String key = keys[entrySlot[entry]];
+            int offset = entryOffset[entry];
+            int length = Math.min(prefix.length(), key.length() - offset);
+            for (int i = 0; i < length; i++)
+            {
+                int diff = key.charAt(offset + i) - prefix.charAt(i);
+                if (diff != 0)
+                {
+                    return diff;
+                }
+            }
+            return length - prefix.length();
+        }
+
+        private static int compareSuffixes(String a, int aOffset, String b, int bOffset)
+        {
+            int length = Math.min(a.length() - aOffset, b.length() - bOffset);
+            for (int i = 0; i < length; i++)
+            {
+                int diff = a.charAt(aOffset + i) - b.charAt(bOffset + i);
+                if (diff != 0)
+                {
+                    return diff;
+                }
+            }
+            return (a.length() - aOffset) - (b.length() - bOffset);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package org.yearup.data.cache;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over product names and descriptions, ranked with BM25.
+ *
+ * Every term maps to a posting list of (product id, term frequency) sorted
+ * by product id. A query matches products that contain all of its terms;
+ * the lists are intersected starting from the rarest one, so the cost
+ * follows the rarest term rather than the catalog size. Name terms count
+ * double, which is a cheap stand-in for per-field weighting.
+ */
+@Component
+public class ProductTextIndex implements ProductChangeListener
+{
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 2;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private long totalLength;
+
+    /**
+     * Returns the products containing every term of the query, best first.
+     */
+    TextMatches search(String query)
+    {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextTokenizer.tokenize(query)));
+        if (terms.isEmpty())
+        {
+            return TextMatches.NONE;
+        }
+
+        lock.readLock().lock();
+        try
+        {
+            Postings[] lists = new Postings[terms.size()];
+            for (int i = 0; i < lists.length; i++)
+            {
+                lists[i] = postings.get(terms.get(i));
+                if (lists[i] == null)
+                {
+                    return TextMatches.NONE;
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+
+            int documentCount = documents.size();
+            double averageLength = documentCount == 0 ? 1 : (double) totalLength / documentCount;
+            double[] idf = new double[lists.length];
+            for (int i = 0; i < lists.length; i++)
+            {
+                idf[i] = Math.log(1 + (documentCount - lists[i].size + 0.5) / (lists[i].size + 0.5));
+            }
+
+            // score key sorts ascending as (score descending, product id ascending)
+            long[] keys = new long[lists[0].size];
+            int matches = 0;
+            int[] cursors = new int[lists.length];
+
+            candidates:
+            for (int c = 0; c < lists[0].size; c++)
+            {
+                int productId = lists[0].productIds[c];
+                for (int i = 1; i < lists.length; i++)
+                {
+                    int position = lists[i].seek(productId, cursors[i]);
+                    if (position >= lists[i].size) break candidates;
+                    cursors[i] = position;
+                    if (lists[i].productIds[position] != productId) continue candidates;
+                }
+
+                double lengthNorm = K1 * (1 - B + B * documents.get(productId).length / averageLength);
+                double score = idf[0] * bm25(lists[0].frequencies[c], lengthNorm);
+                for (int i = 1; i < lists.length; i++)
+                {
+                    score += idf[i] * bm25(lists[i].frequencies[cursors[i]], lengthNorm);
+                }
+
+                int scoreBits = Float.floatToIntBits((float) score);
+                keys[matches++] = ((long) (Integer.MAX_VALUE - scoreBits) << 32) | (productId & 0xFFFFFFFFL);
+            }
+
+            Arrays.sort(keys, 0, matches);
+            int[] productIds = new int[matches];
+            float[] scores = new float[matches];
+            for (int i = 0; i < matches; i++)
+            {
+                productIds[i] = (int) keys[i];
+                scores[i] = Float.intBitsToFloat(Integer.MAX_VALUE - (int) (keys[i] >>> 32));
+            }
+            return new TextMatches(productIds, scores);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean containsTerm(String term)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return postings.containsKey(term);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void catalogLoaded(Collection<Product> products)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+
+            // the catalog arrives in id order, which lets every posting list grow by appending
+            products.forEach(this::add);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(product.getProductId());
+            add(product);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productDeleted(int productId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(productId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Product product)
+    {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : TextTokenizer.tokenize(product.getName()))
+        {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : TextTokenizer.tokenize(product.getDescription()))
+        {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+
+        int length = 0;
+        String[] terms = new String[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet())
+        {
+            Postings list = postings.computeIfAbsent(entry.getKey(), k -> new Postings());
+            list.put(product.getProductId(), entry.getValue());
+            terms[i++] = entry.getKey();
+            length += entry.getValue();
+        }
+
+        documents.put(product.getProductId(), new Document(length, terms));
+        totalLength += length;
+    }
+
+    private void remove(int productId)
+    {
+        Document document = documents.remove(productId);
+        if (document == null)
+        {
+            return;
+        }
+
+        for (String term : document.terms)
+        {
+            Postings list = postings.get(term);
+            list.remove(productId);
+            if (list.size == 0)
+            {
+                postings.remove(term);
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    private static double bm25(int frequency, double lengthNorm)
+    {
+        return frequency * (K1 + 1) / (frequency + lengthNorm);
+    }
+
+    private static final class Document
+    {
+        private final int length;
+        private final String[] terms;
+
+        private Document(int length, String[] terms)
+        {
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+
+    private static final class Postings
+    {
+        private int[] productIds = new int[2];
+        private int[] frequencies = new int[2];
+        private int size;
+
+        // first position at or after from whose product id is >= productId
+        private int seek(int productId, int from)
+        {
+            int low = from;
+            int high = size;
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if (productIds[mid] < productId) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        private void put(int productId, int frequency)
+        {
+            int position = seek(productId, 0);
+            if (position < size && productIds[position] == productId)
+            {
+                frequencies[position] = frequency;
+                return;
+            }
+
+            if (size == productIds.length)
+            {
+                productIds = Arrays.copyOf(productIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(productIds, position, productIds, position + 1, size - position);
+            System.arraycopy(frequencies, position, frequencies, position + 1, size - position);
+            productIds[position] = productId;
+            frequencies[position] = frequency;
+            size++;
+        }
+
+        private void remove(int productId)
+        {
+            int position = seek(productId, 0);
+            if (position < size && productIds[position] == productId)
+            {
+                System.arraycopy(productIds, position + 1, productIds, position, size - position - 1);
+                System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package org.yearup.data.cache;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spelling correction for product search, built over the distinct words of
+ * product names.
+ *
+ * Every word is indexed by its trigrams ("$$l", "$la", "lap", ... "op$").
+ * A misspelled query word is looked up by its own trigrams: a word within
+ * edit distance k can have lost at most 3k of them, so only words sharing
+ * enough trigrams (and of a close enough length) are candidates, and only
+ * those are checked with a banded Levenshtein distance. The work depends on
+ * the size of the name vocabulary, which grows far slower than the catalog,
+ * so it stays cheap at a million products.
+ */
+@Component
+public class ProductTrigramIndex implements ProductChangeListener
+{
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    // number of products whose name contains the term; terms that drop to 0 stay but never match
+    private int[] productCounts = new int[16];
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final Map<Integer, int[]> productTerms = new HashMap<>();
+    // one counter per term, reused between queries on the same thread
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[0]);
+
+    /**
+     * Replaces every query word that is not a known word with the closest
+     * product name word, or keeps it when there is none close enough.
+     *
+     * @param known words that need no correction, such as description terms
+     */
+    String correct(String query, TermLookup known)
+    {
+        List<String> words = TextTokenizer.tokenize(query);
+        StringBuilder corrected = new StringBuilder();
+
+        lock.readLock().lock();
+        try
+        {
+            for (String word : words)
+            {
+                String replacement = known.contains(word) ? word : closest(word);
+                if (corrected.length() > 0)
+                {
+                    corrected.append(' ');
+                }
+                corrected.append(replacement == null ? word : replacement);
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return corrected.toString();
+    }
+
+    interface TermLookup
+    {
+        boolean contains(String term);
+    }
+
+    /**
+     * Edits allowed for a word: none for very short words, where a single
+     * edit changes the meaning, one for short words and two beyond that.
+     */
+    static int maxEdits(int length)
+    {
+        if (length < MIN_FUZZY_LENGTH) return 0;
+        return length <= 5 ? 1 : 2;
+    }
+
+    // callers hold the read lock
+    private String closest(String word)
+    {
+        Integer exact = termIds.get(word);
+        if (exact != null && productCounts[exact] > 0)
+        {
+            return word;
+        }
+
+        int maxEdits = maxEdits(word.length());
+        if (maxEdits == 0)
+        {
+            return null;
+        }
+
+        long[] grams = distinct(grams(word));
+        int needed = grams.length - 3 * maxEdits;
+
+        // shared trigram counts per term; every counter that is touched is reset below
+        int[] shared = scratch.get();
+        if (shared.length < terms.size())
+        {
+            shared = new int[Math.max(terms.size(), shared.length * 2)];
+            scratch.set(shared);
+        }
+        int[] touched = new int[16];
+        int touchedCount = 0;
+
+        for (long gram : grams)
+        {
+            Postings list = trigrams.get(gram);
+            if (list == null)
+            {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++)
+            {
+                int term = list.termIds[i];
+                if (shared[term]++ == 0)
+                {
+                    if (touchedCount == touched.length)
+                    {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = term;
+                }
+            }
+        }
+
+        String best = null;
+        int bestDistance = maxEdits + 1;
+        int bestCount = 0;
+        for (int t = 0; t < touchedCount; t++)
+        {
+            int term = touched[t];
+            int count = shared[term];
+            shared[term] = 0;
+
+            String candidate = terms.get(term);
+            if (count < needed
+                    || productCounts[term] == 0
+                    || Math.abs(candidate.length() - word.length()) > maxEdits)
+            {
+                continue;
+            }
+
+            int distance = distance(word, candidate, Math.min(maxEdits, bestDistance));
+            if (distance < bestDistance || (distance == bestDistance && productCounts[term] > bestCount))
+            {
+                best = candidate;
+                bestDistance = distance;
+                bestCount = productCounts[term];
+            }
+        }
+        return bestDistance <= maxEdits ? best : null;
+    }
+
+    /**
+     * Levenshtein distance between a and b, or max + 1 once it is known to
+     * exceed max. Only the diagonal band of width 2 * max + 1 is computed.
+     */
+    static int distance(String a, String b, int max)
+    {
+        if (Math.abs(a.length() - b.length()) > max)
+        {
+            return max + 1;
+        }
+
+        int infinity = max + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+        {
+            previous[j] = j <= max ? j : infinity;
+        }
+
+        for (int i = 1; i <= a.length(); i++)
+        {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            Arrays.fill(current, infinity);
+            current[0] = i <= max ? i : infinity;
+
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++)
+            {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, infinity);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max)
+            {
+                return infinity;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    @Override
+    public void catalogLoaded(Collection<Product> products)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            termIds.clear();
+            terms.clear();
+            productCounts = new int[16];
+            trigrams.clear();
+            productTerms.clear();
+            products.forEach(this::add);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(product.getProductId());
+            add(product);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productDeleted(int productId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(productId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Product product)
+    {
+        int[] ids = TextTokenizer.tokenize(product.getName()).stream()
+                                 .distinct()
+                                 .mapToInt(this::termId)
+                                 .toArray();
+        for (int id : ids)
+        {
+            productCounts[id]++;
+        }
+        productTerms.put(product.getProductId(), ids);
+    }
+
+    private void remove(int productId)
+    {
+        int[] ids = productTerms.remove(productId);
+        if (ids != null)
+        {
+            for (int id : ids)
+            {
+                productCounts[id]--;
+            }
+        }
+    }
+
+    private int termId(String term)
+    {
+        Integer id = termIds.get(term);
+        if (id != null)
+        {
+            return id;
+        }
+
+        int newId = terms.size();
+        termIds.put(term, newId);
+        terms.add(term);
+        if (newId == productCounts.length)
+        {
+            productCounts = Arrays.copyOf(productCounts, newId * 2);
+        }
+        for (long gram : distinct(grams(term)))
+        {
+            trigrams.computeIfAbsent(gram, g -> new Postings()).add(newId);
+        }
+        return newId;
+    }
+
+    // trigrams of "$$" + word + "$", each packed into a long
+    private static long[] grams(String word)
+    {
+        String padded = "$$" + word + "$";
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++)
+        {
+            grams[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        return grams;
+    }
+
+    private static long[] distinct(long[] values)
+    {
+        return Arrays.stream(values).distinct().toArray();
+    }
+
+    private static final class Postings
+    {
+        private int[] termIds = new int[4];
+        private int size;
+
+        private void add(int termId)
+        {
+            if (size == termIds.length)
+            {
+                termIds = Arrays.copyOf(termIds, size * 2);
+            }
+            termIds[size++] = termId;
+        }
+    }
+}
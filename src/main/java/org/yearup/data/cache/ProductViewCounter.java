@@ -0,0 +1,257 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductViewDao;
+import org.yearup.models.Product;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts product views in memory and ranks the products viewed most lately.
+ *
+ * A view is one {@link LongAdder} increment. The adder spreads concurrent
+ * increments over per-thread cells, so requests for the same product never
+ * contend, and recording a view does no database work at all. A scheduled
+ * flush takes the views counted since the last flush, adds them to the
+ * product_views table in one batch, and folds them into an exponentially
+ * decayed score per product, so a view loses half its weight every half-life.
+ * The products with the highest scores are the trending list, rebuilt on
+ * every flush.
+ *
+ * On the first flush the scores are seeded from the hourly counts in the
+ * database, so a restart does not empty the trending list. The scores of all
+ * products are handed to the {@link ProductViewListener}s after every flush.
+ *
+ * A product whose score has decayed to almost nothing, and whose views are
+ * all saved, is dropped from memory; so is a deleted product. A view that is
+ * counted on a dropped entry while the flush removes it is moved to a new
+ * entry by the next flush.
+ */
+@Component
+public class ProductViewCounter implements ProductChangeListener
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ProductViewCounter.class);
+
+    // products kept in the trending list
+    static final int TRENDING = 100;
+    // views older than this many half-lives weigh less than 1/256 of a new one and are not loaded
+    private static final int SEED_HALF_LIVES = 8;
+    // products scored lower, like one view that old, are dropped
+    private static final double MIN_SCORE = Math.pow(0.5, SEED_HALF_LIVES);
+
+    private final ProductViewDao viewDao;
+    private final double halfLifeMillis;
+    private final LongSupplier clock;
+    private final List<ProductViewListener> listeners;
+    private final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+    private volatile List<Integer> trending = List.of();
+    // only used by the flush, which never runs concurrently with itself
+    private long scoredAt;
+    private boolean seeded;
+    private Map<Integer, Counter> dropped = Map.of();
+
+    @Autowired
+    public ProductViewCounter(ProductViewDao viewDao, @Value("${products.trending.half-life-minutes:180}") long halfLifeMinutes,
+                              List<ProductViewListener> listeners)
+    {
+        this(viewDao, TimeUnit.MINUTES.toMillis(halfLifeMinutes), System::currentTimeMillis, listeners);
+    }
+
+    ProductViewCounter(ProductViewDao viewDao, long halfLifeMillis, LongSupplier clock)
+    {
+        this(viewDao, halfLifeMillis, clock, List.of());
+    }
+
+    ProductViewCounter(ProductViewDao viewDao, long halfLifeMillis, LongSupplier clock, List<ProductViewListener> listeners)
+    {
+        this.viewDao = viewDao;
+        this.halfLifeMillis = halfLifeMillis;
+        this.clock = clock;
+        this.listeners = listeners;
+        this.scoredAt = clock.getAsLong();
+    }
+
+    /**
+     * Counts one view of the product.
+     */
+    public void record(int productId)
+    {
+        Counter counter = counters.get(productId);
+        if (counter == null)
+        {
+            counter = counters.computeIfAbsent(productId, id -> new Counter());
+        }
+        counter.views.increment();
+    }
+
+    /**
+     * Up to {@code limit} product ids, the most viewed lately first.
+     */
+    public List<Integer> trending(int limit)
+    {
+        List<Integer> current = trending;
+        return current.subList(0, Math.max(0, Math.min(limit, current.size())));
+    }
+
+    // the products with a counter in memory
+    int size()
+    {
+        return counters.size();
+    }
+
+    /**
+     * Writes the views counted since the last flush to the database and
+     * recomputes the trending list.
+     */
+    @Scheduled(fixedDelayString = "${products.views.flush-ms:10000}")
+    public synchronized void flush()
+    {
+        long now = clock.getAsLong();
+        if (!seeded)
+        {
+            seed(now);
+            seeded = true;
+        }
+        // views counted on an entry while it was being dropped
+        dropped.forEach((productId, counter) -> {
+            long late = counter.views.sum() - counter.flushed;
+            if (late > 0)
+            {
+                counters.computeIfAbsent(productId, id -> new Counter()).views.add(late);
+            }
+        });
+
+        double decay = weight(now - scoredAt);
+        scoredAt = now;
+        Map<Integer, Long> batch = new HashMap<>();
+        Map<Counter, Long> totals = new HashMap<>();
+        Map<Integer, Double> scores = new HashMap<>();
+        Map<Integer, Counter> drop = new HashMap<>();
+        PriorityQueue<Map.Entry<Integer, Counter>> top = new PriorityQueue<>(
+                Comparator.comparingDouble((Map.Entry<Integer, Counter> entry) -> entry.getValue().score)
+                          .thenComparing(Map.Entry::getKey, Comparator.reverseOrder()));
+
+        for (Map.Entry<Integer, Counter> entry : counters.entrySet())
+        {
+            Counter counter = entry.getValue();
+            // the adder is never reset, so a view counted while it is read is never lost
+            long total = counter.views.sum();
+            counter.score = counter.score * decay + (total - counter.scored);
+            counter.scored = total;
+            if (total > counter.flushed)
+            {
+                batch.put(entry.getKey(), total - counter.flushed);
+                totals.put(counter, total);
+            }
+
+            if (counter.score >= MIN_SCORE)
+            {
+                scores.put(entry.getKey(), counter.score);
+                top.add(entry);
+                if (top.size() > TRENDING) top.poll();
+            }
+            else if (total == counter.flushed && counters.remove(entry.getKey(), counter))
+            {
+                drop.put(entry.getKey(), counter);
+            }
+        }
+        dropped = drop;
+
+        List<Integer> ranked = new ArrayList<>(top.size());
+        while (!top.isEmpty())
+        {
+            ranked.add(top.poll().getKey());
+        }
+        Collections.reverse(ranked);
+        trending = List.copyOf(ranked);
+        Map<Integer, Double> scored = Collections.unmodifiableMap(scores);
+        listeners.forEach(listener -> listener.viewsScored(scored));
+
+        try
+        {
+            viewDao.addViews(Instant.ofEpochMilli(now).truncatedTo(ChronoUnit.HOURS), batch);
+            totals.forEach((counter, total) -> counter.flushed = total);
+        }
+        catch (RuntimeException e)
+        {
+            // the views stay pending and go with the next flush
+            LOG.warn("Unable to save product views", e);
+        }
+    }
+
+    @Override
+    public void catalogLoaded(Collection<Product> products)
+    {
+        IdBitmap ids = IdBitmap.of();
+        products.forEach(product -> ids.add(product.getProductId()));
+        counters.keySet().removeIf(productId -> !ids.contains(productId));
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+    }
+
+    @Override
+    public void productDeleted(int productId)
+    {
+        counters.remove(productId);
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        flush();
+    }
+
+    private void seed(long now)
+    {
+        try
+        {
+            Instant since = Instant.ofEpochMilli(now - (long) (halfLifeMillis * SEED_HALF_LIVES));
+            viewDao.streamViews(since, (productId, hour, views) -> {
+                // the views of an hour are taken to have happened in the middle of it
+                long age = Math.max(0, now - hour.toEpochMilli() - TimeUnit.MINUTES.toMillis(30));
+                counters.computeIfAbsent(productId, id -> new Counter()).score += views * weight(age);
+            });
+        }
+        catch (RuntimeException e)
+        {
+            // trending starts from the views counted from now on
+            LOG.warn("Unable to load product views", e);
+        }
+    }
+
+    private double weight(long ageMillis)
+    {
+        return Math.pow(0.5, ageMillis / halfLifeMillis);
+    }
+
+    private static final class Counter
+    {
+        private final LongAdder views = new LongAdder();
+        // the rest is only used by the flush
+        private long scored;
+        private long flushed;
+        private double score;
+    }
+}
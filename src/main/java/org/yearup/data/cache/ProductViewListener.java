@@ -0,0 +1,16 @@
+package org.yearup.data.cache;
+
+import java.util.Map;
+
+/**
+ * Receives the decayed view scores of the {@link ProductViewCounter} after
+ * every flush. Calls come from the flush, one at a time.
+ */
+public interface ProductViewListener
+{
+    /**
+     * The current score of every product viewed lately, by product id.
+     * Products missing from the map have no recent views.
+     */
+    void viewsScored(Map<Integer, Double> scores);
+}
@@ -0,0 +1,34 @@
+package org.yearup.data.cache;
+
+/**
+ * Products matching a text query, best match first. Ties are broken by
+ * ascending product id so the order is stable between requests.
+ */
+final class TextMatches
+{
+    static final TextMatches NONE = new TextMatches(new int[0], new float[0]);
+
+    private final int[] productIds;
+    private final float[] scores;
+
+    TextMatches(int[] productIds, float[] scores)
+    {
+        this.productIds = productIds;
+        this.scores = scores;
+    }
+
+    int size()
+    {
+        return productIds.length;
+    }
+
+    int productId(int position)
+    {
+        return productIds[position];
+    }
+
+    float score(int position)
+    {
+        return scores[position];
+    }
+}
@@ -0,0 +1,53 @@
+package org.yearup.data.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits product text into lower-case word tokens. Anything that is not a
+ * letter or digit separates words, and a few very common English words are
+ * dropped because they carry no ranking signal.
+ */
+final class TextTokenizer
+{
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "this", "to", "with", "your", "you", "all"
+    );
+
+    private TextTokenizer()
+    {
+    }
+
+    static List<String> tokenize(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        if (text == null)
+        {
+            return tokens;
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++)
+        {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0)
+            {
+                start = i;
+            }
+            else if (!wordChar && start >= 0)
+            {
+                String token = lower.substring(start, i);
+                if (!STOP_WORDS.contains(token))
+                {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
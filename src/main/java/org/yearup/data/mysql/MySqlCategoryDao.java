@@ -1,9 +1,11 @@
 package org.yearup.data.mysql;
 
-import org.apache.ibatis.jdbc.SQL;
 import org.springframework.stereotype.Component;
 import org.yearup.data.CategoryDao;
+import org.yearup.data.CategoryTree;
 import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
+import org.yearup.data.mysql.ResultSetMapper.Type;
 
 import javax.sql.DataSource;
 import java.sql.*;
@@ -13,6 +15,13 @@ import java.util.List;
 @Component
 public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
 {
+    private static final ResultSetMapper<Category> CATEGORY_MAPPER = ResultSetMapper.of(Category.class,
+            "category_id", Type.INTEGER,
+            "name", Type.STRING,
+            "description", Type.STRING,
+            "parent_category_id", Type.INTEGER);
+    private static final String COLUMNS = "category_id, name, description, parent_category_id";
+
     private final Connection connection;
 
     public MySqlCategoryDao(DataSource dataSource) throws SQLException
@@ -25,87 +34,157 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
     public List<Category> getAllCategories(Integer categoryId, String name)
     {
         List<Category> categories = new ArrayList<>();
-        // get all categories
-        String sql = "SELECT category_id, name, description FROM categories";
+        // filtered here rather than by the caller; the column's default collation compares names case-insensitively
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM categories WHERE 1 = 1");
+        if (categoryId != null) sql.append(" AND category_id = ?");
+        if (name != null) sql.append(" AND name = ?");
+        sql.append(" ORDER BY category_id");
+
+        try(PreparedStatement statement = connection.prepareStatement(sql.toString())){
+            int parameter = 1;
+            if (categoryId != null) statement.setInt(parameter++, categoryId);
+            if (name != null) statement.setString(parameter, name);
 
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
             ResultSet results = statement.executeQuery();
+            ResultSetMapper.Rows<Category> rows = CATEGORY_MAPPER.rows(sql.toString(), results);
             while(results.next()){
-                Category category = new Category();
-                category.setCategoryId(results.getInt("category_id"));
-                category.setName(results.getString("name"));
-                category.setDescription(results.getString("description"));
-                categories.add(category);
+                categories.add(rows.map(results));
             }
         } catch (SQLException e){
-            e.printStackTrace();
+            // not an empty result: a failed read must not be remembered as a missing category
+            throw new RuntimeException(e);
         }
         return categories;
     }
 
 
+    // null when there is no such category
     @Override
     public Category getById(int id)
     {
-        String sql = "SELECT * FROM categories WHERE category_id = ?";
+        String sql = "SELECT " + COLUMNS + " FROM categories WHERE category_id = ?";
 
         try(PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1, id);
             ResultSet results = statement.executeQuery();
             if (results.next()){
-                Category category = new Category();
-                category.setCategoryId(results.getInt("category_id"));
-                category.setName(results.getString("name"));
-                category.setDescription(results.getString("description"));
-                return category;
+                return CATEGORY_MAPPER.rows(sql, results).map(results);
             }
         } catch (SQLException e){
-            e.printStackTrace();
+            // not an empty result: a failed read must not be remembered as a missing category
+            throw new RuntimeException(e);
         }
-        return new Category();
+        return null;
     }
 
+    // the parent must exist; the path is filled in once the new id is known
     @Override
     public Category create(Category category)
     {
         // create a new category
-        String sql = "INSERT INTO categories (name, description) VALUES (?, ?)";
+        String sql = "INSERT INTO categories (name, description, parent_category_id) VALUES (?, ?, ?)";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)){
-            statement.setString(1, category.getName());
-            statement.setString(2, category.getDescription());
-            statement.executeUpdate();
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                String parentPath = parentPath(connection, category.getParentCategoryId());
+                try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
+                {
+                    statement.setString(1, category.getName());
+                    statement.setString(2, category.getDescription());
+                    statement.setObject(3, category.getParentCategoryId(), Types.INTEGER);
+                    statement.executeUpdate();
 
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            if (generatedKeys.next()) {
-                category.setCategoryId(generatedKeys.getInt(1));
+                    ResultSet generatedKeys = statement.getGeneratedKeys();
+                    if (generatedKeys.next())
+                    {
+                        category.setCategoryId(generatedKeys.getInt(1));
+                    }
+                }
+                setPath(connection, category.getCategoryId(), parentPath + category.getCategoryId() + "/");
+                connection.commit();
+                return category;
+            }
+            finally
+            {
+                // the connection goes back to the pool
+                connection.rollback();
+                connection.setAutoCommit(true);
             }
-            return category;
-        } catch (SQLException e){
-            e.printStackTrace();
         }
-        return null;
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
+    // the id of a category never changes; a parent given in the request moves it there,
+    // and a category without one stays where it is
     @Override
     public void updateCategory(int categoryId, Category category)
     {
         // update category
-        String sql = "UPDATE categories SET category_id = ?, name = ?, description = ? WHERE category_id = ?";
+        String sql = "UPDATE categories SET name = ?, description = ? WHERE category_id = ?";
 
-        try(PreparedStatement statement = connection.prepareStatement(sql)){
-            statement.setInt(1, category.getCategoryId());
-            statement.setString(2, category.getName());
-            statement.setString(3, category.getDescription());
-            statement.setInt(4, categoryId);
-            statement.executeUpdate();
-        } catch (SQLException e){
-            e.printStackTrace();
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                try (PreparedStatement statement = connection.prepareStatement(sql))
+                {
+                    statement.setString(1, category.getName());
+                    statement.setString(2, category.getDescription());
+                    statement.setInt(3, categoryId);
+                    statement.executeUpdate();
+                }
+                if (category.getParentCategoryId() != null)
+                {
+                    move(connection, categoryId, category.getParentCategoryId());
+                }
+                connection.commit();
+            }
+            finally
+            {
+                // the connection goes back to the pool
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
         }
     }
 
     @Override
-    public void deleteCategory(int categoryId)
+    public void moveCategory(int categoryId, Integer parentCategoryId)
+    {
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                move(connection, categoryId, parentCategoryId);
+                connection.commit();
+            }
+            finally
+            {
+                // the connection goes back to the pool
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean deleteCategory(int categoryId)
     {
         // delete category
         String sql = "DELETE FROM categories WHERE category_id = ?";
@@ -117,26 +196,174 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
             } else {
                 System.out.println("No category found with ID: " + categoryId);
             }
+            return rowsAffected > 0;
         } catch (SQLException e){
-            e.printStackTrace();
+            throw new RuntimeException(e);
         }
     }
 
-    private Category mapRow(ResultSet row) throws SQLException
+    @Override
+    public List<Category> getChildren(Integer parentCategoryId)
     {
-        int categoryId = row.getInt("category_id");
-        String name = row.getString("name");
-        String description = row.getString("description");
+        String sql = "SELECT " + COLUMNS + " FROM categories WHERE parent_category_id "
+                     + (parentCategoryId == null ? "IS NULL" : "= ?") + " ORDER BY category_id";
 
-        Category category = new Category()
-        {{
-            setCategoryId(categoryId);
-            setName(name);
-            setDescription(description);
-        }};
+        try (PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            if (parentCategoryId != null) statement.setInt(1, parentCategoryId);
+            return mapAll(sql, statement.executeQuery());
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // the ids on the path are the ancestors, so the trail is one lookup by primary key
+    @Override
+    public List<Category> getBreadcrumbs(int categoryId)
+    {
+        try
+        {
+            String path = path(connection, categoryId, false);
+            if (path == null)
+            {
+                return new ArrayList<>();
+            }
+            String ids = path.substring(1, path.length() - 1).replace('/', ',');
+            String sql = "SELECT " + COLUMNS + " FROM categories WHERE category_id IN (" + ids + ") ORDER BY LENGTH(path)";
 
-        return category;
+            try (PreparedStatement statement = connection.prepareStatement(sql))
+            {
+                return mapAll(sql, statement.executeQuery());
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
+    // one range scan of the path index, whatever the depth of the subtree
+    @Override
+    public List<Integer> getSubtreeIds(int categoryId)
+    {
+        String sql = "SELECT category_id FROM categories WHERE path LIKE ? ORDER BY path";
+        List<Integer> ids = new ArrayList<>();
 
+        try
+        {
+            String path = path(connection, categoryId, false);
+            if (path == null)
+            {
+                return ids;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql))
+            {
+                statement.setString(1, path + "%");
+                ResultSet results = statement.executeQuery();
+                while (results.next())
+                {
+                    ids.add(results.getInt(1));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return ids;
+    }
+
+    // one query for the whole table; ordered by id, so siblings come out as they do from the cache
+    @Override
+    public List<CategoryNode> getTree()
+    {
+        return CategoryTree.of(getAllCategories(null, null)).roots();
+    }
+
+    private List<Category> mapAll(String sql, ResultSet results) throws SQLException
+    {
+        List<Category> categories = new ArrayList<>();
+        ResultSetMapper.Rows<Category> rows = CATEGORY_MAPPER.rows(sql, results);
+        while (results.next())
+        {
+            categories.add(rows.map(results));
+        }
+        return categories;
+    }
+
+    // moves the category and its subtree below the parent, or to the top level when the parent is null
+    private static void move(Connection connection, int categoryId, Integer parentCategoryId) throws SQLException
+    {
+        String parentSql = "UPDATE categories SET parent_category_id = ? WHERE category_id = ?";
+        String pathSql = "UPDATE categories SET path = CONCAT(?, SUBSTRING(path, ?)) WHERE path LIKE ?";
+
+        String oldPath = path(connection, categoryId, true);
+        if (oldPath == null)
+        {
+            return;
+        }
+        String newPath = parentPath(connection, parentCategoryId) + categoryId + "/";
+        if (newPath.equals(oldPath))
+        {
+            return;
+        }
+        if (newPath.startsWith(oldPath))
+        {
+            throw new IllegalArgumentException("A category cannot be moved below itself.");
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(parentSql))
+        {
+            statement.setObject(1, parentCategoryId, Types.INTEGER);
+            statement.setInt(2, categoryId);
+            statement.executeUpdate();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(pathSql))
+        {
+            statement.setString(1, newPath);
+            statement.setInt(2, oldPath.length() + 1);
+            // paths are only digits and slashes, so nothing in them needs escaping
+            statement.setString(3, oldPath + "%");
+            statement.executeUpdate();
+        }
+    }
+
+    // null when there is no such category; locked for the rest of the transaction when forUpdate
+    private static String path(Connection connection, int categoryId, boolean forUpdate) throws SQLException
+    {
+        String sql = "SELECT path FROM categories WHERE category_id = ?" + (forUpdate ? " FOR UPDATE" : "");
+        try (PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, categoryId);
+            ResultSet results = statement.executeQuery();
+            return results.next() ? results.getString(1) : null;
+        }
+    }
+
+    // the path below which a child of this parent goes: "/" for a top-level category
+    private static String parentPath(Connection connection, Integer parentCategoryId) throws SQLException
+    {
+        if (parentCategoryId == null)
+        {
+            return "/";
+        }
+        String path = path(connection, parentCategoryId, true);
+        if (path == null)
+        {
+            throw new IllegalArgumentException("There is no category " + parentCategoryId + ".");
+        }
+        return path;
+    }
+
+    private static void setPath(Connection connection, int categoryId, String path) throws SQLException
+    {
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE categories SET path = ? WHERE category_id = ?"))
+        {
+            statement.setString(1, path);
+            statement.setInt(2, categoryId);
+            statement.executeUpdate();
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package org.yearup.data.mysql;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+@Component
+public class MySqlOrderDao extends MySqlDaoBase implements OrderDao
+{
+    // the order_id foreign key index returns the line items already grouped by order
+    private static final String BASKETS_SQL = "SELECT order_id, product_id FROM order_line_items " +
+            "WHERE order_id > ? ORDER BY order_id";
+    private static final String LINE_ITEMS_SQL = "SELECT o.order_id, o.date, li.product_id, li.quantity FROM orders o " +
+            "JOIN order_line_items li ON li.order_id = o.order_id " +
+            "WHERE o.order_id > ? AND o.date >= ? ORDER BY o.order_id";
+
+    public MySqlOrderDao(DataSource dataSource)
+    {
+        super(dataSource);
+    }
+
+    @Override
+    public void streamBaskets(int afterOrderId, ObjIntConsumer<int[]> sink)
+    {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(BASKETS_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+        {
+            // streamed row by row, see MySqlProductDao.streamProducts
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setInt(1, afterOrderId);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                int orderId = 0;
+                int[] basket = new int[16];
+                int size = 0;
+                while (row.next())
+                {
+                    int nextOrderId = row.getInt(1);
+                    if (nextOrderId != orderId && size > 0)
+                    {
+                        sink.accept(distinct(basket, size), orderId);
+                        size = 0;
+                    }
+                    orderId = nextOrderId;
+                    if (size == basket.length) basket = Arrays.copyOf(basket, size * 2);
+                    basket[size++] = row.getInt(2);
+                }
+                if (size > 0)
+                {
+                    sink.accept(distinct(basket, size), orderId);
+                }
+            }
+            finally
+            {
+                statement.setFetchSize(0);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void streamLineItems(int afterOrderId, Instant placedSince, LineItemSink sink)
+    {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(LINE_ITEMS_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+        {
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setInt(1, afterOrderId);
+            statement.setTimestamp(2, Timestamp.from(placedSince));
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    sink.accept(row.getInt(1), row.getTimestamp(2).toInstant(), row.getInt(3), row.getInt(4));
+                }
+            }
+            finally
+            {
+                statement.setFetchSize(0);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // an order can list the same product on more than one line
+    private static int[] distinct(int[] basket, int size)
+    {
+        return Arrays.stream(basket, 0, size).sorted().distinct().toArray();
+    }
+}
@@ -1,18 +1,53 @@
 package org.yearup.data.mysql;
 
 import org.springframework.stereotype.Component;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
 import org.yearup.models.Product;
+import org.yearup.models.ProductBulkChange;
 import org.yearup.data.ProductDao;
+import org.yearup.models.ProductImportReport;
+import org.yearup.models.ProductImportRow;
+import org.yearup.models.ProductPage;
+import org.yearup.data.mysql.ResultSetMapper.Type;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Component
 public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 {
+    static final ResultSetMapper<Product> PRODUCT_MAPPER = ResultSetMapper.of(Product.class,
+            "product_id", Type.INT,
+            "name", Type.STRING,
+            "price", Type.DECIMAL,
+            "category_id", Type.INT,
+            "description", Type.STRING,
+            "color", Type.STRING,
+            "stock", Type.INT,
+            "featured", Type.BOOLEAN,
+            "image_url", Type.STRING);
+
+    // rows per executeBatch and per transaction; with rewriteBatchedStatements the driver
+    // sends each batch as a few multi-row INSERTs
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    // no trailing semicolon, so the driver can rewrite batches of it into multi-row INSERTs
+    private static final String INSERT_SQL = "INSERT INTO products(name, price, category_id, description, color, image_url, stock, featured) " +
+            " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // largest IN list per query; lists are padded to a power of two so only a few statement texts exist
+    private static final int MAX_IDS_PER_QUERY = 1024;
+
     public MySqlProductDao(DataSource dataSource)
     {
         super(dataSource);
@@ -21,37 +56,40 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
     @Override
     public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
     {
-        List<Product> products = new ArrayList<>();
+        ProductQuery query = new ProductQuery();
+        query.setCategoryId(categoryId);
+        query.setMinPrice(minPrice);
+        query.setMaxPrice(maxPrice);
+        query.setColor(color);
 
-        String sql = "SELECT * FROM products " +
-                "WHERE (category_id = ? OR ? = -1) " +
-                "AND (price >= ? OR ? = -1)" +
-                "   AND (price <= ? OR ? = -1) " +
-                "   AND (color = ? OR ? = '') ";
+        return search(query).getProducts();
+    }
 
-        categoryId = categoryId == null ? -1 : categoryId;
-        minPrice = minPrice == null ? new BigDecimal("-1") : minPrice;
-        maxPrice = maxPrice == null ? new BigDecimal("-1") : maxPrice;
-        color = color == null ? "" : color;
+    @Override
+    public ProductPage search(ProductQuery query)
+    {
+        List<Product> products = new ArrayList<>();
+        // full-text scores by product id, for the next-page cursor of a relevance sort
+        Map<Integer, Double> scores = new HashMap<>();
+        boolean byRelevance = query.getSort() == ProductSort.RELEVANCE;
+        ProductSearchSql sql = new ProductSearchSql(query);
 
         try (Connection connection = getConnection())
         {
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setInt(1, categoryId);
-            statement.setInt(2, categoryId);
-            statement.setBigDecimal(3, minPrice);
-            statement.setBigDecimal(4, minPrice);
-            statement.setBigDecimal(5, maxPrice);
-            statement.setBigDecimal(6, maxPrice);
-            statement.setString(7, color);
-            statement.setString(8, color);
+            PreparedStatement statement = connection.prepareStatement(sql.getSql());
+            sql.bind(statement);
 
             ResultSet row = statement.executeQuery();
+            ResultSetMapper.Rows<Product> rows = PRODUCT_MAPPER.rows(sql.getSql(), row);
 
             while (row.next())
             {
-                Product product = mapRow(row);
+                Product product = rows.map(row);
                 products.add(product);
+                if (byRelevance)
+                {
+                    scores.put(product.getProductId(), row.getDouble(ProductSearchSql.RELEVANCE_COLUMN));
+                }
             }
         }
         catch (SQLException e)
@@ -59,7 +97,48 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
             throw new RuntimeException(e);
         }
 
-        return products;
+        return byRelevance
+               ? query.toPage(products, product -> Double.toString(scores.get(product.getProductId())))
+               : query.toPage(products);
+    }
+
+    @Override
+    public void streamProducts(ProductQuery query, Consumer<Product> sink)
+    {
+        if (query.hasText() || query.hasSelections())
+        {
+            throw new IllegalArgumentException("Only category, price and color filters can be streamed");
+        }
+
+        ProductSearchSql sql = new ProductSearchSql(query);
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql.getSql(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+        {
+            // Connector/J streams a forward-only, read-only result row by row instead of
+            // buffering all of it when the fetch size is Integer.MIN_VALUE
+            statement.setFetchSize(Integer.MIN_VALUE);
+            sql.bind(statement);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                ResultSetMapper.Rows<Product> rows = PRODUCT_MAPPER.rows(sql.getSql(), row);
+                while (row.next())
+                {
+                    sink.accept(rows.map(row));
+                }
+            }
+            finally
+            {
+                // the driver caches statements by SQL text; the next search of this shape must not stream
+                statement.setFetchSize(0);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -76,10 +155,11 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
             statement.setInt(1, categoryId);
 
             ResultSet row = statement.executeQuery();
+            ResultSetMapper.Rows<Product> rows = PRODUCT_MAPPER.rows(sql, row);
 
             while (row.next())
             {
-                Product product = mapRow(row);
+                Product product = rows.map(row);
                 products.add(product);
             }
         }
@@ -105,7 +185,7 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 
             if (row.next())
             {
-                return mapRow(row);
+                return PRODUCT_MAPPER.rows(sql, row).map(row);
             }
         }
         catch (SQLException e)
@@ -116,23 +196,60 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
     }
 
     @Override
-    public Product createProduct(Product product)
+    public List<Product> getByIds(Collection<Integer> productIds)
     {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        Map<Integer, Product> found = new HashMap<>(ids.size() * 2);
+
+        try (Connection connection = getConnection())
+        {
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY)
+            {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_QUERY));
+                int width = Integer.highestOneBit(chunk.size() * 2 - 1);
+                String sql = "SELECT * FROM products WHERE product_id IN (" + "?,".repeat(width - 1) + "?)";
+
+                PreparedStatement statement = connection.prepareStatement(sql);
+                for (int i = 0; i < width; i++)
+                {
+                    // the padding repeats the last id, which does not change the result
+                    statement.setInt(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                }
+
+                ResultSet row = statement.executeQuery();
+                ResultSetMapper.Rows<Product> rows = PRODUCT_MAPPER.rows(sql, row);
+                while (row.next())
+                {
+                    Product product = rows.map(row);
+                    found.put(product.getProductId(), product);
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
 
-        String sql = "INSERT INTO products(name, price, category_id, description, color, image_url, stock, featured) " +
-                " VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+        List<Product> products = new ArrayList<>(found.size());
+        for (int productId : ids)
+        {
+            Product product = found.get(productId);
+            if (product != null)
+            {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public Product createProduct(Product product)
+    {
 
         try (Connection connection = getConnection())
         {
-            PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-            statement.setString(1, product.getName());
-            statement.setBigDecimal(2, product.getPrice());
-            statement.setInt(3, product.getCategoryId());
-            statement.setString(4, product.getDescription());
-            statement.setString(5, product.getColor());
-            statement.setString(6, product.getImageUrl());
-            statement.setInt(7, product.getStock());
-            statement.setBoolean(8, product.isFeatured());
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL, PreparedStatement.RETURN_GENERATED_KEYS);
+            bindInsert(statement, product);
 
             int rowsAffected = statement.executeUpdate();
 
@@ -156,6 +273,106 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         return null;
     }
 
+    @Override
+    public ProductImportReport importProducts(Iterator<ProductImportRow> rows)
+    {
+        ProductImportReport report = new ProductImportReport();
+        List<ProductImportRow> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL))
+            {
+                while (rows.hasNext())
+                {
+                    ProductImportRow row = rows.next();
+                    if (row.isFailed())
+                    {
+                        report.addError(row.getLine(), row.getError());
+                        continue;
+                    }
+
+                    bindInsert(statement, row.getProduct());
+                    statement.addBatch();
+                    batch.add(row);
+
+                    if (batch.size() == IMPORT_BATCH_SIZE)
+                    {
+                        flushBatch(connection, statement, batch, report);
+                    }
+                }
+                flushBatch(connection, statement, batch, report);
+            }
+            finally
+            {
+                // the connection goes back to the pool
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return report;
+    }
+
+    /**
+     * Inserts and commits the pending batch. When MySQL rejects any row of it
+     * (a missing category, say) the chunk is rolled back and replayed one row at
+     * a time, so only the bad rows are reported and the rest still go in.
+     */
+    private void flushBatch(Connection connection, PreparedStatement statement, List<ProductImportRow> batch,
+                            ProductImportReport report) throws SQLException
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            statement.executeBatch();
+            connection.commit();
+            report.addImported(batch.size());
+        }
+        catch (BatchUpdateException e)
+        {
+            connection.rollback();
+            statement.clearBatch();
+
+            for (ProductImportRow row : batch)
+            {
+                try
+                {
+                    bindInsert(statement, row.getProduct());
+                    statement.executeUpdate();
+                    report.addImported(1);
+                }
+                catch (SQLException rowError)
+                {
+                    report.addError(row.getLine(), rowError.getMessage());
+                }
+            }
+            connection.commit();
+        }
+        batch.clear();
+    }
+
+    private static void bindInsert(PreparedStatement statement, Product product) throws SQLException
+    {
+        statement.setString(1, product.getName());
+        statement.setBigDecimal(2, product.getPrice());
+        statement.setInt(3, product.getCategoryId());
+        statement.setString(4, product.getDescription());
+        statement.setString(5, product.getColor());
+        statement.setString(6, product.getImageUrl());
+        statement.setInt(7, product.getStock());
+        statement.setBoolean(8, product.isFeatured());
+    }
+
     @Override
     public void updateProduct(int productId, Product product)
     {
@@ -191,6 +408,93 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         }
     }
 
+    @Override
+    public int updateProducts(ProductBulkChange change)
+    {
+        ProductBulkSql sql = ProductBulkSql.update(change);
+
+        return inTransaction(connection -> {
+            int affected = 0;
+            for (List<Integer> ids : sql.chunks())
+            {
+                try (PreparedStatement statement = connection.prepareStatement(sql.updateSql(ids)))
+                {
+                    sql.bind(statement, ids, true);
+                    affected += statement.executeUpdate();
+                }
+            }
+            return affected;
+        });
+    }
+
+    @Override
+    public int deleteProducts(ProductBulkChange filter)
+    {
+        ProductBulkSql sql = ProductBulkSql.delete(filter);
+
+        try
+        {
+            return inTransaction(connection -> {
+                int affected = 0;
+                for (List<Integer> ids : sql.chunks())
+                {
+                    try (PreparedStatement statement = connection.prepareStatement(sql.deleteCartItemsSql(ids)))
+                    {
+                        sql.bind(statement, ids, false);
+                        statement.executeUpdate();
+                    }
+                    try (PreparedStatement statement = connection.prepareStatement(sql.deleteSql(ids)))
+                    {
+                        sql.bind(statement, ids, false);
+                        affected += statement.executeUpdate();
+                    }
+                }
+                return affected;
+            });
+        }
+        catch (RuntimeException e)
+        {
+            if (e.getCause() instanceof SQLIntegrityConstraintViolationException)
+            {
+                throw new IllegalStateException("Products that appear on orders cannot be deleted", e.getCause());
+            }
+            throw e;
+        }
+    }
+
+    private interface TransactionWork
+    {
+        int run(Connection connection) throws SQLException;
+    }
+
+    // all or nothing: a failure in any statement rolls back the whole bulk operation
+    private int inTransaction(TransactionWork work)
+    {
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                int affected = work.run(connection);
+                connection.commit();
+                return affected;
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void deleteProduct(int productId)
     {
@@ -210,19 +514,4 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
             throw new RuntimeException(e);
         }
     }
-
-    protected static Product mapRow(ResultSet row) throws SQLException
-    {
-        int productId = row.getInt("product_id");
-        String name = row.getString("name");
-        BigDecimal price = row.getBigDecimal("price");
-        int categoryId = row.getInt("category_id");
-        String description = row.getString("description");
-        String color = row.getString("color");
-        int stock = row.getInt("stock");
-        boolean isFeatured = row.getBoolean("featured");
-        String imageUrl = row.getString("image_url");
-
-        return new Product(productId, name, price, categoryId, description, color, stock, isFeatured, imageUrl);
-    }
 }
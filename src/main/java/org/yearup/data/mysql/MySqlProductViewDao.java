@@ -0,0 +1,83 @@
+package org.yearup.data.mysql;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductViewDao;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+
+@Component
+public class MySqlProductViewDao extends MySqlDaoBase implements ProductViewDao
+{
+    // no trailing semicolon, so the driver can rewrite a batch of it into multi-row INSERTs
+    private static final String ADD_SQL = "INSERT INTO product_views (product_id, hour_start, views) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE views = views + VALUES(views)";
+    private static final String VIEWS_SQL = "SELECT product_id, hour_start, views FROM product_views WHERE hour_start >= ?";
+
+    public MySqlProductViewDao(DataSource dataSource)
+    {
+        super(dataSource);
+    }
+
+    @Override
+    public void addViews(Instant hour, Map<Integer, Long> views)
+    {
+        if (views.isEmpty())
+        {
+            return;
+        }
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(ADD_SQL))
+        {
+            Timestamp hourStart = Timestamp.from(hour);
+            for (Map.Entry<Integer, Long> entry : views.entrySet())
+            {
+                statement.setInt(1, entry.getKey());
+                statement.setTimestamp(2, hourStart);
+                statement.setLong(3, entry.getValue());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void streamViews(Instant since, ViewSink sink)
+    {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(VIEWS_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+        {
+            // streamed row by row, see MySqlProductDao.streamProducts
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setTimestamp(1, Timestamp.from(since));
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    sink.accept(row.getInt(1), row.getTimestamp(2).toInstant(), row.getLong(3));
+                }
+            }
+            finally
+            {
+                statement.setFetchSize(0);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
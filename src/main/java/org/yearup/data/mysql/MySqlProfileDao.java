@@ -4,6 +4,7 @@ import org.springframework.stereotype.Component;
 import org.yearup.models.Profile;
 import org.yearup.data.ProfileDao;
 import org.yearup.models.User;
+import org.yearup.data.mysql.ResultSetMapper.Type;
 
 import javax.sql.DataSource;
 import java.sql.*;
@@ -11,6 +12,16 @@ import java.sql.*;
 @Component
 public class MySqlProfileDao extends MySqlDaoBase implements ProfileDao
 {
+    private static final ResultSetMapper<Profile> PROFILE_MAPPER = ResultSetMapper.of(Profile.class,
+            "user_id", Type.INT,
+            "first_name", Type.STRING,
+            "last_name", Type.STRING,
+            "phone", Type.STRING,
+            "email", Type.STRING,
+            "address", Type.STRING,
+            "city", Type.STRING,
+            "state", Type.STRING,
+            "zip", Type.STRING);
 
     private final Connection connection;
 
@@ -82,17 +93,7 @@ public Profile getByUserId (int userId) {
             statement.setInt(1, userId);
             ResultSet results = statement.executeQuery();
             if (results.next()){
-                Profile profile = new Profile();
-                profile.setUserId(results.getInt("user_id"));
-                profile.setFirstName(results.getString("first_name"));
-                profile.setLastName(results.getString("last_name"));
-                profile.setPhone(results.getString("phone"));
-                profile.setEmail(results.getString("email"));
-                profile.setAddress(results.getString("address"));
-                profile.setCity(results.getString("city"));
-                profile.setState(results.getString("state"));
-                profile.setZip(results.getString("zip"));
-                return profile;
+                return PROFILE_MAPPER.rows(sql, results).map(results);
 
             } else {
                 return null ;
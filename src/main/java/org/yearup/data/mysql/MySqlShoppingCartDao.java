@@ -5,6 +5,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 import org.yearup.data.ProductDao;
 import org.yearup.data.ShoppingCartDao;
+import org.yearup.data.cache.BestsellerTracker;
 import org.yearup.models.Product;
 import org.yearup.models.ShoppingCart;
 import org.yearup.models.ShoppingCartItem;
@@ -18,6 +19,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,37 +29,39 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
 
     private final Connection connection;
     private ProductDao productDao;
+    private BestsellerTracker bestsellerTracker;
 
-    public MySqlShoppingCartDao (DataSource config, ProductDao productDao) throws SQLException {
+    public MySqlShoppingCartDao (DataSource config, ProductDao productDao, BestsellerTracker bestsellerTracker) throws SQLException {
         super(config);
         this.connection = config.getConnection();
         this.productDao = productDao;
+        this.bestsellerTracker = bestsellerTracker;
     }
 
 
     @Override
     public ShoppingCart getCart (int userId, Principal principal){
        ShoppingCart cartProducts = new ShoppingCart();
+       Map<Integer, Integer> quantities = new LinkedHashMap<>();
 
-        String sql = "SELECT * FROM shopping_cart WHERE user_id = ? ";
+        String sql = "SELECT product_id, quantity FROM shopping_cart WHERE user_id = ? ";
         try(PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1, userId);
             ResultSet results = statement.executeQuery();
             while(results.next()){
-                int productId = results.getInt("product_id");
-                int quantity = results.getInt("quantity");
-
-                Product product = productDao.getById(productId);
-                if (product != null){
-                    ShoppingCartItem item = new ShoppingCartItem();
-                    item.setProduct(product);
-                    item.setQuantity(quantity);
-                    cartProducts.add(item);
-                }
+                quantities.put(results.getInt(1), results.getInt(2));
             }
-
         } catch (SQLException e){
             e.printStackTrace();
+            return cartProducts;
+        }
+
+        // one lookup for the whole cart instead of one per row
+        for (Product product : productDao.getByIds(quantities.keySet())){
+            ShoppingCartItem item = new ShoppingCartItem();
+            item.setProduct(product);
+            item.setQuantity(quantities.get(product.getProductId()));
+            cartProducts.add(item);
         }
         return cartProducts;
     }
@@ -76,20 +80,13 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             ResultSet results = statement.executeQuery();
+            ResultSetMapper.Rows<Product> rows = MySqlProductDao.PRODUCT_MAPPER.rows(sql, results);
+            int quantityColumn = results.findColumn("quantity");
 
             while (results.next()) {
-                Product product = new Product();
-                product.setProductId(results.getInt("product_id"));
-                product.setName(results.getString("name"));
-                product.setPrice(results.getBigDecimal("price"));
-                product.setCategoryId(results.getInt("category_id"));
-                product.setDescription(results.getString("description"));
-                product.setColor(results.getString("color"));
-                product.setStock(results.getInt("stock"));
-                product.setImageUrl(results.getString("image_url"));
-                product.setFeatured(results.getBoolean("featured"));
-
-                int quantity = results.getInt("quantity");
+                Product product = rows.map(results);
+
+                int quantity = results.getInt(quantityColumn);
                 BigDecimal lineTotal = product.getPrice().multiply(BigDecimal.valueOf(quantity));
 
                 ShoppingCartItem item = new ShoppingCartItem();
@@ -133,6 +130,8 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
                         insertStatement.executeUpdate();
                     }
                 }
+            // counted once the cart row is written; in memory only, so it adds no database work
+            bestsellerTracker.cartItemAdded(productId);
         } catch (SQLException e){
             e.printStackTrace();
         }
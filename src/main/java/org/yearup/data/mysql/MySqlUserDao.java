@@ -5,6 +5,7 @@ import org.springframework.stereotype.Component;
 import org.yearup.data.UserDao;
 import org.yearup.models.User;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.yearup.data.mysql.ResultSetMapper.Type;
 
 import javax.sql.DataSource;
 import java.sql.*;
@@ -14,6 +15,12 @@ import java.util.List;
 @Component
 public class MySqlUserDao extends MySqlDaoBase implements UserDao
 {
+    private static final ResultSetMapper<User> USER_MAPPER = ResultSetMapper.of(User.class,
+            "user_id", Type.INT,
+            "username", Type.STRING,
+            "hashed_password", Type.STRING,
+            "role", Type.STRING);
+
     @Autowired
     public MySqlUserDao(DataSource dataSource)
     {
@@ -59,10 +66,11 @@ public class MySqlUserDao extends MySqlDaoBase implements UserDao
             PreparedStatement statement = connection.prepareStatement(sql);
 
             ResultSet row = statement.executeQuery();
+            ResultSetMapper.Rows<User> rows = USER_MAPPER.rows(sql, row);
 
             while (row.next())
             {
-                User user = mapRow(row);
+                User user = rows.map(row);
                 users.add(user);
             }
         }
@@ -87,7 +95,7 @@ public class MySqlUserDao extends MySqlDaoBase implements UserDao
 
             if(row.next())
             {
-                User user = mapRow(row);
+                User user = USER_MAPPER.rows(sql, row).map(row);
                 return user;
             }
         }
@@ -114,7 +122,7 @@ public class MySqlUserDao extends MySqlDaoBase implements UserDao
             if(row.next())
             {
 
-                User user = mapRow(row);
+                User user = USER_MAPPER.rows(sql, row).map(row);
                 return user;
             }
         }
@@ -145,14 +153,4 @@ public class MySqlUserDao extends MySqlDaoBase implements UserDao
         User user = getByUserName(username);
         return user != null;
     }
-
-    private User mapRow(ResultSet row) throws SQLException
-    {
-        int userId = row.getInt("user_id");
-        String username = row.getString("username");
-        String hashedPassword = row.getString("hashed_password");
-        String role = row.getString("role");
-
-        return new User(userId, username,hashedPassword, role);
-    }
 }
@@ -0,0 +1,169 @@
+package org.yearup.data.mysql;
+
+import org.yearup.models.ProductBulkChange;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set-based statements for the bulk admin operations. Products are selected
+ * by category and/or id; long id lists are split into chunks so no single
+ * IN list grows unbounded, and the caller runs every chunk in one transaction.
+ */
+final class ProductBulkSql
+{
+    static final int MAX_IDS_PER_STATEMENT = 1000;
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final ProductBulkChange change;
+    private final String set;
+    private final List<Object> setValues = new ArrayList<>();
+
+    private ProductBulkSql(ProductBulkChange change, boolean update)
+    {
+        boolean hasCategory = change.getCategoryId() != null;
+        boolean hasIds = change.getProductIds() != null && !change.getProductIds().isEmpty();
+        if (!hasCategory && !hasIds)
+        {
+            throw new IllegalArgumentException("A categoryId or productIds is required");
+        }
+
+        this.change = change;
+        this.set = update ? renderSet(change) : null;
+    }
+
+    static ProductBulkSql update(ProductBulkChange change)
+    {
+        return new ProductBulkSql(change, true);
+    }
+
+    static ProductBulkSql delete(ProductBulkChange change)
+    {
+        return new ProductBulkSql(change, false);
+    }
+
+    /**
+     * The id chunks to run the statements for; a single null chunk when the
+     * products are selected by category alone.
+     */
+    List<List<Integer>> chunks()
+    {
+        List<Integer> ids = change.getProductIds();
+        if (ids == null || ids.isEmpty())
+        {
+            return Collections.singletonList(null);
+        }
+
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_STATEMENT)
+        {
+            chunks.add(ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_STATEMENT)));
+        }
+        return chunks;
+    }
+
+    String updateSql(List<Integer> ids)
+    {
+        return "UPDATE products SET " + set + " WHERE " + where(ids);
+    }
+
+    // cart rows would block the delete through their foreign key and mean nothing once the product is gone
+    String deleteCartItemsSql(List<Integer> ids)
+    {
+        return "DELETE FROM shopping_cart WHERE product_id IN (SELECT product_id FROM products WHERE " + where(ids) + ")";
+    }
+
+    String deleteSql(List<Integer> ids)
+    {
+        return "DELETE FROM products WHERE " + where(ids);
+    }
+
+    /**
+     * Binds the SET values (updates only) followed by the filter values.
+     */
+    void bind(PreparedStatement statement, List<Integer> ids, boolean withSet) throws SQLException
+    {
+        int index = 1;
+        if (withSet)
+        {
+            for (Object value : setValues)
+            {
+                statement.setObject(index++, value);
+            }
+        }
+        if (change.getCategoryId() != null)
+        {
+            statement.setInt(index++, change.getCategoryId());
+        }
+        if (ids != null)
+        {
+            for (int id : ids)
+            {
+                statement.setInt(index++, id);
+            }
+        }
+    }
+
+    private String where(List<Integer> ids)
+    {
+        StringBuilder where = new StringBuilder();
+        if (change.getCategoryId() != null)
+        {
+            where.append("category_id = ?");
+        }
+        if (ids != null)
+        {
+            if (where.length() > 0)
+            {
+                where.append(" AND ");
+            }
+            where.append("product_id IN (").append("?,".repeat(ids.size() - 1)).append("?)");
+        }
+        return where.toString();
+    }
+
+    private String renderSet(ProductBulkChange change)
+    {
+        List<String> assignments = new ArrayList<>();
+
+        if (change.getPricePercent() != null && change.getPriceAmount() != null)
+        {
+            throw new IllegalArgumentException("Use either pricePercent or priceAmount, not both");
+        }
+        if (change.getPricePercent() != null)
+        {
+            if (change.getPricePercent().compareTo(HUNDRED.negate()) < 0)
+            {
+                throw new IllegalArgumentException("pricePercent cannot take more than 100% off");
+            }
+            assignments.add("price = GREATEST(ROUND(price * ?, 2), 0)");
+            setValues.add(BigDecimal.ONE.add(change.getPricePercent().divide(HUNDRED, MathContext.DECIMAL64)));
+        }
+        if (change.getPriceAmount() != null)
+        {
+            assignments.add("price = GREATEST(price + ?, 0)");
+            setValues.add(change.getPriceAmount());
+        }
+        if (change.getStock() != null)
+        {
+            if (change.getStock() < 0)
+            {
+                throw new IllegalArgumentException("stock must not be negative");
+            }
+            assignments.add("stock = ?");
+            setValues.add(change.getStock());
+        }
+
+        if (assignments.isEmpty())
+        {
+            throw new IllegalArgumentException("Nothing to change: set pricePercent, priceAmount or stock");
+        }
+        return String.join(", ", assignments);
+    }
+}
@@ -0,0 +1,282 @@
+package org.yearup.data.mysql;
+
+import org.yearup.data.PageCursor;
+import org.yearup.data.ProductFields.Field;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL for a product search that only contains the predicates the query
+ * actually uses. Each predicate compares a bare column with a parameter, so
+ * MySQL can pick an index on category_id, price or color instead of scanning.
+ * Text is matched against the full-text index on name and description, and
+ * a relevance sort orders by its score. Multi-select filters become IN lists
+ * on category_id and color, plus the featured and stock flags.
+ *
+ * The text of a statement depends only on its "shape" (which predicates are
+ * present, the sort order, the selected columns and whether it is limited),
+ * so only a limited set of distinct statements exists. IN lists are padded to
+ * the next power of two by repeating their last value, so a selection of any
+ * size maps to one of a few statements. They are rendered
+ * once and reused, which also lets the driver's prepared statement cache hit.
+ */
+final class ProductSearchSql
+{
+    // values allowed in one IN list
+    static final int MAX_SELECTED = 1024;
+
+    private static final long CATEGORY = 1;
+    private static final long MIN_PRICE = 1 << 1;
+    private static final long MAX_PRICE = 1 << 2;
+    private static final long COLOR = 1 << 3;
+    private static final long AFTER = 1 << 4;
+    private static final long LIMIT = 1 << 5;
+    private static final long TEXT = 1 << 6;
+    private static final long FEATURED = 1 << 7;
+    private static final long IN_STOCK = 1 << 8;
+    private static final long OUT_OF_STOCK = 1 << 9;
+    // the IN list widths are stored as powers of two, 0 meaning no list
+    private static final int CATEGORIES_SHIFT = 12;
+    private static final int COLORS_SHIFT = 16;
+    private static final int SORT_SHIFT = 24;
+    private static final int FIELDS_SHIFT = 32;
+
+    static final String RELEVANCE_COLUMN = "relevance";
+    private static final String MATCH = "MATCH(name, description) AGAINST (?)";
+
+    private static final Map<Long, String> STATEMENTS = new ConcurrentHashMap<>();
+
+    private final ProductQuery query;
+    private final List<Integer> categoryIds;
+    private final List<String> colors;
+    private final long shape;
+
+    ProductSearchSql(ProductQuery query)
+    {
+        this.query = query;
+        this.categoryIds = selected(query.getCategoryIds());
+        this.colors = selected(query.getColors());
+
+        long flags = 0;
+        if (query.getCategoryId() != null) flags |= CATEGORY;
+        if (query.getMinPrice() != null) flags |= MIN_PRICE;
+        if (query.getMaxPrice() != null) flags |= MAX_PRICE;
+        if (query.getColor() != null && !query.getColor().isEmpty()) flags |= COLOR;
+        if (query.getAfter() != null) flags |= AFTER;
+        if (query.getFetchSize() != null) flags |= LIMIT;
+        if (query.hasText()) flags |= TEXT;
+        if (query.getFeatured() != null) flags |= FEATURED;
+        if (query.getInStock() != null) flags |= query.getInStock() ? IN_STOCK : OUT_OF_STOCK;
+        flags |= (long) widthBits(categoryIds.size()) << CATEGORIES_SHIFT;
+        flags |= (long) widthBits(colors.size()) << COLORS_SHIFT;
+        long fields = query.getFields() == null ? 0 : query.getFields().getMask();
+        this.shape = flags | (long) query.getSort().ordinal() << SORT_SHIFT | fields << FIELDS_SHIFT;
+    }
+
+    String getSql()
+    {
+        return STATEMENTS.computeIfAbsent(shape, ProductSearchSql::render);
+    }
+
+    /**
+     * Binds the query values in the same order {@link #getSql()} declares
+     * its parameters.
+     */
+    void bind(PreparedStatement statement) throws SQLException
+    {
+        int index = 1;
+        if (has(TEXT))
+        {
+            if (query.getSort() == ProductSort.RELEVANCE) statement.setString(index++, query.getText());
+            statement.setString(index++, query.getText());
+        }
+        if (has(CATEGORY)) statement.setInt(index++, query.getCategoryId());
+        // the padding repeats the last value, which does not change the result
+        for (int i = 0, width = width(shape, CATEGORIES_SHIFT); i < width; i++)
+        {
+            statement.setInt(index++, categoryIds.get(Math.min(i, categoryIds.size() - 1)));
+        }
+        if (has(MIN_PRICE)) statement.setBigDecimal(index++, query.getMinPrice());
+        if (has(MAX_PRICE)) statement.setBigDecimal(index++, query.getMaxPrice());
+        if (has(COLOR)) statement.setString(index++, query.getColor());
+        for (int i = 0, width = width(shape, COLORS_SHIFT); i < width; i++)
+        {
+            statement.setString(index++, colors.get(Math.min(i, colors.size() - 1)).trim());
+        }
+        if (has(FEATURED)) statement.setBoolean(index++, query.getFeatured());
+
+        if (has(AFTER))
+        {
+            PageCursor after = query.getAfter();
+            if (query.getSort() == ProductSort.PRICE)
+            {
+                statement.setBigDecimal(index++, new BigDecimal(after.getSortKey()));
+            }
+            else if (query.getSort() == ProductSort.NAME)
+            {
+                statement.setString(index++, after.getSortKey());
+            }
+            else if (query.getSort() == ProductSort.RELEVANCE)
+            {
+                double score = Double.parseDouble(after.getSortKey());
+                statement.setString(index++, query.getText());
+                statement.setDouble(index++, score);
+                statement.setString(index++, query.getText());
+                statement.setDouble(index++, score);
+            }
+            statement.setInt(index++, after.getProductId());
+        }
+
+        if (has(LIMIT)) statement.setInt(index, query.getFetchSize());
+    }
+
+    private boolean has(long flag)
+    {
+        return (shape & flag) != 0;
+    }
+
+    private static <T> List<T> selected(Collection<T> values)
+    {
+        if (values == null)
+        {
+            return List.of();
+        }
+        if (values.size() > MAX_SELECTED)
+        {
+            throw new IllegalArgumentException("At most " + MAX_SELECTED + " values can be selected per filter.");
+        }
+        return new ArrayList<>(values);
+    }
+
+    // log2 of the padded list width plus one, or 0 for an empty list
+    private static int widthBits(int size)
+    {
+        return size == 0 ? 0 : Integer.numberOfTrailingZeros(Integer.highestOneBit(size * 2 - 1)) + 1;
+    }
+
+    private static int width(long shape, int shift)
+    {
+        int bits = (int) (shape >>> shift) & 0xf;
+        return bits == 0 ? 0 : 1 << (bits - 1);
+    }
+
+    private static String render(long shape)
+    {
+        ProductSort sort = ProductSort.values()[(int) (shape >>> SORT_SHIFT) & 0xff];
+
+        StringBuilder where = new StringBuilder();
+        if ((shape & TEXT) != 0) and(where, MATCH);
+        if ((shape & CATEGORY) != 0) and(where, "category_id = ?");
+        if (width(shape, CATEGORIES_SHIFT) > 0) and(where, in("category_id", width(shape, CATEGORIES_SHIFT)));
+        if ((shape & MIN_PRICE) != 0) and(where, "price >= ?");
+        if ((shape & MAX_PRICE) != 0) and(where, "price <= ?");
+        if ((shape & COLOR) != 0) and(where, "color = ?");
+        if (width(shape, COLORS_SHIFT) > 0) and(where, in("color", width(shape, COLORS_SHIFT)));
+        if ((shape & FEATURED) != 0) and(where, "featured = ?");
+        if ((shape & IN_STOCK) != 0) and(where, "stock > 0");
+        if ((shape & OUT_OF_STOCK) != 0) and(where, "stock <= 0");
+
+        // keyset pagination: continue right after the last row of the previous page
+        if ((shape & AFTER) != 0)
+        {
+            switch (sort)
+            {
+                case PRICE:
+                    and(where, "(price, product_id) > (?, ?)");
+                    break;
+                case NAME:
+                    and(where, "(name, product_id) > (?, ?)");
+                    break;
+                case RELEVANCE:
+                    // scores descend, so the row-value comparison has to be spelled out
+                    and(where, "(" + MATCH + " < ? OR (" + MATCH + " = ? AND product_id > ?))");
+                    break;
+                default:
+                    and(where, "product_id > ?");
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns((int) (shape >>> FIELDS_SHIFT), sort));
+        if (sort == ProductSort.RELEVANCE)
+        {
+            // the score is read back for the next-page cursor
+            sql.append(", ").append(MATCH).append(" AS ").append(RELEVANCE_COLUMN);
+        }
+        sql.append(" FROM products");
+        if (where.length() > 0)
+        {
+            sql.append(" WHERE ").append(where);
+        }
+
+        switch (sort)
+        {
+            case PRICE:
+                sql.append(" ORDER BY price, product_id");
+                break;
+            case NAME:
+                sql.append(" ORDER BY name, product_id");
+                break;
+            case RELEVANCE:
+                sql.append(" ORDER BY ").append(RELEVANCE_COLUMN).append(" DESC, product_id");
+                break;
+            default:
+                sql.append(" ORDER BY product_id");
+        }
+
+        if ((shape & LIMIT) != 0)
+        {
+            sql.append(" LIMIT ?");
+        }
+        return sql.toString();
+    }
+
+    // the id and the sort column are always read because the next-page cursor is built from them
+    private static String columns(int fieldMask, ProductSort sort)
+    {
+        if (fieldMask == 0)
+        {
+            return "*";
+        }
+
+        StringBuilder columns = new StringBuilder();
+        for (Field field : Field.values())
+        {
+            boolean requested = (fieldMask & 1 << field.ordinal()) != 0;
+            boolean required = field == Field.PRODUCT_ID
+                    || (field == Field.PRICE && sort == ProductSort.PRICE)
+                    || (field == Field.NAME && sort == ProductSort.NAME);
+            if (requested || required)
+            {
+                if (columns.length() > 0)
+                {
+                    columns.append(", ");
+                }
+                columns.append(field.getColumn());
+            }
+        }
+        return columns.toString();
+    }
+
+    private static String in(String column, int width)
+    {
+        return column + " IN (" + "?, ".repeat(width - 1) + "?)";
+    }
+
+    private static void and(StringBuilder where, String predicate)
+    {
+        if (where.length() > 0)
+        {
+            where.append(" AND ");
+        }
+        where.append(predicate);
+    }
+}
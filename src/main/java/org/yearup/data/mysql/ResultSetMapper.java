@@ -0,0 +1,188 @@
+package org.yearup.data.mysql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns result rows into model objects by column position.
+ *
+ * A mapper is declared once per model with the columns that feed its
+ * constructor, in parameter order. The first time a statement is mapped its
+ * column positions are looked up in the {@link ResultSetMetaData} and cached
+ * by SQL text, so each later row is read with positional getters and built
+ * with a single constructor call, without any name lookups or setters.
+ * Columns a statement does not select are passed to the constructor as
+ * null, 0 or false.
+ */
+final class ResultSetMapper<T>
+{
+    enum Type
+    {
+        INT(int.class),
+        INTEGER(Integer.class),
+        STRING(String.class),
+        DECIMAL(BigDecimal.class),
+        BOOLEAN(boolean.class);
+
+        private final Class<?> javaType;
+
+        Type(Class<?> javaType)
+        {
+            this.javaType = javaType;
+        }
+    }
+
+    private static final int NOT_SELECTED = 0;
+
+    private final String[] columns;
+    private final Type[] types;
+    private final MethodHandle constructor;
+    private final Map<String, int[]> positionsBySql = new ConcurrentHashMap<>();
+
+    private ResultSetMapper(Class<T> model, String[] columns, Type[] types)
+    {
+        this.columns = columns;
+        this.types = types;
+
+        Class<?>[] parameterTypes = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++)
+        {
+            parameterTypes[i] = types[i].javaType;
+        }
+
+        try
+        {
+            this.constructor = MethodHandles.publicLookup()
+                                            .findConstructor(model, MethodType.methodType(void.class, parameterTypes))
+                                            .asSpreader(Object[].class, parameterTypes.length);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalArgumentException("No matching constructor on " + model.getName(), e);
+        }
+    }
+
+    /**
+     * @param columnsAndTypes column name, {@link Type}, column name, {@link Type}, ... in the
+     *                        order of the model constructor's parameters
+     */
+    static <T> ResultSetMapper<T> of(Class<T> model, Object... columnsAndTypes)
+    {
+        int count = columnsAndTypes.length / 2;
+        String[] columns = new String[count];
+        Type[] types = new Type[count];
+        for (int i = 0; i < count; i++)
+        {
+            columns[i] = (String) columnsAndTypes[2 * i];
+            types[i] = (Type) columnsAndTypes[2 * i + 1];
+        }
+        return new ResultSetMapper<>(model, columns, types);
+    }
+
+    /**
+     * Returns a reader for the rows of a result set produced by the given SQL.
+     */
+    Rows<T> rows(String sql, ResultSet resultSet) throws SQLException
+    {
+        int[] positions = positionsBySql.get(sql);
+        if (positions == null)
+        {
+            positions = resolve(resultSet.getMetaData());
+            positionsBySql.put(sql, positions);
+        }
+        return new Rows<>(this, positions);
+    }
+
+    private int[] resolve(ResultSetMetaData metaData) throws SQLException
+    {
+        // the first column with a given label wins, like ResultSet.findColumn
+        Map<String, Integer> byLabel = new HashMap<>();
+        for (int i = metaData.getColumnCount(); i >= 1; i--)
+        {
+            byLabel.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+
+        int[] positions = new int[columns.length];
+        for (int i = 0; i < columns.length; i++)
+        {
+            positions[i] = byLabel.getOrDefault(columns[i].toLowerCase(Locale.ROOT), NOT_SELECTED);
+        }
+        return positions;
+    }
+
+    static final class Rows<T>
+    {
+        private final ResultSetMapper<T> mapper;
+        private final int[] positions;
+
+        private Rows(ResultSetMapper<T> mapper, int[] positions)
+        {
+            this.mapper = mapper;
+            this.positions = positions;
+        }
+
+        /**
+         * Builds the model from the row the result set is positioned on.
+         */
+        @SuppressWarnings("unchecked")
+        T map(ResultSet row) throws SQLException
+        {
+            Type[] types = mapper.types;
+            Object[] values = new Object[types.length];
+            for (int i = 0; i < values.length; i++)
+            {
+                values[i] = read(row, positions[i], types[i]);
+            }
+
+            try
+            {
+                return (T) mapper.constructor.invoke(values);
+            }
+            catch (RuntimeException | Error e)
+            {
+                throw e;
+            }
+            catch (Throwable e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static Object read(ResultSet row, int position, Type type) throws SQLException
+        {
+            if (position == NOT_SELECTED)
+            {
+                switch (type)
+                {
+                    case INT: return 0;
+                    case BOOLEAN: return false;
+                    default: return null;
+                }
+            }
+
+            switch (type)
+            {
+                case INT:
+                    return row.getInt(position);
+                case INTEGER:
+                    int value = row.getInt(position);
+                    return row.wasNull() ? null : value;
+                case DECIMAL:
+                    return row.getBigDecimal(position);
+                case BOOLEAN:
+                    return row.getBoolean(position);
+                default:
+                    return row.getString(position);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.yearup.exports;
+
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductFields.Field;
+import org.yearup.models.Product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV with a header row of column names, in the layout the CSV
+ * import reads back. Fields holding a comma, quote or line break are quoted.
+ */
+class CsvProductExportWriter extends ProductExportWriter
+{
+    private final Writer writer;
+    private final Field[] columns;
+
+    CsvProductExportWriter(OutputStream out, ProductFields fields) throws IOException
+    {
+        super(fields);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        List<Field> selected = new ArrayList<>();
+        for (Field field : Field.values())
+        {
+            if (fields == null || fields.contains(field))
+            {
+                selected.add(field);
+            }
+        }
+        this.columns = selected.toArray(new Field[0]);
+
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (i > 0) writer.write(',');
+            writer.write(columns[i].getColumn());
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    protected void write(Product product) throws IOException
+    {
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (i > 0) writer.write(',');
+            writeField(value(product, columns[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException
+    {
+        writer.flush();
+    }
+
+    private static String value(Product product, Field field)
+    {
+        switch (field)
+        {
+            case PRODUCT_ID: return String.valueOf(product.getProductId());
+            case NAME: return product.getName();
+            case PRICE: return product.getPrice() == null ? null : product.getPrice().toPlainString();
+            case CATEGORY_ID: return String.valueOf(product.getCategoryId());
+            case DESCRIPTION: return product.getDescription();
+            case COLOR: return product.getColor();
+            case STOCK: return String.valueOf(product.getStock());
+            case FEATURED: return String.valueOf(product.isFeatured());
+            default: return product.getImageUrl();
+        }
+    }
+
+    private void writeField(String value) throws IOException
+    {
+        if (value == null)
+        {
+            return;
+        }
+
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++)
+        {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote)
+        {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
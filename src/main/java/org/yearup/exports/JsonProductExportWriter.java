@@ -0,0 +1,75 @@
+package org.yearup.exports;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.yearup.data.ProductFields;
+import org.yearup.models.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Products as one JSON array, or as NDJSON with one product per line, using
+ * the same property names as the product endpoints. Both are written through
+ * a single generator, element by element.
+ */
+class JsonProductExportWriter extends ProductExportWriter
+{
+    private final JsonGenerator generator;
+    private final ObjectWriter productWriter;
+    private final boolean array;
+    private boolean written;
+
+    JsonProductExportWriter(OutputStream out, ObjectMapper mapper, ProductFields fields, boolean array) throws IOException
+    {
+        super(fields);
+        this.array = array;
+
+        // flushing after every product would turn each one into its own network write
+        ObjectWriter writer = mapper.writerFor(Product.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        if (fields != null)
+        {
+            writer = writer.with(new SimpleFilterProvider().addFilter(ProductFields.FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(fields.getProperties())));
+        }
+        this.productWriter = writer;
+
+        this.generator = mapper.getFactory().createGenerator(new BufferedOutputStream(out, BUFFER_SIZE));
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (array)
+        {
+            generator.writeStartArray();
+        }
+        else
+        {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+    }
+
+    @Override
+    protected void write(Product product) throws IOException
+    {
+        productWriter.writeValue(generator, product);
+        written = true;
+    }
+
+    @Override
+    public void finish() throws IOException
+    {
+        if (array)
+        {
+            generator.writeEndArray();
+        }
+        else if (written)
+        {
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+}
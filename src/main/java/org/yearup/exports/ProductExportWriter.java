@@ -0,0 +1,90 @@
+package org.yearup.exports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.yearup.data.ProductFields;
+import org.yearup.models.Product;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Writes the products of a bulk export to the response one at a time, as the
+ * DAO hands them over, so an export is never held in memory as a whole.
+ * Output is buffered and flushed as the buffer fills.
+ */
+public abstract class ProductExportWriter implements Consumer<Product>
+{
+    public static final String JSON = "application/json";
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final ProductFields fields;
+
+    protected ProductExportWriter(ProductFields fields)
+    {
+        this.fields = fields;
+    }
+
+    /**
+     * Checks the format parameter and returns the content type it is written as.
+     */
+    public static String contentType(String format)
+    {
+        switch (format == null ? "" : format.trim().toLowerCase(Locale.ROOT))
+        {
+            case "json":
+                return JSON;
+            case "ndjson":
+                return NDJSON;
+            case "csv":
+                return CSV;
+            default:
+                throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+    }
+
+    /**
+     * @param mapper the application's mapper, which knows the product fields filter
+     * @param fields the product properties to write, null for all of them
+     */
+    public static ProductExportWriter open(String format, OutputStream out, ObjectMapper mapper,
+                                           ProductFields fields) throws IOException
+    {
+        switch (contentType(format))
+        {
+            case JSON:
+                return new JsonProductExportWriter(out, mapper, fields, true);
+            case NDJSON:
+                return new JsonProductExportWriter(out, mapper, fields, false);
+            default:
+                return new CsvProductExportWriter(out, fields);
+        }
+    }
+
+    protected abstract void write(Product product) throws IOException;
+
+    /**
+     * Writes whatever closes the document and flushes the buffer. The stream
+     * itself is left open for the caller.
+     */
+    public abstract void finish() throws IOException;
+
+    @Override
+    public void accept(Product product)
+    {
+        try
+        {
+            write(product);
+        }
+        catch (IOException e)
+        {
+            // usually the client going away; ends the DAO's read loop
+            throw new UncheckedIOException(e);
+        }
+    }
+}
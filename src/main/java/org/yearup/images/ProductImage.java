@@ -0,0 +1,103 @@
+package org.yearup.images;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One version of an image file: its size, modification time and a strong
+ * ETag made of the two. Small, frequently requested images also hold a
+ * read-only mapping of the file, so sending them needs no file system call.
+ */
+public final class ProductImage
+{
+    private final Path path;
+    private final long length;
+    private final long lastModifiedNanos;
+    private final Object fileKey;
+    private final String etag;
+    private final MappedByteBuffer mapped;
+    // System.nanoTime() of the last check that the file is unchanged
+    volatile long checkedAt;
+
+    ProductImage(Path path, long length, long lastModifiedNanos, Object fileKey, MappedByteBuffer mapped)
+    {
+        this.path = path;
+        this.length = length;
+        this.lastModifiedNanos = lastModifiedNanos;
+        this.fileKey = fileKey;
+        this.etag = "\"" + Long.toString(length, 36) + "-" + Long.toString(lastModifiedNanos, 36) + "\"";
+        this.mapped = mapped;
+    }
+
+    public Path getPath()
+    {
+        return path;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public long getLastModified()
+    {
+        return lastModifiedNanos / 1_000_000;
+    }
+
+    public String getETag()
+    {
+        return etag;
+    }
+
+    public boolean isMapped()
+    {
+        return mapped != null;
+    }
+
+    boolean isSameFile(long length, long lastModifiedNanos, Object fileKey)
+    {
+        return this.length == length
+               && this.lastModifiedNanos == lastModifiedNanos
+               && (this.fileKey == null || this.fileKey.equals(fileKey));
+    }
+
+    /**
+     * Writes {@code count} bytes starting at {@code start}. A mapped image is
+     * written from memory; any other is handed to
+     * {@link FileChannel#transferTo}, which lets the kernel copy straight
+     * from the page cache when the target is a socket or file.
+     */
+    public void transferTo(long start, long count, WritableByteChannel out) throws IOException
+    {
+        if (mapped != null)
+        {
+            ByteBuffer range = mapped.duplicate().position((int) start).limit((int) (start + count));
+            while (range.hasRemaining())
+            {
+                out.write(range);
+            }
+            return;
+        }
+
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long position = start;
+            long end = start + count;
+            while (position < end)
+            {
+                long sent = file.transferTo(position, end - position, out);
+                if (sent <= 0)
+                {
+                    throw new EOFException("Image " + path.getFileName() + " became shorter while it was sent");
+                }
+                position += sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.yearup.images;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The product images named by {@code Product.imageUrl}, read from a local
+ * asset directory.
+ *
+ * The most recently requested small images are kept memory mapped in a
+ * small LRU. A mapped image is served without opening or reading its file,
+ * and its file is checked for changes at most once per
+ * {@link #REVALIDATE_NANOS}. Other images are checked on every request and
+ * sent straight from the file.
+ *
+ * Images should be replaced by writing a new file and renaming it over the
+ * old one. Rewriting a mapped file in place can expose a half-written image
+ * to the requests in flight.
+ */
+@Component
+public class ProductImageStore
+{
+    static final long MAX_MAPPED_SIZE = 512 * 1024;
+    static final int MAX_MAPPED_IMAGES = 256;
+    static final long REVALIDATE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path root;
+    // guarded by itself; access ordered, so the eldest entry is the least recently served
+    private final Map<String, ProductImage> mapped = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ProductImage> eldest)
+        {
+            // the mapping itself is released once the last response using it is done with it
+            return size() > MAX_MAPPED_IMAGES;
+        }
+    };
+
+    public ProductImageStore(@Value("${images.path:images}") String path)
+    {
+        this.root = Paths.get(path).toAbsolutePath().normalize();
+    }
+
+    /**
+     * The current version of an image, or null when there is no such image.
+     *
+     * @throws IllegalArgumentException when the name is not a plain file name
+     */
+    public ProductImage open(String fileName) throws IOException
+    {
+        Path path = resolve(fileName);
+
+        ProductImage cached;
+        synchronized (mapped)
+        {
+            cached = mapped.get(fileName);
+        }
+        long now = System.nanoTime();
+        if (cached != null && now - cached.checkedAt < REVALIDATE_NANOS)
+        {
+            return cached;
+        }
+
+        BasicFileAttributes attributes;
+        try
+        {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException e)
+        {
+            attributes = null;
+        }
+        if (attributes == null || !attributes.isRegularFile())
+        {
+            forget(fileName);
+            return null;
+        }
+
+        long length = attributes.size();
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        if (cached != null && cached.isSameFile(length, modified, attributes.fileKey()))
+        {
+            cached.checkedAt = now;
+            return cached;
+        }
+
+        if (length > MAX_MAPPED_SIZE)
+        {
+            forget(fileName);
+            return new ProductImage(path, length, modified, attributes.fileKey(), null);
+        }
+
+        ProductImage image = new ProductImage(path, length, modified, attributes.fileKey(), map(path, length));
+        image.checkedAt = now;
+        synchronized (mapped)
+        {
+            mapped.put(fileName, image);
+        }
+        return image;
+    }
+
+    private Path resolve(String fileName)
+    {
+        if (fileName == null || fileName.isBlank() || fileName.startsWith(".")
+            || fileName.indexOf('/') >= 0 || fileName.indexOf('\\') >= 0 || fileName.indexOf('\0') >= 0)
+        {
+            throw new IllegalArgumentException("Invalid image name: " + fileName);
+        }
+        Path path = root.resolve(fileName).normalize();
+        if (!root.equals(path.getParent()))
+        {
+            throw new IllegalArgumentException("Invalid image name: " + fileName);
+        }
+        return path;
+    }
+
+    private void forget(String fileName)
+    {
+        synchronized (mapped)
+        {
+            mapped.remove(fileName);
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, long length) throws IOException
+    {
+        // the mapping stays valid after the channel is closed
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return file.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.yearup.imports;
+
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportRow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RFC 4180 CSV with a header row. Columns are matched by header name
+ * (name, price, category_id, description, color, image_url, stock, featured;
+ * camelCase is accepted too) and may appear in any order. Quoted fields may
+ * contain commas, doubled quotes and line breaks.
+ */
+class CsvProductImportReader extends ProductImportReader
+{
+    private static final int NAME = 0;
+    private static final int PRICE = 1;
+    private static final int CATEGORY_ID = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int COLOR = 4;
+    private static final int IMAGE_URL = 5;
+    private static final int STOCK = 6;
+    private static final int FEATURED = 7;
+
+    private static final Map<String, Integer> COLUMNS = new HashMap<>();
+
+    static
+    {
+        COLUMNS.put("name", NAME);
+        COLUMNS.put("price", PRICE);
+        COLUMNS.put("categoryid", CATEGORY_ID);
+        COLUMNS.put("description", DESCRIPTION);
+        COLUMNS.put("color", COLOR);
+        COLUMNS.put("imageurl", IMAGE_URL);
+        COLUMNS.put("stock", STOCK);
+        COLUMNS.put("featured", FEATURED);
+    }
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    // position in the record of each product column, -1 when the feed does not have it
+    private int[] positions;
+    private long line = 1;
+
+    CsvProductImportReader(InputStream body)
+    {
+        super(body);
+    }
+
+    @Override
+    protected ProductImportRow read() throws IOException
+    {
+        if (positions == null && !readHeader())
+        {
+            return null;
+        }
+
+        long start;
+        do
+        {
+            start = line;
+            if (!readRecord())
+            {
+                return null;
+            }
+        }
+        while (fields.size() == 1 && fields.get(0).isEmpty());
+
+        try
+        {
+            return validate(start, toProduct());
+        }
+        catch (NumberFormatException e)
+        {
+            return ProductImportRow.failed(start, "invalid number: " + e.getMessage());
+        }
+    }
+
+    private boolean readHeader() throws IOException
+    {
+        if (!readRecord())
+        {
+            return false;
+        }
+
+        positions = new int[COLUMNS.size()];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < fields.size(); i++)
+        {
+            String header = fields.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT);
+            Integer column = COLUMNS.get(header);
+            if (column != null)
+            {
+                positions[column] = i;
+            }
+        }
+
+        if (positions[NAME] < 0 || positions[PRICE] < 0 || positions[CATEGORY_ID] < 0)
+        {
+            throw new IllegalArgumentException("CSV header must name the name, price and category_id columns");
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next record into {@link #fields}. Returns false at the end of the input.
+     */
+    private boolean readRecord() throws IOException
+    {
+        fields.clear();
+        field.setLength(0);
+
+        int c = reader.read();
+        if (c < 0)
+        {
+            return false;
+        }
+
+        boolean quoted = false;
+        while (true)
+        {
+            if (quoted)
+            {
+                if (c < 0)
+                {
+                    throw new IllegalArgumentException("Unterminated quoted field starting before line " + line);
+                }
+                if (c == '"')
+                {
+                    reader.mark(1);
+                    int following = reader.read();
+                    if (following == '"')
+                    {
+                        field.append('"');
+                    }
+                    else
+                    {
+                        quoted = false;
+                        reader.reset();
+                    }
+                }
+                else
+                {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            }
+            else if (c == '"' && field.length() == 0)
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else if (c == '\n' || c < 0)
+            {
+                if (c == '\n') line++;
+                break;
+            }
+            else if (c != '\r')
+            {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+
+        fields.add(field.toString());
+        return true;
+    }
+
+    private Product toProduct()
+    {
+        Product product = new Product();
+        product.setName(value(NAME));
+        product.setDescription(value(DESCRIPTION));
+        product.setColor(value(COLOR));
+        product.setImageUrl(value(IMAGE_URL));
+
+        String price = value(PRICE);
+        product.setPrice(price == null ? null : new BigDecimal(price));
+
+        String categoryId = value(CATEGORY_ID);
+        product.setCategoryId(categoryId == null ? null : Integer.valueOf(categoryId));
+
+        String stock = value(STOCK);
+        product.setStock(stock == null ? 0 : Integer.parseInt(stock));
+
+        String featured = value(FEATURED);
+        product.setFeatured(featured != null && (featured.equalsIgnoreCase("true") || featured.equals("1")));
+        return product;
+    }
+
+    private String value(int column)
+    {
+        int position = positions[column];
+        if (position < 0 || position >= fields.size())
+        {
+            return null;
+        }
+        String value = fields.get(position).trim();
+        return value.isEmpty() ? null : value;
+    }
+}
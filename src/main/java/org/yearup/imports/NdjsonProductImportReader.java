@@ -0,0 +1,56 @@
+package org.yearup.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportRow;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * One JSON product per line, using the same property names as the product
+ * endpoints. Each line is bound on its own so a malformed line only fails
+ * that row.
+ */
+class NdjsonProductImportReader extends ProductImportReader
+{
+    private static final ObjectReader PRODUCT_READER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .readerFor(Product.class);
+
+    private long line;
+
+    NdjsonProductImportReader(InputStream body)
+    {
+        super(body);
+    }
+
+    @Override
+    protected ProductImportRow read() throws IOException
+    {
+        String text;
+        do
+        {
+            text = reader.readLine();
+            line++;
+        }
+        while (text != null && text.isBlank());
+
+        if (text == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return validate(line, PRODUCT_READER.readValue(text));
+        }
+        catch (JsonProcessingException e)
+        {
+            return ProductImportRow.failed(line, e.getOriginalMessage());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.yearup.imports;
+
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportRow;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a bulk product import one at a time, straight off the
+ * request body, so a feed is never held in memory as a whole. Records that
+ * cannot be parsed or are missing required values come back as failed rows
+ * instead of ending the import.
+ */
+public abstract class ProductImportReader implements Iterator<ProductImportRow>
+{
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final BufferedReader reader;
+    private ProductImportRow next;
+    private boolean done;
+
+    protected ProductImportReader(InputStream body)
+    {
+        this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @param contentType the request content type, parameters such as charset are ignored
+     */
+    public static ProductImportReader open(String contentType, InputStream body)
+    {
+        String mediaType = contentType == null ? "" : contentType.split(";")[0].trim().toLowerCase();
+        switch (mediaType)
+        {
+            case CSV:
+                return new CsvProductImportReader(body);
+            case NDJSON:
+                return new NdjsonProductImportReader(body);
+            default:
+                throw new IllegalArgumentException("Unsupported import format: " + contentType);
+        }
+    }
+
+    /**
+     * Returns the next record, or null at the end of the input.
+     */
+    protected abstract ProductImportRow read() throws IOException;
+
+    @Override
+    public boolean hasNext()
+    {
+        if (next == null && !done)
+        {
+            try
+            {
+                next = read();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            done = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public ProductImportRow next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        ProductImportRow row = next;
+        next = null;
+        return row;
+    }
+
+    protected static ProductImportRow validate(long line, Product product)
+    {
+        if (product.getName() == null || product.getName().isBlank())
+        {
+            return ProductImportRow.failed(line, "name is required");
+        }
+        if (product.getPrice() == null)
+        {
+            return ProductImportRow.failed(line, "price is required");
+        }
+        if (product.getPrice().compareTo(BigDecimal.ZERO) < 0)
+        {
+            return ProductImportRow.failed(line, "price must not be negative");
+        }
+        if (isMissingCategory(product))
+        {
+            return ProductImportRow.failed(line, "category_id is required");
+        }
+        if (product.getStock() < 0)
+        {
+            return ProductImportRow.failed(line, "stock must not be negative");
+        }
+        return ProductImportRow.of(line, product);
+    }
+
+    private static boolean isMissingCategory(Product product)
+    {
+        try
+        {
+            return product.getCategoryId() <= 0;
+        }
+        catch (NullPointerException e)
+        {
+            // getCategoryId unboxes a category that was never set
+            return true;
+        }
+    }
+}
@@ -5,6 +5,8 @@ public class Category
     private Integer categoryId;
     private String name;
     private String description;
+    // null for a top-level category
+    private Integer parentCategoryId;
 
     public Category()
     {
@@ -17,6 +19,14 @@ public class Category
         this.description = description;
     }
 
+    public Category(Integer categoryId, String name, String description, Integer parentCategoryId)
+    {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.description = description;
+        this.parentCategoryId = parentCategoryId;
+    }
+
     public int getCategoryId()
     {
         return categoryId;
@@ -47,12 +57,23 @@ public class Category
         this.description = description;
     }
 
+    public Integer getParentCategoryId()
+    {
+        return parentCategoryId;
+    }
+
+    public void setParentCategoryId(Integer parentCategoryId)
+    {
+        this.parentCategoryId = parentCategoryId;
+    }
+
     @Override
     public String toString() {
         return "Category{" +
                 "categoryId=" + categoryId +
                 ", name='" + name + '\'' +
                 ", description= " + description +
+                ", parentCategoryId=" + parentCategoryId +
                 '}';
     }
 }
@@ -0,0 +1,52 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CategoryNode
+{
+    private int categoryId;
+    private String name;
+    private List<CategoryNode> children = new ArrayList<>();
+
+    public CategoryNode()
+    {
+    }
+
+    public CategoryNode(int categoryId, String name, List<CategoryNode> children)
+    {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.children = children;
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public void setCategoryId(int categoryId)
+    {
+        this.categoryId = categoryId;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    public List<CategoryNode> getChildren()
+    {
+        return children;
+    }
+
+    public void setChildren(List<CategoryNode> children)
+    {
+        this.children = children;
+    }
+}
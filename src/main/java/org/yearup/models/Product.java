@@ -1,7 +1,11 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import java.math.BigDecimal;
 
+// lets a response narrow the written properties, see ProductFields
+@JsonFilter("productFields")
 public class Product
 {
     private int productId;
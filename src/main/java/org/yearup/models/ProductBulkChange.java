@@ -0,0 +1,69 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Body of the bulk admin endpoints: which products to touch (a category,
+ * a list of ids, or both) and, for updates, what to change on all of them.
+ */
+public class ProductBulkChange
+{
+    private Integer categoryId;
+    private List<Integer> productIds;
+    // e.g. -10 takes 10% off every price
+    private BigDecimal pricePercent;
+    // e.g. 2.50 adds 2.50 to every price
+    private BigDecimal priceAmount;
+    private Integer stock;
+
+    public Integer getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public void setCategoryId(Integer categoryId)
+    {
+        this.categoryId = categoryId;
+    }
+
+    public List<Integer> getProductIds()
+    {
+        return productIds;
+    }
+
+    public void setProductIds(List<Integer> productIds)
+    {
+        this.productIds = productIds;
+    }
+
+    public BigDecimal getPricePercent()
+    {
+        return pricePercent;
+    }
+
+    public void setPricePercent(BigDecimal pricePercent)
+    {
+        this.pricePercent = pricePercent;
+    }
+
+    public BigDecimal getPriceAmount()
+    {
+        return priceAmount;
+    }
+
+    public void setPriceAmount(BigDecimal priceAmount)
+    {
+        this.priceAmount = priceAmount;
+    }
+
+    public Integer getStock()
+    {
+        return stock;
+    }
+
+    public void setStock(Integer stock)
+    {
+        this.stock = stock;
+    }
+}
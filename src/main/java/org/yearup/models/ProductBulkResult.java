@@ -0,0 +1,25 @@
+package org.yearup.models;
+
+public class ProductBulkResult
+{
+    private int affected;
+
+    public ProductBulkResult()
+    {
+    }
+
+    public ProductBulkResult(int affected)
+    {
+        this.affected = affected;
+    }
+
+    public int getAffected()
+    {
+        return affected;
+    }
+
+    public void setAffected(int affected)
+    {
+        this.affected = affected;
+    }
+}
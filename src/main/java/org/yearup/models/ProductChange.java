@@ -0,0 +1,55 @@
+package org.yearup.models;
+
+public class ProductChange
+{
+    public static final String SAVED = "saved";
+    public static final String DELETED = "deleted";
+    // the catalog was loaded for the first time, a reload changed too many products to send one by one, or the
+    // client missed too many changes; clients should fetch what they show again
+    public static final String RESET = "reset";
+
+    private String type;
+    private int productId;
+    private Product product;
+
+    public ProductChange()
+    {
+    }
+
+    public ProductChange(String type, int productId, Product product)
+    {
+        this.type = type;
+        this.productId = productId;
+        this.product = product;
+    }
+
+    public String getType()
+    {
+        return type;
+    }
+
+    public void setType(String type)
+    {
+        this.type = type;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public Product getProduct()
+    {
+        return product;
+    }
+
+    public void setProduct(Product product)
+    {
+        this.product = product;
+    }
+}
@@ -0,0 +1,59 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of matching products per filter value. Each facet is counted with
+ * all the other filters applied but not its own, so a client can show how
+ * many results every alternative value would give.
+ */
+public class ProductFacets
+{
+    private int total;
+    private Map<Integer, Integer> categories = new LinkedHashMap<>();
+    private Map<String, Integer> colors = new LinkedHashMap<>();
+    private List<PriceBucket> prices = new ArrayList<>();
+
+    public int getTotal()
+    {
+        return total;
+    }
+
+    public void setTotal(int total)
+    {
+        this.total = total;
+    }
+
+    public Map<Integer, Integer> getCategories()
+    {
+        return categories;
+    }
+
+    public void setCategories(Map<Integer, Integer> categories)
+    {
+        this.categories = categories;
+    }
+
+    public Map<String, Integer> getColors()
+    {
+        return colors;
+    }
+
+    public void setColors(Map<String, Integer> colors)
+    {
+        this.colors = colors;
+    }
+
+    public List<PriceBucket> getPrices()
+    {
+        return prices;
+    }
+
+    public void setPrices(List<PriceBucket> prices)
+    {
+        this.prices = prices;
+    }
+}
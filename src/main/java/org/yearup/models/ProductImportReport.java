@@ -0,0 +1,94 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductImportReport
+{
+    // a badly broken feed should not turn the report itself into a huge payload
+    public static final int MAX_ERRORS = 1000;
+
+    private int imported;
+    private int failed;
+    private List<RowError> errors = new ArrayList<>();
+
+    public int getImported()
+    {
+        return imported;
+    }
+
+    public void setImported(int imported)
+    {
+        this.imported = imported;
+    }
+
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed(int failed)
+    {
+        this.failed = failed;
+    }
+
+    public List<RowError> getErrors()
+    {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors)
+    {
+        this.errors = errors;
+    }
+
+    public void addImported(int count)
+    {
+        imported += count;
+    }
+
+    public void addError(long line, String message)
+    {
+        failed++;
+        if (errors.size() < MAX_ERRORS)
+        {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    public static class RowError
+    {
+        private long line;
+        private String message;
+
+        public RowError()
+        {
+        }
+
+        public RowError(long line, String message)
+        {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine()
+        {
+            return line;
+        }
+
+        public void setLine(long line)
+        {
+            this.line = line;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        public void setMessage(String message)
+        {
+            this.message = message;
+        }
+    }
+}
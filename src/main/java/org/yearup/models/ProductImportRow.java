@@ -0,0 +1,49 @@
+package org.yearup.models;
+
+/**
+ * One record of a bulk import: either a parsed product or the reason the
+ * record could not be parsed.
+ */
+public class ProductImportRow
+{
+    private final long line;
+    private final Product product;
+    private final String error;
+
+    private ProductImportRow(long line, Product product, String error)
+    {
+        this.line = line;
+        this.product = product;
+        this.error = error;
+    }
+
+    public static ProductImportRow of(long line, Product product)
+    {
+        return new ProductImportRow(line, product, null);
+    }
+
+    public static ProductImportRow failed(long line, String error)
+    {
+        return new ProductImportRow(line, null, error);
+    }
+
+    public long getLine()
+    {
+        return line;
+    }
+
+    public Product getProduct()
+    {
+        return product;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    public boolean isFailed()
+    {
+        return error != null;
+    }
+}
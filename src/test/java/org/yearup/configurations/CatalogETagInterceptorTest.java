@@ -0,0 +1,304 @@
+package org.yearup.configurations;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.yearup.controllers.CategoriesController;
+import org.yearup.controllers.ProductsController;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductViewDao;
+import org.yearup.data.cache.CachedCategoryDao;
+import org.yearup.data.cache.CachedProductDao;
+import org.yearup.data.cache.CoPurchaseIndex;
+import org.yearup.data.cache.ProductFilterIndex;
+import org.yearup.data.cache.ProductRelatedIndex;
+import org.yearup.data.cache.ProductSuggestIndex;
+import org.yearup.data.cache.ProductTextIndex;
+import org.yearup.data.cache.ProductTrigramIndex;
+import org.yearup.data.cache.ProductViewCounter;
+import org.yearup.data.mysql.MySqlCategoryDao;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class CatalogETagInterceptorTest
+{
+    // the fake MySQL DAOs below never open a connection
+    private static final DataSource NO_DATABASE = (DataSource) Proxy.newProxyInstance(
+            DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> null);
+
+    // the view counter's table is not needed to score views
+    private static final ProductViewDao NO_VIEWS = new ProductViewDao()
+    {
+        @Override
+        public void addViews(Instant hour, Map<Integer, Long> views)
+        {
+        }
+
+        @Override
+        public void streamViews(Instant since, ViewSink sink)
+        {
+        }
+    };
+
+    private final CatalogVersion catalogVersion = new CatalogVersion();
+    private final List<Category> categoryRows = new ArrayList<>(List.of(
+            new Category(1, "Electronics", "Gadgets"),
+            new Category(2, "Fashion", "Clothes")));
+    private final Map<Integer, Product> productRows = new TreeMap<>(Map.of(
+            1, product(1, "Headphones", "79.99", 1),
+            2, product(2, "Jeans", "49.99", 2),
+            3, product(3, "Headband", "9.99", 2)));
+    // every call that reached MySQL, and every body Jackson wrote
+    private final List<String> queries = new ArrayList<>();
+    private int serialized;
+
+    private CachedCategoryDao categoryDao;
+    private CachedProductDao productDao;
+    private ProductSuggestIndex suggestIndex;
+    private MockMvc mvc;
+
+    @BeforeEach
+    public void setup() throws SQLException
+    {
+        categoryDao = categoryCache();
+        productDao = productCache();
+        mvc = mvc(categoryDao, productDao);
+    }
+
+    @Test
+    public void get_withAMatchingIfNoneMatch_shouldAnswer304_withoutQueryingOrSerializing() throws Exception
+    {
+        // arrange: a fresh instance with empty caches, which would have to query MySQL for a 200
+        String etag = perform(mvc, "/categories/1/products", null).getHeader("ETag");
+        MockMvc restarted = mvc(categoryCache(), productCache());
+        queries.clear();
+        serialized = 0;
+
+        // act
+        MockHttpServletResponse response = perform(restarted, "/categories/1/products", etag);
+
+        // assert
+        assertEquals(304, response.getStatus());
+        assertEquals(etag, response.getHeader("ETag"));
+        assertEquals("", response.getContentAsString());
+        assertEquals(List.of(), queries, "Because a 304 is answered before the controller runs.");
+        assertEquals(0, serialized, "Because there is no body to write.");
+    }
+
+    @Test
+    public void get_afterAProductWrite_shouldAnswerWithTheNewProductAndANewETag() throws Exception
+    {
+        // arrange
+        String etag = perform(mvc, "/categories/1/products", null).getHeader("ETag");
+        productDao.updateProduct(1, product(1, "Headphones", "69.99", 1));
+
+        // act
+        MockHttpServletResponse response = perform(mvc, "/categories/1/products", etag);
+
+        // assert
+        assertEquals(200, response.getStatus());
+        assertNotEquals(etag, response.getHeader("ETag"));
+        assertTrue(response.getContentAsString().contains("69.99"), "Because the new ETag must come with the new content.");
+    }
+
+    @Test
+    public void get_afterACategoryWrite_shouldAnswerWithTheNewCategoryAndANewETag() throws Exception
+    {
+        // arrange
+        String etag = perform(mvc, "/categories", null).getHeader("ETag");
+        categoryDao.updateCategory(2, new Category(2, "Apparel", "Clothes"));
+
+        // act
+        MockHttpServletResponse response = perform(mvc, "/categories", etag);
+
+        // assert
+        assertEquals(200, response.getStatus());
+        assertNotEquals(etag, response.getHeader("ETag"));
+        assertTrue(response.getContentAsString().contains("Apparel"), "Because the new ETag must come with the new content.");
+    }
+
+    @Test
+    public void get_withDifferentQueryStrings_shouldHaveDifferentETags() throws Exception
+    {
+        // act
+        String electronics = perform(mvc, "/categories?name=Electronics", null).getHeader("ETag");
+        String fashion = perform(mvc, "/categories?name=Fashion", null).getHeader("ETag");
+        MockHttpServletResponse again = perform(mvc, "/categories?name=Electronics", electronics);
+
+        // assert
+        assertNotEquals(electronics, fashion, "Because the two queries have different bodies.");
+        assertEquals(304, again.getStatus(), "Because nothing was written since.");
+    }
+
+    @Test
+    public void suggest_afterViewsAreFlushed_shouldAnswerWithTheNewRankingAndANewETag() throws Exception
+    {
+        // arrange: the shorter name comes first until the headphones' views are scored
+        MockMvc suggestions = suggestMvc(productDao);
+        String etag = perform(suggestions, "/products/suggest?prefix=head", null).getHeader("ETag");
+        ProductViewCounter viewCounter = new ProductViewCounter(NO_VIEWS, 180, List.of(suggestIndex));
+        viewCounter.record(1);
+
+        // act
+        viewCounter.flush();
+        MockHttpServletResponse response = perform(suggestions, "/products/suggest?prefix=head", etag);
+
+        // assert
+        assertEquals(200, response.getStatus(), "Because the ranking changed without any product write.");
+        assertNotEquals(etag, response.getHeader("ETag"));
+        String body = response.getContentAsString();
+        assertTrue(body.indexOf("Headphones") < body.indexOf("Headband"), "Because the new ETag must come with the new ranking.");
+    }
+
+    @Test
+    public void get_afterViewsAreFlushed_shouldStillAnswer304() throws Exception
+    {
+        // arrange
+        String etag = perform(mvc, "/categories/1/products", null).getHeader("ETag");
+        ProductViewCounter viewCounter = new ProductViewCounter(NO_VIEWS, 180, List.of(suggestIndex));
+        viewCounter.record(1);
+
+        // act
+        viewCounter.flush();
+        MockHttpServletResponse response = perform(mvc, "/categories/1/products", etag);
+
+        // assert
+        assertEquals(304, response.getStatus(), "Because views do not change the products of a category.");
+    }
+
+    private MockHttpServletResponse perform(MockMvc mvc, String uri, String ifNoneMatch) throws Exception
+    {
+        var request = get(uri);
+        if (ifNoneMatch != null)
+        {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return mvc.perform(request).andReturn().getResponse();
+    }
+
+    private MockMvc mvc(CategoryDao categories, ProductDao products)
+    {
+        return MockMvcBuilders.standaloneSetup(new CategoriesController(categories, products))
+                              .addInterceptors(new CatalogETagInterceptor(catalogVersion))
+                              .setMessageConverters(jackson())
+                              .build();
+    }
+
+    private MockMvc suggestMvc(CachedProductDao products)
+    {
+        // suggest only reads the index; the controller's other collaborators are never touched
+        return MockMvcBuilders.standaloneSetup(new ProductsController(products, products, null, null, null, null))
+                              .addInterceptors(new CatalogETagInterceptor(catalogVersion).viewRanked())
+                              .setMessageConverters(jackson())
+                              .build();
+    }
+
+    private MappingJackson2HttpMessageConverter jackson()
+    {
+        // the application's object mapper, counting what it writes
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonConfig().productFieldsFilter().customize(builder);
+        return new MappingJackson2HttpMessageConverter(builder.build())
+        {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException
+            {
+                serialized++;
+                super.writeInternal(object, type, outputMessage);
+            }
+        };
+    }
+
+    private CachedCategoryDao categoryCache() throws SQLException
+    {
+        MySqlCategoryDao database = new MySqlCategoryDao(NO_DATABASE)
+        {
+            @Override
+            public List<Category> getAllCategories(Integer categoryId, String name)
+            {
+                queries.add("categories");
+                return categoryRows.stream()
+                                   .filter(category -> categoryId == null || category.getCategoryId() == categoryId)
+                                   .filter(category -> name == null || category.getName().equalsIgnoreCase(name))
+                                   .collect(Collectors.toList());
+            }
+
+            @Override
+            public Category getById(int categoryId)
+            {
+                queries.add("category " + categoryId);
+                return categoryRows.stream().filter(category -> category.getCategoryId() == categoryId).findFirst().orElse(null);
+            }
+
+            @Override
+            public void updateCategory(int categoryId, Category category)
+            {
+                categoryRows.replaceAll(row -> row.getCategoryId() == categoryId ? category : row);
+            }
+        };
+        return new CachedCategoryDao(database, catalogVersion);
+    }
+
+    private CachedProductDao productCache()
+    {
+        MySqlProductDao database = new MySqlProductDao(NO_DATABASE)
+        {
+            @Override
+            public void streamProducts(ProductQuery query, Consumer<Product> sink)
+            {
+                queries.add("products");
+                productRows.values().forEach(sink);
+            }
+
+            @Override
+            public Product getById(int productId)
+            {
+                queries.add("product " + productId);
+                return productRows.get(productId);
+            }
+
+            @Override
+            public void updateProduct(int productId, Product product)
+            {
+                productRows.put(productId, product);
+            }
+        };
+        suggestIndex = new ProductSuggestIndex(catalogVersion);
+        return new CachedProductDao(database, catalogVersion, new ProductTextIndex(), suggestIndex,
+                                    new ProductTrigramIndex(), new ProductFilterIndex(), new ProductRelatedIndex(),
+                                    new CoPurchaseIndex(null), List.of(suggestIndex), null);
+    }
+
+    private static Product product(int id, String name, String price, int categoryId)
+    {
+        return new Product(id, name, new BigDecimal(price), categoryId, "", "Black", 10, false, "");
+    }
+}
@@ -0,0 +1,91 @@
+package org.yearup.data;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CategoryTreeTest
+{
+    // Electronics > Audio > Headphones, Electronics > Phones, Fashion
+    private final CategoryTree tree = CategoryTree.of(List.of(
+            new Category(1, "Electronics", null, null),
+            new Category(2, "Fashion", null, null),
+            new Category(4, "Audio", null, 1),
+            new Category(5, "Phones", null, 1),
+            new Category(9, "Headphones", null, 4)));
+
+    @Test
+    public void subtreeIds_shouldIncludeEveryDescendant()
+    {
+        // act
+        var actual = tree.subtreeIds(1);
+
+        // assert
+        assertEquals(List.of(1, 4, 9, 5), actual, "Because a subtree is the category followed by its descendants, depth first.");
+        assertEquals(List.of(9), tree.subtreeIds(9));
+        assertEquals(List.of(), tree.subtreeIds(7));
+    }
+
+    @Test
+    public void breadcrumbs_shouldRunFromTheTopLevelDown()
+    {
+        // act
+        var actual = tree.breadcrumbs(9);
+
+        // assert
+        assertEquals(List.of(1, 4, 9), ids(actual));
+        assertEquals(List.of(), tree.breadcrumbs(7));
+    }
+
+    @Test
+    public void children_shouldTreatNullAsTheTopLevel()
+    {
+        // act
+        var actual = tree.children(null);
+
+        // assert
+        assertEquals(List.of(1, 2), ids(actual));
+        assertEquals(List.of(4, 5), ids(tree.children(1)));
+        assertEquals(List.of(), ids(tree.children(9)));
+    }
+
+    @Test
+    public void roots_shouldNestTheNodes()
+    {
+        // act
+        var actual = tree.roots();
+
+        // assert
+        CategoryNode electronics = actual.get(0);
+        assertEquals("Electronics", electronics.getName());
+        assertEquals("Audio", electronics.getChildren().get(0).getName());
+        assertEquals("Headphones", electronics.getChildren().get(0).getChildren().get(0).getName());
+        assertEquals(List.of(), actual.get(1).getChildren());
+    }
+
+    @Test
+    public void of_shouldSurviveAParentCycle()
+    {
+        // arrange
+        var cyclic = CategoryTree.of(List.of(
+                new Category(1, "A", null, 2),
+                new Category(2, "B", null, 1)));
+
+        // act
+        var actual = cyclic.breadcrumbs(1);
+
+        // assert
+        assertEquals(2, actual.size(), "Because the walk up the tree stops once it has seen every category.");
+        assertEquals(List.of(), cyclic.roots());
+    }
+
+    private static List<Integer> ids(List<Category> categories)
+    {
+        return categories.stream().map(Category::getCategoryId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,128 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.OrderDao;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ObjIntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BestsellerTrackerTest
+{
+    private static final long MINUTE = 60 * 1000;
+
+    private long now = 100_000 * MINUTE;
+    // {orderId, placedAt, productId, quantity}
+    private final List<long[]> lineItems = new ArrayList<>();
+    private final List<Integer> requestedAfter = new ArrayList<>();
+
+    private final OrderDao orderDao = new OrderDao()
+    {
+        @Override
+        public void streamBaskets(int afterOrderId, ObjIntConsumer<int[]> sink)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void streamLineItems(int afterOrderId, Instant placedSince, LineItemSink sink)
+        {
+            requestedAfter.add(afterOrderId);
+            for (long[] item : lineItems)
+            {
+                if (item[0] > afterOrderId && item[1] >= placedSince.toEpochMilli())
+                {
+                    sink.accept((int) item[0], Instant.ofEpochMilli(item[1]), (int) item[2], (int) item[3]);
+                }
+            }
+        }
+    };
+
+    private final BestsellerTracker tracker = new BestsellerTracker(orderDao, () -> now);
+
+    @Test
+    public void mostAddedToCart_shouldOnlyCountTheWindow()
+    {
+        // arrange: product 1 was popular two hours ago, product 2 in the last hour
+        add(1, 10);
+        now += 120 * MINUTE;
+        add(2, 3);
+        add(3, 1);
+
+        // act
+        var lastHour = tracker.mostAddedToCart(60 * MINUTE, 10);
+        now += 5 * MINUTE;
+        var lastDay = tracker.mostAddedToCart(BestsellerTracker.MAX_WINDOW_MILLIS, 10);
+
+        // assert
+        assertEquals(List.of(2, 3), lastHour);
+        assertEquals(List.of(1, 2, 3), lastDay);
+    }
+
+    @Test
+    public void mostOrdered_shouldCountUnitsAtTheTimeTheyWereOrdered()
+    {
+        // arrange
+        lineItems.add(new long[]{1, now - 3 * BestsellerTracker.MAX_WINDOW_MILLIS, 7, 100});
+        lineItems.add(new long[]{2, now - 90 * MINUTE, 8, 50});
+        lineItems.add(new long[]{3, now - 10 * MINUTE, 9, 2});
+        lineItems.add(new long[]{3, now - 10 * MINUTE, 10, 1});
+
+        // act
+        tracker.refresh();
+
+        // assert
+        assertEquals(List.of(9, 10), tracker.mostOrdered(60 * MINUTE, 10));
+        assertEquals(List.of(8, 9, 10), tracker.mostOrdered(BestsellerTracker.MAX_WINDOW_MILLIS, 10),
+                "Because orders older than a day are never loaded.");
+    }
+
+    @Test
+    public void refresh_shouldOnlyReadOrdersPlacedSinceTheLastRefresh()
+    {
+        // arrange
+        lineItems.add(new long[]{1, now, 7, 1});
+        tracker.refresh();
+        lineItems.add(new long[]{2, now, 7, 1});
+
+        // act
+        tracker.refresh();
+
+        // assert
+        assertEquals(List.of(0, 1), requestedAfter);
+        now += 6 * MINUTE;
+        assertEquals(List.of(7), tracker.mostOrdered(60 * MINUTE, 10));
+    }
+
+    @Test
+    public void heavyHitters_shouldFindTheFrequentProducts_inFarMoreProductsThanTheyCount()
+    {
+        // arrange: ten products take a third of the additions, a hundred thousand others the rest
+        HeavyHitters hitters = new HeavyHitters(MINUTE, 10, 64, 0);
+        Random random = new Random(7);
+        for (int i = 0; i < 300_000; i++)
+        {
+            int productId = i % 3 == 0 ? 1 + random.nextInt(10) : 1_000 + random.nextInt(100_000);
+            hitters.add(productId, 1, now);
+        }
+
+        // act
+        var actual = hitters.top(MINUTE, 10, now);
+
+        // assert
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), actual.stream().sorted().toList(),
+                "Because 64 counters are enough to keep products this much more frequent than the rest.");
+    }
+
+    private void add(int productId, int times)
+    {
+        for (int i = 0; i < times; i++)
+        {
+            tracker.cartItemAdded(productId);
+        }
+    }
+}
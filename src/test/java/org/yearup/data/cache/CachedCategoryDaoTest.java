@@ -0,0 +1,234 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.CategoryDao;
+import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachedCategoryDaoTest
+{
+    private final List<Category> rows = new ArrayList<>(List.of(
+            new Category(1, "Electronics", "Gadgets"),
+            new Category(2, "Fashion", "Clothes")));
+    private final List<String> queries = new ArrayList<>();
+
+    private final CategoryDao database = new CategoryDao()
+    {
+        @Override
+        public List<Category> getAllCategories(Integer categoryId, String name)
+        {
+            queries.add("all " + categoryId + " " + name);
+            return rows.stream()
+                       .filter(category -> categoryId == null || category.getCategoryId() == categoryId)
+                       .filter(category -> name == null || category.getName().equalsIgnoreCase(name))
+                       .collect(Collectors.toList());
+        }
+
+        @Override
+        public Category getById(int id)
+        {
+            queries.add("id " + id);
+            return rows.stream().filter(category -> category.getCategoryId() == id).findFirst().orElse(null);
+        }
+
+        @Override
+        public Category create(Category category)
+        {
+            rows.add(category);
+            return category;
+        }
+
+        @Override
+        public void updateCategory(int categoryId, Category category)
+        {
+            rows.replaceAll(row -> row.getCategoryId() != categoryId ? row : new Category(categoryId, category.getName(),
+                    category.getDescription(), category.getParentCategoryId() != null ? category.getParentCategoryId() : row.getParentCategoryId()));
+        }
+
+        @Override
+        public void moveCategory(int categoryId, Integer parentCategoryId)
+        {
+            if (parentCategoryId != null && parentCategoryId == categoryId)
+            {
+                // what MySqlCategoryDao does when the move is rolled back
+                throw new RuntimeException("rolled back");
+            }
+            rows.replaceAll(row -> row.getCategoryId() != categoryId ? row
+                    : new Category(categoryId, row.getName(), row.getDescription(), parentCategoryId));
+        }
+
+        @Override
+        public boolean deleteCategory(int categoryId)
+        {
+            return rows.removeIf(row -> row.getCategoryId() == categoryId);
+        }
+
+        @Override
+        public List<Category> getChildren(Integer parentCategoryId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Category> getBreadcrumbs(int categoryId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Integer> getSubtreeIds(int categoryId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<CategoryNode> getTree()
+        {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    // what a request arriving right at the bump would be answered with
+    private final List<String> namesAtBump = new ArrayList<>();
+    private final CatalogVersion catalogVersion = new CatalogVersion()
+    {
+        @Override
+        public void bump()
+        {
+            Category category = dao.getById(2);
+            namesAtBump.add(category == null ? null : category.getName());
+            super.bump();
+        }
+    };
+
+    private final CachedCategoryDao dao = new CachedCategoryDao(database, catalogVersion);
+
+    @Test
+    public void getById_shouldReadEachIdOnce_includingMisses()
+    {
+        // act
+        dao.getById(1);
+        dao.getById(1);
+        dao.getById(9);
+        var actual = dao.getById(9);
+
+        // assert
+        assertNull(actual);
+        assertEquals(List.of("id 1", "id 9"), queries, "Because found and missing categories are both remembered.");
+    }
+
+    @Test
+    public void getAllCategories_byName_shouldShareOneEntryAcrossCase()
+    {
+        // act
+        dao.getAllCategories(null, "fashion");
+        var actual = dao.getAllCategories(null, "FASHION");
+
+        // assert
+        assertEquals(List.of(2), ids(actual));
+        assertEquals(List.of("all null fashion"), queries);
+    }
+
+    @Test
+    public void getAllCategories_shouldFillTheIdEntries()
+    {
+        // act
+        dao.getAllCategories(null, null);
+        var actual = dao.getAllCategories(2, "fashion");
+
+        // assert
+        assertEquals(List.of(2), ids(actual));
+        assertEquals(List.of("all null null"), queries);
+    }
+
+    @Test
+    public void writes_shouldDropTheRememberedAnswers()
+    {
+        // arrange
+        dao.getById(3);
+        dao.getAllCategories(null, "fashion");
+
+        // act
+        dao.create(new Category(3, "Garden", "Plants"));
+        dao.updateCategory(2, new Category(2, "Apparel", "Clothes"));
+
+        // assert
+        assertEquals("Garden", dao.getById(3).getName(), "Because a remembered miss must not hide a new category.");
+        assertEquals(List.of(), dao.getAllCategories(null, "fashion"));
+        dao.deleteCategory(3);
+        assertNull(dao.getById(3));
+    }
+
+    @Test
+    public void writes_shouldBumpTheVersionAfterDroppingTheRememberedAnswers()
+    {
+        // arrange
+        dao.getById(2);
+
+        // act
+        dao.updateCategory(2, new Category(2, "Apparel", "Clothes"));
+
+        // assert
+        assertEquals(List.of("Apparel"), namesAtBump,
+                     "Because a request that sees the new version must not be answered from the old entries.");
+    }
+
+    @Test
+    public void deleteCategory_shouldNotBumpTheVersion_whenNothingWasDeleted()
+    {
+        // arrange
+        String before = catalogVersion.current();
+
+        // act
+        boolean actual = dao.deleteCategory(9);
+
+        // assert
+        assertFalse(actual);
+        assertEquals(before, catalogVersion.current(), "Because cached responses are still current.");
+    }
+
+    @Test
+    public void moveCategory_shouldNotBumpTheVersion_whenTheMoveFails()
+    {
+        // arrange
+        String before = catalogVersion.current();
+
+        // act
+        assertThrows(RuntimeException.class, () -> dao.moveCategory(1, 1));
+
+        // assert
+        assertEquals(before, catalogVersion.current(), "Because nothing was written.");
+        assertEquals(List.of(), namesAtBump);
+    }
+
+    @Test
+    public void getSubtreeIds_shouldFollowAMove()
+    {
+        // arrange
+        dao.create(new Category(3, "Audio", "Speakers", 1));
+        dao.getSubtreeIds(1);
+
+        // act
+        dao.moveCategory(3, 2);
+
+        // assert
+        assertEquals(List.of(1), dao.getSubtreeIds(1), "Because the tree is rebuilt after a write.");
+        assertEquals(List.of(2, 3), dao.getSubtreeIds(2));
+        assertEquals(List.of(2, 3), ids(dao.getBreadcrumbs(3)));
+    }
+
+    private static List<Integer> ids(List<Category> categories)
+    {
+        return categories.stream().map(Category::getCategoryId).collect(Collectors.toList());
+    }
+}
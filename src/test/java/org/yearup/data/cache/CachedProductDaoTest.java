@@ -0,0 +1,118 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CachedProductDaoTest
+{
+    // the fake MySQL DAO below never opens a connection
+    private static final DataSource NO_DATABASE = (DataSource) Proxy.newProxyInstance(
+            DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> null);
+
+    @TempDir
+    Path directory;
+
+    private final Map<Integer, Product> rows = new TreeMap<>(Map.of(
+            1, product(1, "Lamp", "9.99"),
+            2, product(2, "Desk", "99.99")));
+    private boolean databaseDown;
+    // what the listener heard of the reload, as type:id
+    private final List<String> changes = new ArrayList<>();
+
+    @Test
+    public void warmUp_afterARestart_shouldReloadTheReopenedStoreFromMySql()
+    {
+        // arrange: a run that saved the store, then writes to MySQL while the application was down
+        cache().warmUp();
+        rows.put(1, product(1, "Lamp", "7.99"));
+        rows.remove(2);
+        CachedProductDao restarted = cache();
+
+        // act
+        restarted.warmUp();
+
+        // assert
+        assertEquals(new BigDecimal("7.99"), restarted.getById(1).getPrice());
+        assertNull(restarted.getById(2));
+        assertEquals(List.of("saved:1", "deleted:2"), changes, "Because the listeners only hear of what changed while it was down.");
+    }
+
+    @Test
+    public void warmUp_afterARestart_shouldKeepTheReopenedStore_whenMySqlIsDown()
+    {
+        // arrange
+        cache().warmUp();
+        databaseDown = true;
+        CachedProductDao restarted = cache();
+
+        // act
+        restarted.warmUp();
+
+        // assert
+        assertEquals(new BigDecimal("9.99"), restarted.getById(1).getPrice());
+        assertEquals(List.of(), changes);
+    }
+
+    private CachedProductDao cache()
+    {
+        MySqlProductDao database = new MySqlProductDao(NO_DATABASE)
+        {
+            @Override
+            public void streamProducts(ProductQuery query, Consumer<Product> sink)
+            {
+                if (databaseDown) throw new RuntimeException("Connection refused");
+                rows.values().forEach(sink);
+            }
+        };
+        ProductChangeListener listener = new ProductChangeListener()
+        {
+            @Override
+            public void catalogLoaded(Collection<Product> products)
+            {
+            }
+
+            @Override
+            public void catalogReloaded(CatalogSnapshot previous, CatalogSnapshot loaded)
+            {
+                loaded.changesSince(previous, 10, (product, before) -> changes.add(
+                        product == null ? "deleted:" + before.getProductId() : "saved:" + product.getProductId()));
+            }
+
+            @Override
+            public void productSaved(Product product)
+            {
+            }
+
+            @Override
+            public void productDeleted(int productId)
+            {
+            }
+        };
+        return new CachedProductDao(database, new CatalogVersion(), new ProductTextIndex(), new ProductSuggestIndex(),
+                                    new ProductTrigramIndex(), new ProductFilterIndex(), new ProductRelatedIndex(),
+                                    new CoPurchaseIndex(null), List.of(listener), directory.resolve("catalog.store").toString());
+    }
+
+    private static Product product(int id, String name, String price)
+    {
+        return new Product(id, name, new BigDecimal(price), 1, "", "Black", 10, false, "");
+    }
+}
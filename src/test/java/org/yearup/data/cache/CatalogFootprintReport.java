@@ -0,0 +1,110 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reports how much memory 100k cached products take: as plain
+ * {@link Product} objects, as a {@link CatalogSnapshot} (heap and mapped
+ * store) and in the {@link ProductFilterIndex}. Heap use is measured as the
+ * growth of the used heap after a full collection, so run it on its own.
+ *
+ * Run with: mvn test -Dtest=CatalogFootprintReport -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CatalogFootprintReport
+{
+    private static final int PRODUCTS = 100_000;
+    private static final String[] COLORS = {"Black", "White", "Gray", "Red", "Blue", "Green", "Silver", "Gold"};
+    private static final String[] WORDS = {
+            "wireless", "compact", "durable", "lightweight", "premium", "classic", "portable", "ergonomic",
+            "stainless", "cotton", "leather", "bluetooth", "rechargeable", "adjustable", "waterproof", "vintage"
+    };
+
+    @Test
+    public void footprintPer100kProducts()
+    {
+        long objects = retained(() -> {
+            List<Product> products = new ArrayList<>(PRODUCTS);
+            for (int id = 1; id <= PRODUCTS; id++)
+            {
+                products.add(product(id));
+            }
+            return products;
+        });
+
+        MappedProductStore[] store = new MappedProductStore[1];
+        long snapshot = retained(() -> {
+            store[0] = MappedProductStore.temporary();
+            for (int id = 1; id <= PRODUCTS; id++)
+            {
+                store[0].append(product(id));
+            }
+            return CatalogSnapshot.of(store[0]);
+        });
+
+        long filterIndex = retained(() -> {
+            ProductFilterIndex index = new ProductFilterIndex();
+            index.catalogLoaded(store[0].products(store[0].liveOffsets()));
+            return index;
+        });
+
+        System.out.printf("per %,d products%n", PRODUCTS);
+        System.out.printf("  Product objects:          %,8d KB heap%n", objects / 1024);
+        System.out.printf("  CatalogSnapshot:          %,8d KB heap, %,d KB mapped%n", snapshot / 1024, store[0].size() / 1024);
+        System.out.printf("  ProductFilterIndex:       %,8d KB heap%n", filterIndex / 1024);
+        assertEquals(PRODUCTS, store[0].liveOffsets().length);
+    }
+
+    private static Product product(int id)
+    {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 30; i++)
+        {
+            description.append(WORDS[(id * 7 + i * 13) % WORDS.length]).append(' ');
+        }
+        return new Product(id, "Product " + id + " " + WORDS[id % WORDS.length],
+                           BigDecimal.valueOf(500 + (id * 37L) % 100_000, 2), 1 + id % 12,
+                           description.toString().trim(), COLORS[id % COLORS.length], id % 40, id % 10 == 0,
+                           "product-" + id + ".jpg");
+    }
+
+    // keeps the measured value reachable across the second collection
+    private static Object retained;
+
+    // heap still in use while the built value is reachable
+    private static long retained(Supplier<Object> build)
+    {
+        long before = usedAfterGc();
+        retained = build.get();
+        long after = usedAfterGc();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedAfterGc()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++)
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
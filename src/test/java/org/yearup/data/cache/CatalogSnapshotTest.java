@@ -0,0 +1,190 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductQuery;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CatalogSnapshotTest
+{
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    public void setup()
+    {
+        snapshot = CatalogSnapshot.of(List.of(
+                product(3, "Headphones", "79.99", 1, "Black"),
+                product(1, "Smartphone", "499.99", 1, "Black"),
+                product(2, "Laptop", "899.99", 1, "Gray"),
+                product(4, "Jeans", "49.99", 2, "Blue")
+        ));
+    }
+
+    @Test
+    public void search_withoutFilters_shouldReturnAllProductsInIdOrder()
+    {
+        // act
+        var actual = ids(snapshot.search(null, null, null, null));
+
+        // assert
+        assertEquals(List.of(1, 2, 3, 4), actual);
+    }
+
+    @Test
+    public void search_shouldCombineCategoryPriceAndColorFilters()
+    {
+        // act
+        var actual = ids(snapshot.search(1, new BigDecimal("50"), new BigDecimal("500"), "black"));
+
+        // assert
+        assertEquals(List.of(1, 3), actual, "Because color matching is case-insensitive like MySQL.");
+    }
+
+    @Test
+    public void search_priceRange_shouldIncludeBothBounds()
+    {
+        // act
+        var actual = ids(snapshot.search(null, new BigDecimal("49.99"), new BigDecimal("79.99"), null));
+
+        // assert
+        assertEquals(List.of(3, 4), actual);
+    }
+
+    @Test
+    public void with_shouldReplaceAnExistingProductAndReindexIt()
+    {
+        // act
+        var updated = snapshot.with(product(4, "Jeans", "49.99", 1, "Blue"));
+
+        // assert
+        assertEquals(List.of(1, 2, 3, 4), ids(updated.listByCategoryId(1)));
+        assertEquals(List.of(), ids(updated.listByCategoryId(2)));
+        assertEquals(List.of(4), ids(snapshot.listByCategoryId(2)), "Because the original snapshot must not change.");
+    }
+
+    @Test
+    public void without_shouldRemoveTheProduct()
+    {
+        // act
+        var updated = snapshot.without(2);
+
+        // assert
+        assertNull(updated.getById(2));
+        assertEquals(List.of(), ids(updated.search(null, null, null, "Gray")));
+    }
+
+    @Test
+    public void with_andWithout_shouldKeepTheSortOrdersOfAFullRebuild()
+    {
+        // act
+        var updated = snapshot.with(product(5, "Belt", "49.99", 2, "Brown"))
+                              .with(product(3, "Headphones", "999.00", 1, "Black"))
+                              .without(1);
+
+        // assert
+        var byPrice = ProductQuery.of(null, null, null, null, null, "price", null, null);
+        var byName = ProductQuery.of(null, null, null, null, null, "name", null, null);
+        assertEquals(List.of(4, 5, 2, 3), ids(updated.page(byPrice).getProducts()), "Because equal prices keep id order.");
+        assertEquals(List.of(5, 3, 4, 2), ids(updated.page(byName).getProducts()));
+        assertEquals(List.of(5), ids(updated.search(null, null, null, "brown")), "Because a new color is added to the dictionary.");
+    }
+
+    @Test
+    public void page_byPrice_shouldWalkAllPagesWithTheCursor()
+    {
+        // arrange
+        var firstQuery = ProductQuery.of(null, null, null, null, null, "price", 3, null);
+
+        // act
+        var first = snapshot.page(firstQuery);
+        var second = snapshot.page(ProductQuery.of(null, null, null, null, null, "price", 3, first.getNext()));
+
+        // assert
+        assertEquals(List.of(4, 3, 1), ids(first.getProducts()));
+        assertEquals(List.of(2), ids(second.getProducts()));
+        assertNull(second.getNext(), "Because there are no products after the last page.");
+    }
+
+    @Test
+    public void page_byName_withFilter_shouldStartAfterTheCursor()
+    {
+        // arrange
+        var first = snapshot.page(ProductQuery.of(1, null, null, null, null, "name", 1, null));
+
+        // act
+        var second = snapshot.page(ProductQuery.of(1, null, null, null, null, "name", 1, first.getNext()));
+
+        // assert
+        assertEquals(List.of(3), ids(first.getProducts()));
+        assertEquals(List.of(2), ids(second.getProducts()));
+    }
+
+    @Test
+    public void page_withoutALimit_shouldStillBePaged()
+    {
+        // arrange
+        var catalog = CatalogSnapshot.of(IntStream.rangeClosed(1, ProductQuery.DEFAULT_LIMIT + 10)
+                                                  .mapToObj(id -> product(id, "Product " + id, "10.00", 1, "Black"))
+                                                  .collect(Collectors.toList()));
+
+        // act
+        var actual = catalog.page(ProductQuery.of(null, null, null, null, null, null, null, null));
+
+        // assert
+        assertEquals(ProductQuery.DEFAULT_LIMIT, actual.getProducts().size(), "Because a listing never returns the whole catalog.");
+        assertNotNull(actual.getNext());
+    }
+
+    @Test
+    public void facets_shouldCountEachFacetWithoutItsOwnFilter()
+    {
+        // arrange
+        var query = ProductQuery.filter(1, null, null, "black", null);
+
+        // act
+        var facets = snapshot.facets(query, null, FilterSelection.NONE);
+
+        // assert
+        assertEquals(2, facets.getTotal());
+        assertEquals(Map.of(1, 2), facets.getCategories(), "Because the category facet still applies the color filter.");
+        assertEquals(Map.of("Black", 2, "Gray", 1), facets.getColors(), "Because the color facet ignores the color filter.");
+        assertEquals(1, facets.getPrices().get(2).getCount(), "Because only the 79.99 headphones fall in the 50-100 bucket.");
+    }
+
+    @Test
+    public void page_withSelection_shouldKeepOnlySelectedProductsThatPassTheFilters()
+    {
+        // arrange: ids 0 and 201 are not in the catalog, and 4 is not in category 1
+        var catalog = CatalogSnapshot.of(IntStream.rangeClosed(1, 200)
+                                                  .mapToObj(id -> product(id, "Product " + id, "10.00", id == 4 ? 2 : 1, "Black"))
+                                                  .collect(Collectors.toList()));
+        var selection = new FilterSelection(null, null, null, new int[]{0, 2, 4, 150, 199, 201});
+        var query = ProductQuery.filter(1, null, null, null, null);
+
+        // act
+        var actual = ids(catalog.page(query, null, selection).getProducts());
+
+        // assert
+        assertEquals(List.of(2, 150, 199), actual);
+    }
+
+    private static List<Integer> ids(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).collect(Collectors.toList());
+    }
+
+    private static Product product(int id, String name, String price, int categoryId, String color)
+    {
+        return new Product(id, name, new BigDecimal(price), categoryId, "", color, 10, false, "");
+    }
+}
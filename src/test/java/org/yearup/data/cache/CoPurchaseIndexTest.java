@@ -0,0 +1,117 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.OrderDao;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoPurchaseIndexTest
+{
+    // order id i + 1 holds orders.get(i)
+    private final List<int[]> orders = new ArrayList<>();
+    private final List<Integer> requestedAfter = new ArrayList<>();
+    private final OrderDao orderDao = new OrderDao()
+    {
+        @Override
+        public void streamBaskets(int afterOrderId, ObjIntConsumer<int[]> sink)
+        {
+            CoPurchaseIndexTest.this.streamBaskets(afterOrderId, sink);
+        }
+
+        @Override
+        public void streamLineItems(int afterOrderId, Instant placedSince, LineItemSink sink)
+        {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    public void companions_shouldRankByHowOftenProductsWereBoughtTogether()
+    {
+        // arrange
+        orders.add(new int[]{1, 2});
+        orders.add(new int[]{1, 2, 3});
+        orders.add(new int[]{1, 3, 4});
+        orders.add(new int[]{1, 2});
+        CoPurchaseIndex index = new CoPurchaseIndex(orderDao);
+
+        // act
+        index.refresh();
+
+        // assert
+        assertEquals(List.of(2, 3, 4), index.companions(1, 10));
+        assertEquals(List.of(1, 3), index.companions(2, 10), "Because products never bought with 2 are left out.");
+    }
+
+    @Test
+    public void companions_forACart_shouldAddUpCounts_andLeaveOutTheCart()
+    {
+        // arrange
+        orders.add(new int[]{1, 5});
+        orders.add(new int[]{2, 5});
+        orders.add(new int[]{1, 6});
+        orders.add(new int[]{1, 6});
+        orders.add(new int[]{1, 2});
+        CoPurchaseIndex index = new CoPurchaseIndex(orderDao);
+        index.refresh();
+
+        // act
+        var actual = index.companions(List.of(1, 2), 10);
+
+        // assert
+        assertEquals(List.of(5, 6), actual, "Because 5 was bought with both cart items, and 6 twice with one.");
+    }
+
+    @Test
+    public void refresh_shouldOnlyReadOrdersPlacedSinceTheLastRefresh()
+    {
+        // arrange
+        orders.add(new int[]{1, 2});
+        CoPurchaseIndex index = new CoPurchaseIndex(orderDao);
+        index.refresh();
+
+        // act
+        orders.add(new int[]{1, 3});
+        orders.add(new int[]{1, 3});
+        index.refresh();
+
+        // assert
+        assertEquals(List.of(0, 1), requestedAfter);
+        assertEquals(List.of(3, 2), index.companions(1, 10));
+    }
+
+    @Test
+    public void companions_shouldKeepFrequentPairs_whenCountersOverflow()
+    {
+        // arrange: product 1 is bought with 2 every time, and once each with far more products than it keeps counters for
+        for (int other = 100; other < 100 + CoPurchaseIndex.COMPANIONS * 10; other++)
+        {
+            orders.add(new int[]{1, 2});
+            orders.add(new int[]{1, other});
+        }
+        CoPurchaseIndex index = new CoPurchaseIndex(orderDao);
+
+        // act
+        index.refresh();
+
+        // assert
+        var actual = index.companions(1, 100);
+        assertEquals(2, actual.get(0));
+        assertTrue(actual.size() <= CoPurchaseIndex.COMPANIONS, "Because each product keeps a bounded number of counters.");
+    }
+
+    private void streamBaskets(int afterOrderId, ObjIntConsumer<int[]> sink)
+    {
+        requestedAfter.add(afterOrderId);
+        for (int orderId = afterOrderId + 1; orderId <= orders.size(); orderId++)
+        {
+            sink.accept(orders.get(orderId - 1), orderId);
+        }
+    }
+}
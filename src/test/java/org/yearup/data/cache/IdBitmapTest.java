@@ -0,0 +1,71 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdBitmapTest
+{
+    @Test
+    public void operations_shouldMatchAPlainBitSet_forSparseAndDenseChunks()
+    {
+        // arrange: one dense chunk, one sparse chunk and a few far away ids
+        Random random = new Random(42);
+        IdBitmap a = new IdBitmap();
+        IdBitmap b = new IdBitmap();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        for (int i = 0; i < 20_000; i++)
+        {
+            int dense = random.nextInt(65_536);
+            int sparse = 65_536 + random.nextInt(200_000);
+            a.add(dense);
+            expectedA.set(dense);
+            b.add(i % 3 == 0 ? dense : sparse);
+            expectedB.set(i % 3 == 0 ? dense : sparse);
+        }
+        for (int i = 0; i < 5_000; i++)
+        {
+            int id = random.nextInt(65_536);
+            a.remove(id);
+            expectedA.clear(id);
+        }
+
+        // act / assert
+        assertArrayEquals(expectedA.stream().toArray(), a.toArray());
+        assertEquals(expectedB.cardinality(), b.cardinality());
+
+        BitSet and = (BitSet) expectedA.clone();
+        and.and(expectedB);
+        assertArrayEquals(and.stream().toArray(), IdBitmap.and(a, b).toArray());
+
+        BitSet or = (BitSet) expectedA.clone();
+        or.or(expectedB);
+        assertArrayEquals(or.stream().toArray(), IdBitmap.or(a, b).toArray());
+
+        BitSet andNot = (BitSet) expectedA.clone();
+        andNot.andNot(expectedB);
+        assertArrayEquals(andNot.stream().toArray(), IdBitmap.andNot(a, b).toArray());
+    }
+
+    @Test
+    public void removingEveryId_shouldLeaveAnEmptyBitmap()
+    {
+        // arrange
+        IdBitmap bitmap = IdBitmap.of(1, 70_000, 5);
+
+        // act
+        bitmap.remove(1);
+        bitmap.remove(5);
+        bitmap.remove(70_000);
+
+        // assert
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.toArray().length);
+    }
+}
@@ -0,0 +1,155 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yearup.models.Product;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedProductStoreTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    public void read_shouldDecodeEveryField()
+    {
+        // arrange
+        MappedProductStore store = MappedProductStore.temporary();
+        Product lamp = new Product(7, "Lampe de bureau", new BigDecimal("19.90"), 3, "Laiton brossé, 40 cm", "Gold", 4, true, "lamp.jpg");
+
+        // act
+        Product actual = store.read(store.append(lamp));
+
+        // assert
+        assertEquals(7, actual.getProductId());
+        assertEquals("Lampe de bureau", actual.getName());
+        assertEquals(new BigDecimal("19.90"), actual.getPrice(), "Because the scale should survive the round trip.");
+        assertEquals(3, actual.getCategoryId());
+        assertEquals("Laiton brossé, 40 cm", actual.getDescription());
+        assertEquals("Gold", actual.getColor());
+        assertEquals(4, actual.getStock());
+        assertTrue(actual.isFeatured());
+        assertEquals("lamp.jpg", actual.getImageUrl());
+    }
+
+    @Test
+    public void read_shouldKeepNulls()
+    {
+        // arrange
+        MappedProductStore store = MappedProductStore.temporary();
+        Product bare = new Product(1, "Mug", null, 2, null, null, 0, false, null);
+
+        // act
+        Product actual = store.read(store.append(bare));
+
+        // assert
+        assertNull(actual.getPrice());
+        assertNull(actual.getDescription());
+        assertNull(actual.getImageUrl());
+    }
+
+    @Test
+    public void reopen_shouldServeTheLatestRecordOfEachProduct() throws IOException
+    {
+        // arrange
+        Path file = directory.resolve("products.store");
+        MappedProductStore store = MappedProductStore.create(file);
+        store.append(product(2, "Laptop", "899.99"));
+        store.append(product(1, "Phone", "499.99"));
+        store.append(product(3, "Jeans", "49.99"));
+        store.publish();
+        store.append(product(1, "Phone", "449.99"));
+        store.appendDeleted(3);
+        store.close();
+
+        // act
+        MappedProductStore reopened = MappedProductStore.open(file);
+        List<Product> actual = new ArrayList<>(reopened.products(reopened.liveOffsets()));
+
+        // assert
+        assertEquals(2, actual.size(), "Because the deleted product should stay deleted.");
+        assertEquals(1, actual.get(0).getProductId(), "Because live records come back in product id order.");
+        assertEquals(new BigDecimal("449.99"), actual.get(0).getPrice());
+        assertEquals(2, actual.get(1).getProductId());
+    }
+
+    @Test
+    public void records_shouldNotCrossSegments() throws IOException
+    {
+        // arrange: enough 1 KB descriptions to fill more than one 64 MB segment
+        Path file = directory.resolve("products.store");
+        MappedProductStore store = MappedProductStore.create(file);
+        String description = "x".repeat(1000);
+        int count = 70_000;
+        for (int id = 1; id <= count; id++)
+        {
+            store.append(new Product(id, "Product " + id, new BigDecimal("1.00"), 1, description, "Red", 1, false, "p.jpg"));
+        }
+        store.publish();
+        store.close();
+
+        // act
+        MappedProductStore reopened = MappedProductStore.open(file);
+        long[] offsets = reopened.liveOffsets();
+
+        // assert
+        assertEquals(count, offsets.length);
+        for (int i = 0; i < offsets.length; i += 997)
+        {
+            Product product = reopened.read(offsets[i]);
+            assertEquals(i + 1, product.getProductId());
+            assertEquals(description, product.getDescription());
+        }
+        assertEquals("Product " + count, reopened.read(offsets[count - 1]).getName());
+    }
+
+    @Test
+    public void compact_shouldDropReplacedRecords() throws IOException
+    {
+        // arrange
+        Path file = directory.resolve("products.store");
+        MappedProductStore store = MappedProductStore.create(file);
+        store.publish();
+        for (int version = 0; version < 10; version++)
+        {
+            store.append(product(1, "Phone", version + ".00"));
+        }
+        long before = store.size();
+
+        // act
+        MappedProductStore compacted = store.compact();
+
+        // assert
+        assertTrue(compacted.size() < before / 5);
+        long[] offsets = compacted.liveOffsets();
+        assertEquals(1, offsets.length);
+        assertEquals(new BigDecimal("9.00"), compacted.read(offsets[0]).getPrice());
+        assertEquals(1, MappedProductStore.open(file).liveOffsets().length, "Because the compacted file replaces the old one.");
+    }
+
+    @Test
+    public void open_shouldRejectOtherFiles() throws IOException
+    {
+        // arrange
+        Path file = Files.writeString(directory.resolve("products.store"), "not a product store, just some text");
+
+        // act / assert
+        assertThrows(IOException.class, () -> MappedProductStore.open(file));
+    }
+
+    private static Product product(int id, String name, String price)
+    {
+        return new Product(id, name, new BigDecimal(price), 1, "", "Black", 10, false, "");
+    }
+}
@@ -0,0 +1,264 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+import org.yearup.models.ProductChange;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductChangeFeedTest
+{
+    private ProductChangeFeed feed;
+
+    @BeforeEach
+    public void setup()
+    {
+        feed = new ProductChangeFeed(Executors.newSingleThreadExecutor());
+        feed.catalogLoaded(List.of(product(1, 3), product(2, 3), product(3, 4)));
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        feed.close();
+    }
+
+    @Test
+    public void subscribe_withoutAFilter_shouldReceiveEveryChange()
+    {
+        // arrange
+        List<ProductChangeFeed.Event> received = subscribe(null, null, null);
+
+        // act
+        feed.productSaved(product(1, 3));
+        feed.productDeleted(3);
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(List.of("saved:1", "deleted:3"), describe(received));
+    }
+
+    @Test
+    public void subscribe_withCategoriesAndIds_shouldReceiveTheChangesMatchingEither()
+    {
+        // arrange
+        List<ProductChangeFeed.Event> received = subscribe(List.of(4), List.of(1), null);
+
+        // act
+        feed.productSaved(product(1, 3));
+        feed.productSaved(product(2, 3));
+        feed.productSaved(product(3, 4));
+        feed.productSaved(product(4, 4));
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(List.of("saved:1", "saved:3", "saved:4"), describe(received));
+    }
+
+    @Test
+    public void subscribe_toACategory_shouldHearOfProductsLeavingOrDeletedFromIt()
+    {
+        // arrange
+        List<ProductChangeFeed.Event> received = subscribe(List.of(3), null, null);
+
+        // act
+        feed.productSaved(product(1, 4), product(1, 3));
+        feed.productDeleted(2, product(2, 3));
+        feed.productDeleted(3, product(3, 4));
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(List.of("saved:1", "deleted:2"), describe(received),
+                "Because the category subscribers still show the product that moved or was deleted.");
+    }
+
+    @Test
+    public void subscribe_withALastEventId_shouldReplayTheMissedChanges()
+    {
+        // arrange
+        List<ProductChangeFeed.Event> first = subscribe(null, null, null);
+        feed.productSaved(product(1, 3));
+        feed.awaitDispatch();
+        long lastSeen = first.get(0).id;
+        feed.productSaved(product(2, 3));
+        feed.productDeleted(3);
+
+        // act
+        List<ProductChangeFeed.Event> received = subscribe(null, null, lastSeen);
+        feed.productSaved(product(1, 3));
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(List.of("saved:2", "deleted:3", "saved:1"), describe(received));
+    }
+
+    @Test
+    public void subscribe_withALastEventIdNoLongerKept_shouldBeSentAReset()
+    {
+        // arrange
+        for (int i = 0; i < ProductChangeFeed.REPLAY_SIZE + 10; i++)
+        {
+            feed.productSaved(product(1, 3));
+        }
+
+        // act
+        List<ProductChangeFeed.Event> received = subscribe(null, null, 1L);
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(List.of("reset:0"), describe(received));
+    }
+
+    @Test
+    public void catalogReloaded_shouldSendEachChangedProduct()
+    {
+        // arrange: a bulk repricing of product 2, a bulk delete of product 3 and an import of product 5
+        List<ProductChangeFeed.Event> received = subscribe(List.of(3), null, null);
+        CatalogSnapshot previous = CatalogSnapshot.of(List.of(product(1, 3), product(2, 3), product(3, 3)));
+        Product repriced = new Product(2, "Product 2", new BigDecimal("7.99"), 3, "", "Black", 10, false, "");
+        CatalogSnapshot loaded = CatalogSnapshot.of(List.of(product(1, 3), repriced, product(5, 3)));
+
+        // act
+        feed.catalogReloaded(previous, loaded);
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(List.of("saved:2", "deleted:3", "saved:5"), describe(received),
+                "Because subscribers should not have to fetch the whole catalog again, nor hear of product 1, which did not change.");
+        assertEquals(new BigDecimal("7.99"), received.get(0).change.getProduct().getPrice());
+    }
+
+    @Test
+    public void catalogReloaded_withMoreChangesThanAQueueHasRoomFor_shouldSendOneReset()
+    {
+        // arrange
+        List<ProductChangeFeed.Event> received = subscribe(null, null, null);
+        CatalogSnapshot previous = CatalogSnapshot.of(List.of(product(1, 3)));
+        List<Product> imported = new ArrayList<>();
+        for (int id = 1; id <= ProductChangeFeed.RELOAD_EVENTS + 2; id++)
+        {
+            imported.add(product(id, 3));
+        }
+
+        // act
+        feed.catalogReloaded(previous, CatalogSnapshot.of(imported));
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(List.of("reset:0"), describe(received), "Because one event per product could overflow the queues.");
+    }
+
+    @Test
+    public void publish_shouldDropSubscribersThatHaveGoneAway()
+    {
+        // arrange
+        List<ProductChangeFeed.Event> attempts = new ArrayList<>();
+        feed.subscribe(new ProductChangeFeed.Subscriber(null, null, event -> {
+            attempts.add(event);
+            throw new IOException("Broken pipe");
+        }), null);
+
+        // act
+        feed.productSaved(product(1, 3));
+        feed.productSaved(product(2, 3));
+        feed.heartbeat();
+        feed.awaitDispatch();
+
+        // assert
+        assertEquals(1, attempts.size(), "Because the first failed send unsubscribes the client.");
+    }
+
+    @Test
+    public void publish_shouldNotWaitForAClientThatStoppedReading_andDropItOnceItIsTooFarBehind() throws InterruptedException
+    {
+        // arrange: the stuck client's first send does not return until it is released
+        ProductChangeFeed pooled = new ProductChangeFeed(Executors.newFixedThreadPool(2));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stuckClosed = new CountDownLatch(1);
+        List<ProductChangeFeed.Event> stuck = new CopyOnWriteArrayList<>();
+        pooled.subscribe(new ProductChangeFeed.Subscriber(null, null, new ProductChangeFeed.EventSink()
+        {
+            @Override
+            public void send(ProductChangeFeed.Event event)
+            {
+                awaitQuietly(release);
+                stuck.add(event);
+            }
+
+            @Override
+            public void close()
+            {
+                stuckClosed.countDown();
+            }
+        }), null);
+        int events = ProductChangeFeed.QUEUE_SIZE + 2;
+        CountDownLatch delivered = new CountDownLatch(events);
+        pooled.subscribe(new ProductChangeFeed.Subscriber(null, null, event -> delivered.countDown()), null);
+
+        // act
+        for (int i = 0; i < events; i++)
+        {
+            pooled.productSaved(product(1, 3));
+        }
+
+        // assert
+        try
+        {
+            assertTrue(delivered.await(5, TimeUnit.SECONDS), "Because the other clients are served while one is stuck.");
+            release.countDown();
+            assertTrue(stuckClosed.await(5, TimeUnit.SECONDS), "Because a client that fell a full queue behind is dropped.");
+            assertEquals(1, stuck.size(), "Because the queued events of a dropped client are discarded.");
+        }
+        finally
+        {
+            release.countDown();
+            pooled.close();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<ProductChangeFeed.Event> subscribe(List<Integer> categoryIds, List<Integer> productIds, Long lastEventId)
+    {
+        List<ProductChangeFeed.Event> received = new ArrayList<>();
+        feed.subscribe(new ProductChangeFeed.Subscriber(categoryIds, productIds, event -> {
+            if (event != null) received.add(event);
+        }), lastEventId);
+        return received;
+    }
+
+    private static List<String> describe(List<ProductChangeFeed.Event> events)
+    {
+        return events.stream()
+                     .map(event -> event.change.getType() + ":" + event.change.getProductId())
+                     .collect(Collectors.toList());
+    }
+
+    private static Product product(int id, int categoryId)
+    {
+        return new Product(id, "Product " + id, new BigDecimal("9.99"), categoryId, "", "Black", 10, false, "");
+    }
+}
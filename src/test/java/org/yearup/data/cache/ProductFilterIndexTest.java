@@ -0,0 +1,81 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductQuery;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ProductFilterIndexTest
+{
+    private ProductFilterIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductFilterIndex();
+        index.catalogLoaded(List.of(
+                product(1, 1, "Black", 5, true),
+                product(2, 1, "Gray", 0, false),
+                product(3, 2, "black", 3, false),
+                product(4, 2, "Red", 1, true),
+                product(5, 3, "Gray", 2, false)
+        ));
+    }
+
+    @Test
+    public void select_shouldUnionWithinAFilter_andIntersectAcrossFilters()
+    {
+        // arrange
+        ProductQuery query = new ProductQuery();
+        query.setCategoryIds(List.of(1, 2));
+        query.setColors(List.of("BLACK", "gray"));
+        query.setInStock(true);
+
+        // act
+        var selection = index.select(query);
+
+        // assert
+        assertArrayEquals(new int[]{1, 3}, selection.all());
+        assertArrayEquals(new int[]{1, 2, 3, 4}, selection.categories());
+        assertArrayEquals(new int[]{1, 3, 4, 5}, selection.flags());
+    }
+
+    @Test
+    public void select_notFeatured_shouldUseTheComplement()
+    {
+        // arrange
+        ProductQuery query = new ProductQuery();
+        query.setFeatured(false);
+
+        // act
+        var selection = index.select(query);
+
+        // assert
+        assertArrayEquals(new int[]{2, 3, 5}, selection.all());
+    }
+
+    @Test
+    public void productSaved_and_productDeleted_shouldFlipOnlyThatProduct()
+    {
+        // arrange
+        ProductQuery query = new ProductQuery();
+        query.setColors(List.of("Gray"));
+
+        // act
+        index.productSaved(product(1, 1, "Gray", 5, true));
+        index.productDeleted(5);
+
+        // assert
+        assertArrayEquals(new int[]{1, 2}, index.select(query).all());
+    }
+
+    private static Product product(int id, int categoryId, String color, int stock, boolean featured)
+    {
+        return new Product(id, "Product " + id, new BigDecimal("10.00"), categoryId, "", color, stock, featured, "");
+    }
+}
@@ -0,0 +1,130 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductRelatedIndexTest
+{
+    private ProductRelatedIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductRelatedIndex();
+        index.catalogLoaded(List.of(
+                product(1, "Trail Running Shoes", "49.99", 3, "Black", "lightweight trail running shoe with grippy sole"),
+                product(2, "Road Running Shoes", "54.99", 3, "Black", "cushioned road running shoe"),
+                product(3, "Leather Boots", "189.99", 3, "Brown", "waterproof leather boots"),
+                product(4, "Running Socks", "9.99", 4, "Black", "breathable socks for running"),
+                product(5, "Desk Lamp", "29.99", 1, "Gold", "brass desk lamp")
+        ));
+    }
+
+    @Test
+    public void related_shouldRankTheMostSimilarProductsFirst()
+    {
+        // act
+        var actual = ids(index.related(1, 3));
+
+        // assert
+        assertEquals(List.of(2, 3, 4), actual,
+                "Because the same category, color, price band and terms beat a shared term alone.");
+    }
+
+    @Test
+    public void related_shouldLeaveOutProductsWithNothingInCommon()
+    {
+        // act
+        var actual = ids(index.related(5, 10));
+
+        // assert
+        assertEquals(List.of(), actual);
+    }
+
+    @Test
+    public void productSaved_shouldAddTheProductToTheListsOfSimilarProducts()
+    {
+        // act
+        index.productSaved(product(6, "Trail Running Shoes II", "49.99", 3, "Black", "lightweight trail running shoe"));
+
+        // assert
+        assertEquals(6, index.related(1, 1)[0], "Because the new product is the closest match.");
+        assertEquals(1, index.related(6, 1)[0]);
+    }
+
+    @Test
+    public void productSaved_shouldMoveAnUpdatedProduct()
+    {
+        // act: the boots become a lamp
+        index.productSaved(product(3, "Floor Lamp", "89.99", 1, "Gold", "brass floor lamp"));
+
+        // assert
+        assertFalse(ids(index.related(1, 10)).contains(3));
+        assertEquals(List.of(3), ids(index.related(5, 10)));
+    }
+
+    @Test
+    public void productDeleted_shouldDropTheProductFromEveryList()
+    {
+        // act
+        index.productDeleted(2);
+
+        // assert
+        assertFalse(ids(index.related(1, 10)).contains(2));
+        assertEquals(0, index.related(2, 10).length, "Because a deleted product has no entry of its own.");
+    }
+
+    @Test
+    public void incrementalChanges_shouldStayCloseToAFullRebuild()
+    {
+        // arrange
+        List<Product> catalog = new ArrayList<>();
+        String[] colors = {"Black", "White", "Red"};
+        String[] words = {"cotton", "wool", "linen", "denim", "silk", "canvas", "suede", "nylon"};
+        for (int id = 1; id <= 200; id++)
+        {
+            catalog.add(product(id, "Item " + id, (5 + id % 37) + ".00", 1 + id % 4, colors[id % 3],
+                                words[id % 8] + " " + words[(id / 8) % 8] + " item"));
+        }
+        index.catalogLoaded(catalog.subList(0, 150));
+
+        // act
+        catalog.subList(150, 200).forEach(index::productSaved);
+        ProductRelatedIndex rebuilt = new ProductRelatedIndex();
+        rebuilt.catalogLoaded(catalog);
+
+        // assert
+        int shared = 0;
+        for (int id = 1; id <= 200; id++)
+        {
+            List<Integer> expected = ids(rebuilt.related(id, 5));
+            for (int relatedId : index.related(id, 5))
+            {
+                if (expected.contains(relatedId)) shared++;
+            }
+        }
+        assertTrue(shared >= 950, "Because only the term weights drift between full builds, but " + shared
+                + " of the 1000 top five entries were the same.");
+    }
+
+    private static List<Integer> ids(int[] ids)
+    {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    private static Product product(int id, String name, String price, int categoryId, String color, String description)
+    {
+        return new Product(id, name, new BigDecimal(price), categoryId, description, color, 10, false, "");
+    }
+}
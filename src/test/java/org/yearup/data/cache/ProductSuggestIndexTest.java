@@ -0,0 +1,99 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+import org.yearup.models.ProductSuggestion;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductSuggestIndexTest
+{
+    private ProductSuggestIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductSuggestIndex();
+        index.catalogLoaded(List.of(
+                product(1, "Lamp Shade", false, 5),
+                product(2, "Brass Desk Lamp", true, 5),
+                product(3, "Lamp", false, 0),
+                product(4, "Laptop", false, 5),
+                product(5, "Lamp Lamp Oil", false, 5)
+        ));
+    }
+
+    @Test
+    public void suggest_shouldMatchWordStarts_mostPopularFirst()
+    {
+        // act
+        var actual = ids(index.suggest("lamp", 10));
+
+        // assert
+        assertEquals(List.of(2, 1, 5, 3), actual,
+                "Because featured beats in stock, and in stock beats out of stock; each product is listed once.");
+    }
+
+    @Test
+    public void suggest_shouldMatchAcrossWords_andIgnoreCase()
+    {
+        // act
+        var actual = ids(index.suggest("  DESK   la", 10));
+
+        // assert
+        assertEquals(List.of(2), actual);
+    }
+
+    @Test
+    public void suggest_shouldStopAtTheLimit()
+    {
+        // act
+        var actual = ids(index.suggest("la", 2));
+
+        // assert
+        assertEquals(List.of(2, 4), actual, "Because of equal popularity, the shorter name at the start wins.");
+    }
+
+    @Test
+    public void productSaved_and_productDeleted_shouldUpdateSuggestions()
+    {
+        // act
+        index.productSaved(product(4, "Lamp Post", true, 1));
+        index.productDeleted(2);
+
+        // assert
+        assertEquals(List.of(4, 1, 5, 3), ids(index.suggest("lamp", 10)));
+        assertEquals(List.of(), ids(index.suggest("laptop", 10)));
+    }
+
+    @Test
+    public void viewsScored_shouldRankTheMostViewedFirst_andKeepTheRankForSavedProducts()
+    {
+        // arrange
+        index.viewsScored(Map.of(3, 50.0, 5, 4.0));
+
+        // act
+        index.productSaved(product(5, "Lamp Lamp Oil", false, 0));
+        var actual = ids(index.suggest("lamp", 10));
+
+        // assert
+        assertEquals(List.of(3, 5, 2, 1), actual,
+                "Because recent views outrank featured and in stock, even for a product saved after the views were scored.");
+    }
+
+    private static List<Integer> ids(List<ProductSuggestion> suggestions)
+    {
+        return suggestions.stream().map(ProductSuggestion::getProductId).collect(Collectors.toList());
+    }
+
+    private static Product product(int id, String name, boolean featured, int stock)
+    {
+        return new Product(id, name, new BigDecimal("10.00"), 1, "", "Black", stock, featured, "");
+    }
+}
@@ -0,0 +1,75 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductTextIndexTest
+{
+    private ProductTextIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductTextIndex();
+        index.catalogLoaded(List.of(
+                product(1, "Wireless Headphones", "Noise cancelling headphones with long battery life."),
+                product(2, "Headphone Stand", "A stand for your wireless headphones."),
+                product(3, "Laptop", "A fast laptop with a long battery life.")
+        ));
+    }
+
+    @Test
+    public void search_shouldRankNameMatchesFirst()
+    {
+        // act
+        var actual = ids(index.search("wireless headphones"));
+
+        // assert
+        assertEquals(List.of(1, 2), actual, "Because product 1 has both terms in its name.");
+    }
+
+    @Test
+    public void search_shouldRequireEveryTerm()
+    {
+        // act
+        var actual = ids(index.search("battery laptop"));
+
+        // assert
+        assertEquals(List.of(3), actual);
+    }
+
+    @Test
+    public void productSaved_and_productDeleted_shouldUpdateTheIndex()
+    {
+        // act
+        index.productSaved(product(3, "Gaming Laptop", "Comes with wireless headphones."));
+        index.productDeleted(1);
+
+        // assert
+        assertEquals(List.of(3), ids(index.search("gaming")));
+        assertEquals(List.of(), ids(index.search("battery")));
+        assertEquals(List.of(2, 3), ids(index.search("wireless")));
+    }
+
+    private static List<Integer> ids(TextMatches matches)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < matches.size(); i++)
+        {
+            ids.add(matches.productId(i));
+        }
+        return ids;
+    }
+
+    private static Product product(int id, String name, String description)
+    {
+        return new Product(id, name, new BigDecimal("10.00"), 1, description, "Black", 10, false, "");
+    }
+}
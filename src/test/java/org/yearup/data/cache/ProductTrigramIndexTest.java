@@ -0,0 +1,80 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductTrigramIndexTest
+{
+    private ProductTrigramIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductTrigramIndex();
+        index.catalogLoaded(List.of(
+                product(1, "Wireless Headphones"),
+                product(2, "Headphone Stand"),
+                product(3, "Gaming Laptop"),
+                product(4, "Laptop Sleeve")
+        ));
+    }
+
+    @Test
+    public void correct_shouldReplaceMisspelledWords_withTheClosestNameWord()
+    {
+        // act
+        var actual = index.correct("wireles hedphones", term -> false);
+
+        // assert
+        assertEquals("wireless headphones", actual);
+    }
+
+    @Test
+    public void correct_shouldPreferTheWordMoreProductsShare()
+    {
+        // act
+        var actual = index.correct("labtop", term -> false);
+
+        // assert
+        assertEquals("laptop", actual);
+    }
+
+    @Test
+    public void correct_shouldKeepKnownAndShortWords()
+    {
+        // act
+        var actual = index.correct("batery usb xyzzyplugh", term -> term.equals("batery"));
+
+        // assert
+        assertEquals("batery usb xyzzyplugh", actual, "Because known, short and hopeless words are left alone.");
+    }
+
+    @Test
+    public void productDeleted_shouldStopSuggestingItsWords()
+    {
+        // act
+        index.productDeleted(3);
+
+        // assert
+        assertEquals("gamng", index.correct("gamng", term -> false));
+    }
+
+    @Test
+    public void distance_shouldGiveUpPastTheBound()
+    {
+        assertEquals(1, ProductTrigramIndex.distance("hedphones", "headphones", 2));
+        assertEquals(2, ProductTrigramIndex.distance("lpatop", "laptop", 2));
+        assertEquals(3, ProductTrigramIndex.distance("kitten", "sitting", 2));
+    }
+
+    private static Product product(int id, String name)
+    {
+        return new Product(id, name, new BigDecimal("10.00"), 1, "", "Black", 1, false, "");
+    }
+}
@@ -0,0 +1,190 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductViewDao;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductViewCounterTest
+{
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private long now = 1_000 * HOUR;
+    private final List<Map<Integer, Long>> batches = new ArrayList<>();
+    private final Map<Integer, Long> stored = new HashMap<>();
+    private boolean failing;
+
+    private final ProductViewDao viewDao = new ProductViewDao()
+    {
+        @Override
+        public void addViews(Instant hour, Map<Integer, Long> views)
+        {
+            if (failing) throw new RuntimeException("Connection refused");
+            batches.add(Map.copyOf(views));
+        }
+
+        @Override
+        public void streamViews(Instant since, ViewSink sink)
+        {
+            stored.forEach((productId, views) -> sink.accept(productId, Instant.ofEpochMilli(now - 2 * HOUR), views));
+        }
+    };
+
+    @Test
+    public void flush_shouldSaveTheViewsCountedSinceTheLastFlush_inOneBatch()
+    {
+        // arrange
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now);
+        view(counter, 1, 3);
+        view(counter, 2, 1);
+        counter.flush();
+        view(counter, 1, 2);
+
+        // act
+        counter.flush();
+
+        // assert
+        assertEquals(List.of(Map.of(1, 3L, 2, 1L), Map.of(1, 2L)), batches);
+    }
+
+    @Test
+    public void flush_shouldKeepTheViews_whenTheDatabaseIsUnavailable()
+    {
+        // arrange
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now);
+        view(counter, 1, 3);
+        failing = true;
+        counter.flush();
+        failing = false;
+        view(counter, 1, 1);
+
+        // act
+        counter.flush();
+
+        // assert
+        assertEquals(List.of(Map.of(1, 4L)), batches, "Because views that could not be saved go with the next flush.");
+    }
+
+    @Test
+    public void trending_shouldFavourRecentViews()
+    {
+        // arrange: product 1 was popular two hours ago, product 2 is getting fewer views now
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now);
+        view(counter, 1, 10);
+        counter.flush();
+        now += 2 * HOUR;
+        view(counter, 2, 4);
+
+        // act
+        counter.flush();
+
+        // assert
+        assertEquals(List.of(2, 1), counter.trending(10), "Because 10 views two half-lives ago weigh as much as 2.5 now.");
+    }
+
+    @Test
+    public void flush_shouldSeedTheScoresFromTheSavedViews_afterARestart()
+    {
+        // arrange: two hours ago product 3 was viewed 40 times and product 4 once
+        stored.put(3, 40L);
+        stored.put(4, 1L);
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now);
+        view(counter, 5, 2);
+
+        // act
+        counter.flush();
+
+        // assert
+        assertEquals(List.of(3, 5, 4), counter.trending(10));
+        assertEquals(List.of(3), counter.trending(1));
+    }
+
+    @Test
+    public void flush_shouldHandTheScoresToTheListeners()
+    {
+        // arrange
+        List<Map<Integer, Double>> scored = new ArrayList<>();
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now, List.of(scored::add));
+        view(counter, 1, 4);
+        counter.flush();
+        now += HOUR;
+        view(counter, 2, 1);
+
+        // act
+        counter.flush();
+
+        // assert
+        assertEquals(Map.of(1, 2.0, 2, 1.0), scored.get(1), "Because the views of product 1 lost half their weight in an hour.");
+    }
+
+    @Test
+    public void flush_shouldDropProducts_whoseViewsHaveAllButDecayed()
+    {
+        // arrange
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now);
+        view(counter, 1, 1);
+        view(counter, 2, 1);
+        counter.flush();
+        now += 9 * HOUR;
+        view(counter, 2, 1);
+
+        // act
+        counter.flush();
+
+        // assert
+        assertEquals(1, counter.size(), "Because one view nine half-lives ago weighs less than 1/256 of a new one.");
+        assertEquals(List.of(2), counter.trending(10));
+    }
+
+    @Test
+    public void flush_shouldKeepAProduct_whileItsViewsAreNotSaved()
+    {
+        // arrange
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now);
+        view(counter, 1, 1);
+        failing = true;
+        counter.flush();
+        now += 9 * HOUR;
+
+        // act
+        counter.flush();
+
+        // assert
+        assertEquals(1, counter.size(), "Because the view still has to be written.");
+    }
+
+    @Test
+    public void productDeleted_andCatalogLoaded_shouldDropTheCountersOfDeletedProducts()
+    {
+        // arrange
+        ProductViewCounter counter = new ProductViewCounter(viewDao, HOUR, () -> now);
+        view(counter, 1, 1);
+        view(counter, 2, 1);
+        view(counter, 3, 1);
+
+        // act
+        counter.productDeleted(1);
+        counter.catalogLoaded(List.of(new Product(3, "Lamp", BigDecimal.ONE, 1, "", "Black", 1, false, "")));
+        counter.flush();
+
+        // assert
+        assertEquals(1, counter.size());
+        assertEquals(List.of(Map.of(3, 1L)), batches);
+    }
+
+    private static void view(ProductViewCounter counter, int productId, int times)
+    {
+        for (int i = 0; i < times; i++)
+        {
+            counter.record(productId);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.yearup.models.Category;
+import org.yearup.models.CategoryNode;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class MySqlCategoryDaoTest extends BaseDaoTestClass
+{
+    private MySqlCategoryDao dao;
+    private int audioId;
+    private int headphonesId;
+
+    @BeforeEach
+    public void setup() throws SQLException
+    {
+        dao = new MySqlCategoryDao(dataSource);
+
+        // Electronics > Audio > Headphones
+        audioId = dao.create(new Category(null, "Audio", "Speakers and more", 1)).getCategoryId();
+        headphonesId = dao.create(new Category(null, "Headphones", "Over and in ear", audioId)).getCategoryId();
+    }
+
+    @Test
+    public void updateCategory_withoutAParent_shouldKeepTheCategoryWhereItWas()
+    {
+        // act
+        dao.updateCategory(audioId, new Category(null, "Sound", "Speakers and more", null));
+
+        // assert
+        assertEquals(1, dao.getById(audioId).getParentCategoryId(), "Because a PUT of only name and description is not a move.");
+        assertEquals(List.of(1, audioId, headphonesId), ids(dao.getBreadcrumbs(headphonesId)));
+        assertEquals("Sound", dao.getById(audioId).getName());
+    }
+
+    @Test
+    public void moveCategory_shouldMoveTheSubtree()
+    {
+        // act
+        dao.moveCategory(audioId, null);
+
+        // assert
+        assertEquals(List.of(audioId, headphonesId), ids(dao.getBreadcrumbs(headphonesId)));
+        assertEquals(List.of(audioId, headphonesId), dao.getSubtreeIds(audioId));
+        assertFalse(dao.getSubtreeIds(1).contains(headphonesId), "Because Audio and Headphones left Electronics together.");
+    }
+
+    @Test
+    public void moveCategory_belowItself_shouldBeRejected()
+    {
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> dao.moveCategory(audioId, headphonesId));
+    }
+
+    @Test
+    public void getTree_shouldNestTheCategories()
+    {
+        // act
+        var actual = dao.getTree();
+
+        // assert
+        CategoryNode electronics = actual.get(0);
+        CategoryNode audio = electronics.getChildren().stream()
+                                        .filter(node -> node.getCategoryId() == audioId)
+                                        .findFirst()
+                                        .orElseThrow();
+        assertEquals("Electronics", electronics.getName());
+        assertEquals(List.of(headphonesId), audio.getChildren().stream().map(CategoryNode::getCategoryId).collect(Collectors.toList()));
+    }
+
+    private static List<Integer> ids(List<Category> categories)
+    {
+        return categories.stream().map(Category::getCategoryId).collect(Collectors.toList());
+    }
+}
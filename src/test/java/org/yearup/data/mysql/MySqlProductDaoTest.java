@@ -8,6 +8,8 @@ import org.yearup.models.Product;
 
 import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -47,4 +49,16 @@ class MySqlProductDaoTest extends BaseDaoTestClass
         assertEquals(expected.getPrice(), actual.getPrice(), "Because I tried to get product 1 from the database.");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void getByIds_shouldReturn_theProductsInTheRequestedOrder()
+    {
+        // act
+        var actual = dao.getByIds(List.of(3, 1, 999_999, 3, 2))
+                        .stream()
+                        .map(Product::getProductId)
+                        .collect(Collectors.toList());
+
+        // assert
+        assertEquals(List.of(3, 1, 2), actual, "Because unknown ids are skipped and repeated ids returned once.");
+    }
+}
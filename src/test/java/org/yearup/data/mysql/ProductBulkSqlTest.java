@@ -0,0 +1,73 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.ProductBulkChange;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductBulkSqlTest
+{
+    @Test
+    public void update_byCategory_shouldBeOneSetBasedStatement()
+    {
+        // arrange
+        ProductBulkChange change = new ProductBulkChange();
+        change.setCategoryId(3);
+        change.setPricePercent(new BigDecimal("-10"));
+        change.setStock(0);
+
+        // act
+        ProductBulkSql sql = ProductBulkSql.update(change);
+        List<List<Integer>> chunks = sql.chunks();
+
+        // assert
+        assertEquals(1, chunks.size());
+        assertEquals("UPDATE products SET price = GREATEST(ROUND(price * ?, 2), 0), stock = ? WHERE category_id = ?",
+                sql.updateSql(chunks.get(0)));
+    }
+
+    @Test
+    public void delete_longIdList_shouldBeSplitIntoChunks()
+    {
+        // arrange
+        ProductBulkChange filter = new ProductBulkChange();
+        filter.setProductIds(IntStream.rangeClosed(1, 2500).boxed().collect(Collectors.toList()));
+
+        // act
+        List<List<Integer>> chunks = ProductBulkSql.delete(filter).chunks();
+
+        // assert
+        assertEquals(3, chunks.size());
+        assertEquals(ProductBulkSql.MAX_IDS_PER_STATEMENT, chunks.get(0).size());
+        assertEquals(500, chunks.get(2).size());
+    }
+
+    @Test
+    public void withoutAFilter_shouldBeRejected()
+    {
+        // arrange
+        ProductBulkChange change = new ProductBulkChange();
+        change.setStock(0);
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> ProductBulkSql.update(change),
+                "Because a bulk change must never silently apply to the whole catalog.");
+    }
+
+    @Test
+    public void update_withNothingToChange_shouldBeRejected()
+    {
+        // arrange
+        ProductBulkChange change = new ProductBulkChange();
+        change.setCategoryId(1);
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> ProductBulkSql.update(change));
+    }
+}
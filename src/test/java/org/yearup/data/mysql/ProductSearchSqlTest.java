@@ -0,0 +1,168 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.yearup.data.PageCursor;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class ProductSearchSqlTest extends BaseDaoTestClass
+{
+    static Stream<Arguments> filteredSearches()
+    {
+        return Stream.of(
+                Arguments.of("category", query(1, null, null, null, ProductSort.ID)),
+                Arguments.of("min price", query(null, "500", null, null, ProductSort.ID)),
+                Arguments.of("price range", query(null, "50", "100", null, ProductSort.PRICE)),
+                Arguments.of("color", query(null, null, null, "Black", ProductSort.ID)),
+                Arguments.of("category and price", query(1, "50", "500", null, ProductSort.PRICE)),
+                Arguments.of("everything", query(1, "50", "500", "Black", ProductSort.NAME)),
+                Arguments.of("category, next page", page(query(2, null, null, null, ProductSort.PRICE), "25.00", 10)),
+                Arguments.of("text by relevance, next page", page(text(query(null, null, null, null, ProductSort.RELEVANCE), "wireless"), "0.5", 10)),
+                Arguments.of("multi-select", select(query(null, null, null, null, ProductSort.PRICE), List.of(1, 2, 3), List.of("Black", "Gray")))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("filteredSearches")
+    public void explain_filteredSearch_shouldBeAbleToUseAnIndex(String name, ProductQuery query) throws SQLException
+    {
+        // arrange
+        ProductSearchSql sql = new ProductSearchSql(query);
+        Connection connection = dataSource.getConnection();
+
+        // act
+        PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql.getSql());
+        sql.bind(statement);
+        ResultSet plan = statement.executeQuery();
+
+        // assert
+        assertTrue(plan.next());
+        String possibleKeys = plan.getString("possible_keys");
+        assertNotNull(possibleKeys, "Because every predicate in \"" + sql.getSql() + "\" should be sargable.");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("filteredSearches")
+    public void sql_shouldOnlyContainTheSuppliedPredicates(String name, ProductQuery query)
+    {
+        // act
+        String sql = new ProductSearchSql(query).getSql();
+
+        // assert
+        assertFalse(sql.contains("-1") || sql.contains("''"), "Because sentinel comparisons defeat the indexes.");
+        assertEquals(query.getCategoryId() != null, sql.contains("category_id = ?"));
+        assertEquals(query.getColor() != null, sql.contains("color = ?"));
+    }
+
+    @Test
+    public void sql_withFields_shouldSelectOnlyThoseColumnsPlusTheCursorColumns()
+    {
+        // arrange
+        ProductQuery query = query(1, null, null, null, ProductSort.PRICE);
+        query.setFields(ProductFields.parse("name,imageUrl"));
+
+        // act
+        String sql = new ProductSearchSql(query).getSql();
+
+        // assert
+        assertTrue(sql.startsWith("SELECT product_id, name, price, image_url FROM products"),
+                "Because the id and sort column are needed for the next-page cursor, but nothing else was asked for.");
+    }
+
+    @Test
+    public void sql_withText_shouldOrderByTheFullTextScore()
+    {
+        // arrange
+        ProductQuery query = text(query(1, null, null, null, ProductSort.RELEVANCE), "wireless headphones");
+
+        // act
+        String sql = new ProductSearchSql(query).getSql();
+
+        // assert
+        assertTrue(sql.contains("WHERE MATCH(name, description) AGAINST (?) AND category_id = ?"));
+        assertTrue(sql.endsWith("ORDER BY relevance DESC, product_id LIMIT ?"),
+                "Because the MySQL DAO answers text searches itself when there is no text index in front of it.");
+    }
+
+    @Test
+    public void sql_withSelections_shouldPadTheInListsToAPowerOfTwo()
+    {
+        // arrange
+        ProductQuery three = select(query(null, null, null, null, ProductSort.ID), List.of(1, 2, 3), List.of("Black"));
+        ProductQuery four = select(query(null, null, null, null, ProductSort.ID), List.of(1, 2, 3, 4), List.of("Red"));
+        four.setInStock(true);
+
+        // act
+        String threeSql = new ProductSearchSql(three).getSql();
+        String fourSql = new ProductSearchSql(four).getSql();
+
+        // assert
+        assertTrue(threeSql.contains("WHERE category_id IN (?, ?, ?, ?) AND color IN (?)"));
+        assertTrue(fourSql.contains("WHERE category_id IN (?, ?, ?, ?) AND color IN (?) AND stock > 0"),
+                "Because three and four categories share one statement.");
+    }
+
+    @Test
+    public void sql_withTooManySelectedValues_shouldBeRejected()
+    {
+        // arrange
+        ProductQuery query = select(query(null, null, null, null, ProductSort.ID),
+                IntStream.rangeClosed(1, ProductSearchSql.MAX_SELECTED + 1).boxed().collect(Collectors.toList()), null);
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> new ProductSearchSql(query));
+    }
+
+    private static ProductQuery select(ProductQuery query, List<Integer> categoryIds, List<String> colors)
+    {
+        query.setCategoryIds(categoryIds);
+        query.setColors(colors);
+        return query;
+    }
+
+    private static ProductQuery text(ProductQuery query, String text)
+    {
+        query.setText(text);
+        return query;
+    }
+
+    private static ProductQuery query(Integer categoryId, String minPrice, String maxPrice, String color, ProductSort sort)
+    {
+        ProductQuery query = new ProductQuery();
+        query.setCategoryId(categoryId);
+        query.setMinPrice(minPrice == null ? null : new BigDecimal(minPrice));
+        query.setMaxPrice(maxPrice == null ? null : new BigDecimal(maxPrice));
+        query.setColor(color);
+        query.setSort(sort);
+        query.setLimit(20);
+        return query;
+    }
+
+    private static ProductQuery page(ProductQuery query, String sortKey, int productId)
+    {
+        query.setAfter(new PageCursor(query.getSort(), sortKey, productId));
+        return query;
+    }
+}
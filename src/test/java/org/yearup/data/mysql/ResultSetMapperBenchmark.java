@@ -0,0 +1,126 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.yearup.models.Product;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the per-row cost of mapping products by column name (the old
+ * MySqlProductDao.mapRow) with {@link ResultSetMapper} over a 100k-row
+ * in-memory result set. The result set resolves names through a
+ * case-insensitive map the way Connector/J does, so the difference is the
+ * mapping overhead alone.
+ *
+ * Run with: mvn test -Dtest=ResultSetMapperBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ResultSetMapperBenchmark
+{
+    private static final int ROWS = 100_000;
+    private static final int ROUNDS = 15;
+    private static final String SQL = "SELECT * FROM products";
+    private static final String[] COLUMNS = {
+            "product_id", "name", "price", "category_id", "description", "color", "image_url", "stock", "featured"
+    };
+
+    @Test
+    public void perRowCost_byName_vs_byPosition() throws SQLException
+    {
+        Object[][] data = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++)
+        {
+            data[i] = new Object[]{
+                    i + 1, "Product " + i, new BigDecimal("19.99"), i % 7, "A description for product " + i,
+                    "Black", "product.jpg", i % 50, i % 10 == 0
+            };
+        }
+
+        long byName = Long.MAX_VALUE;
+        long byPosition = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            ResultSet rows = resultSet(data);
+            long start = System.nanoTime();
+            while (rows.next())
+            {
+                checksum += mapByName(rows).getProductId();
+            }
+            byName = Math.min(byName, System.nanoTime() - start);
+
+            rows = resultSet(data);
+            start = System.nanoTime();
+            ResultSetMapper.Rows<Product> mapper = MySqlProductDao.PRODUCT_MAPPER.rows(SQL, rows);
+            while (rows.next())
+            {
+                checksum -= mapper.map(rows).getProductId();
+            }
+            byPosition = Math.min(byPosition, System.nanoTime() - start);
+        }
+
+        System.out.printf("by column name:     %6.1f ns/row%n", (double) byName / ROWS);
+        System.out.printf("by column position: %6.1f ns/row%n", (double) byPosition / ROWS);
+        assertEquals(0, checksum, "Because both mappers must read the same products.");
+    }
+
+    // the mapping MySqlProductDao used before ResultSetMapper
+    private static Product mapByName(ResultSet row) throws SQLException
+    {
+        int productId = row.getInt("product_id");
+        String name = row.getString("name");
+        BigDecimal price = row.getBigDecimal("price");
+        int categoryId = row.getInt("category_id");
+        String description = row.getString("description");
+        String color = row.getString("color");
+        int stock = row.getInt("stock");
+        boolean isFeatured = row.getBoolean("featured");
+        String imageUrl = row.getString("image_url");
+
+        return new Product(productId, name, price, categoryId, description, color, stock, isFeatured, imageUrl);
+    }
+
+    private static ResultSet resultSet(Object[][] data)
+    {
+        Map<String, Integer> positions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < COLUMNS.length; i++)
+        {
+            positions.put(COLUMNS[i], i + 1);
+        }
+
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> method.getName().equals("getColumnCount")
+                        ? COLUMNS.length
+                        : COLUMNS[(Integer) args[0] - 1]);
+
+        int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "next":
+                            return ++cursor[0] < data.length;
+                        case "getMetaData":
+                            return metaData;
+                        case "wasNull":
+                            return false;
+                        case "findColumn":
+                            return positions.get((String) args[0]);
+                        default:
+                            int column = args[0] instanceof String ? positions.get((String) args[0]) : (Integer) args[0];
+                            return data[cursor[0]][column - 1];
+                    }
+                });
+    }
+}
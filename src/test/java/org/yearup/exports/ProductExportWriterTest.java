@@ -0,0 +1,112 @@
+package org.yearup.exports;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductFields;
+import org.yearup.imports.ProductImportReader;
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductExportWriterTest
+{
+    // configured like the application's mapper, see JacksonConfig
+    private final ObjectMapper mapper = new ObjectMapper().setFilterProvider(new SimpleFilterProvider()
+            .addFilter(ProductFields.FILTER, SimpleBeanPropertyFilter.serializeAll()));
+
+    private final List<Product> products = List.of(
+            new Product(1, "Desk Lamp, Brass", new BigDecimal("19.99"), 1, "Says \"hello\"\nover two lines", "Gold", 4, true, "lamp.jpg"),
+            new Product(2, "Mug", new BigDecimal("5.00"), 2, null, "White", 0, false, "mug.jpg"));
+
+    @Test
+    public void json_shouldWriteOneArray() throws IOException
+    {
+        // act
+        String json = export("json", null);
+
+        // assert
+        JsonNode array = mapper.readTree(json);
+        assertTrue(array.isArray());
+        assertEquals(2, array.size());
+        assertEquals("Mug", array.get(1).get("name").asText());
+        assertTrue(array.get(0).get("featured").asBoolean());
+    }
+
+    @Test
+    public void ndjson_shouldWriteOneProductPerLine_withOnlyTheRequestedFields() throws IOException
+    {
+        // act
+        String ndjson = export("ndjson", ProductFields.parse("productId,name"));
+
+        // assert
+        String[] lines = ndjson.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(ndjson.endsWith("\n"));
+        assertEquals("{\"productId\":2,\"name\":\"Mug\"}", lines[1]);
+    }
+
+    @Test
+    public void csv_shouldQuoteFields_andReadBackThroughTheImport() throws IOException
+    {
+        // act
+        String csv = export("csv", null);
+
+        // assert
+        assertTrue(csv.startsWith("product_id,name,price,category_id,description,color,stock,featured,image_url\r\n"));
+        ProductImportReader reader = ProductImportReader.open(ProductImportReader.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        List<ProductImportRow> rows = new ArrayList<>();
+        reader.forEachRemaining(rows::add);
+
+        assertEquals(2, rows.size());
+        assertFalse(rows.get(0).isFailed());
+        Product lamp = rows.get(0).getProduct();
+        assertEquals("Desk Lamp, Brass", lamp.getName());
+        assertEquals("Says \"hello\"\nover two lines", lamp.getDescription());
+        assertEquals(new BigDecimal("19.99"), lamp.getPrice());
+        assertTrue(lamp.isFeatured(), "Because an exported file should import back unchanged.");
+    }
+
+    @Test
+    public void emptyExport_shouldStillBeAValidDocument() throws IOException
+    {
+        // arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // act
+        ProductExportWriter.open("json", out, mapper, null).finish();
+
+        // assert
+        assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void unknownFormat_shouldBeRejected()
+    {
+        assertThrows(IllegalArgumentException.class, () -> ProductExportWriter.contentType("xml"));
+    }
+
+    private String export(String format, ProductFields fields) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProductExportWriter writer = ProductExportWriter.open(format, out, mapper, fields);
+        products.forEach(writer);
+        writer.finish();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
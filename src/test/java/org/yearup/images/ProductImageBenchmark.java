@@ -0,0 +1,130 @@
+package org.yearup.images;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares sending images to a loopback socket through
+ * {@link ProductImageStore} (mapped hot images, transferTo for the rest) with
+ * a plain handler that reads each file with {@code Files.readAllBytes} and
+ * writes the array. Small images stand in for thumbnails, which fit the
+ * mapped LRU; large ones for full-size photos, which go through sendfile.
+ *
+ * Run with: mvn test -Dtest=ProductImageBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProductImageBenchmark
+{
+    private static final int SMALL_IMAGES = 200;
+    private static final int SMALL_SIZE = 64 * 1024;
+    private static final int LARGE_IMAGES = 10;
+    private static final int LARGE_SIZE = 8 * 1024 * 1024;
+    private static final int REQUESTS = 20_000;
+    private static final int ROUNDS = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void throughput_store_vs_readAllBytes() throws Exception
+    {
+        byte[] bytes = new byte[LARGE_SIZE];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) i;
+        }
+        for (int i = 0; i < SMALL_IMAGES; i++)
+        {
+            Files.write(directory.resolve("thumb-" + i + ".jpg"), Arrays.copyOf(bytes, SMALL_SIZE));
+        }
+        for (int i = 0; i < LARGE_IMAGES; i++)
+        {
+            Files.write(directory.resolve("photo-" + i + ".jpg"), bytes);
+        }
+        ProductImageStore store = new ProductImageStore(directory.toString());
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()
+                .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             SocketChannel client = SocketChannel.open(server.getLocalAddress());
+             SocketChannel accepted = server.accept())
+        {
+            AtomicLong received = new AtomicLong();
+            Thread drain = new Thread(() -> drain(accepted, received), "drain");
+            drain.setDaemon(true);
+            drain.start();
+
+            long sent = 0;
+            for (String kind : new String[]{"thumb", "photo"})
+            {
+                int images = kind.equals("thumb") ? SMALL_IMAGES : LARGE_IMAGES;
+                int requests = kind.equals("thumb") ? REQUESTS : REQUESTS / 100;
+                long size = kind.equals("thumb") ? SMALL_SIZE : LARGE_SIZE;
+
+                long plain = Long.MAX_VALUE;
+                long zeroCopy = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++)
+                {
+                    long start = System.nanoTime();
+                    for (int request = 0; request < requests; request++)
+                    {
+                        ByteBuffer body = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(kind + "-" + request % images + ".jpg")));
+                        while (body.hasRemaining())
+                        {
+                            client.write(body);
+                        }
+                    }
+                    plain = Math.min(plain, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    for (int request = 0; request < requests; request++)
+                    {
+                        ProductImage image = store.open(kind + "-" + request % images + ".jpg");
+                        image.transferTo(0, image.getLength(), client);
+                    }
+                    zeroCopy = Math.min(zeroCopy, System.nanoTime() - start);
+                    sent += 2L * requests * size;
+                }
+
+                double megabytes = (double) requests * size / (1024 * 1024);
+                System.out.printf("%s (%d KB) readAllBytes: %8.0f MB/s%n", kind, size / 1024, megabytes / (plain / 1e9));
+                System.out.printf("%s (%d KB) image store:  %8.0f MB/s%n", kind, size / 1024, megabytes / (zeroCopy / 1e9));
+            }
+
+            client.shutdownOutput();
+            drain.join();
+            assertEquals(sent, received.get(), "Because every byte written must reach the other end.");
+        }
+    }
+
+    private static void drain(SocketChannel channel, AtomicLong received)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try
+        {
+            int read;
+            while ((read = channel.read(buffer)) >= 0)
+            {
+                received.addAndGet(read);
+                buffer.clear();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.yearup.images;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductImageStoreTest
+{
+    @TempDir
+    Path directory;
+
+    private ProductImageStore store;
+
+    @BeforeEach
+    public void setup()
+    {
+        store = new ProductImageStore(directory.toString());
+    }
+
+    @Test
+    public void open_shouldMapSmallImages_andServeThemFromTheMapping() throws IOException
+    {
+        // arrange
+        byte[] bytes = bytes(1000);
+        Files.write(directory.resolve("lamp.jpg"), bytes);
+
+        // act
+        ProductImage first = store.open("lamp.jpg");
+        ProductImage second = store.open("lamp.jpg");
+
+        // assert
+        assertTrue(first.isMapped());
+        assertSame(first, second, "Because a recently checked image is not looked up again.");
+        assertArrayEquals(Arrays.copyOfRange(bytes, 100, 300), read(first, 100, 200));
+    }
+
+    @Test
+    public void open_shouldSendLargeImagesStraightFromTheFile() throws IOException
+    {
+        // arrange
+        byte[] bytes = bytes((int) ProductImageStore.MAX_MAPPED_SIZE + 1);
+        Files.write(directory.resolve("poster.png"), bytes);
+
+        // act
+        ProductImage image = store.open("poster.png");
+
+        // assert
+        assertFalse(image.isMapped());
+        assertArrayEquals(Arrays.copyOfRange(bytes, 5000, bytes.length), read(image, 5000, bytes.length - 5000));
+    }
+
+    @Test
+    public void open_shouldNoticeAReplacedImage_onceItIsDueForACheck() throws IOException
+    {
+        // arrange
+        Path path = directory.resolve("mug.jpg");
+        Files.write(path, bytes(100));
+        ProductImage before = store.open("mug.jpg");
+        Path replacement = directory.resolve("mug.jpg.new");
+        Files.write(replacement, bytes(120));
+        Files.setLastModifiedTime(replacement, FileTime.from(Instant.now().plusSeconds(60)));
+        Files.move(replacement, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // act
+        before.checkedAt -= ProductImageStore.REVALIDATE_NANOS;
+        ProductImage after = store.open("mug.jpg");
+
+        // assert
+        assertNotEquals(before.getETag(), after.getETag());
+        assertEquals(120, after.getLength(), "Because the new version of the file is served.");
+    }
+
+    @Test
+    public void open_shouldReturnNull_forAMissingImage() throws IOException
+    {
+        // act
+        var actual = store.open("missing.jpg");
+
+        // assert
+        assertNull(actual);
+    }
+
+    @Test
+    public void open_shouldRejectNamesOutsideTheImageDirectory()
+    {
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> store.open("../secret.txt"));
+        assertThrows(IllegalArgumentException.class, () -> store.open(".."));
+        assertThrows(IllegalArgumentException.class, () -> store.open("a/b.jpg"));
+    }
+
+    private static byte[] read(ProductImage image, long start, long count) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.transferTo(start, count, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(int length)
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+}
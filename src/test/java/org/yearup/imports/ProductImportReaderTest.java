@@ -0,0 +1,97 @@
+package org.yearup.imports;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.ProductImportRow;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductImportReaderTest
+{
+    @Test
+    public void csv_shouldMatchColumnsByHeader_andHandleQuotedFields()
+    {
+        // arrange
+        String csv = "price,category_id,name,description,featured\r\n" +
+                "19.99,1,\"Desk Lamp, Brass\",\"Says \"\"hello\"\"\nover two lines\",true\r\n" +
+                "\r\n" +
+                "5.00,2,Mug,,0\r\n";
+
+        // act
+        List<ProductImportRow> rows = readAll("text/csv", csv);
+
+        // assert
+        assertEquals(2, rows.size());
+        assertEquals("Desk Lamp, Brass", rows.get(0).getProduct().getName());
+        assertEquals("Says \"hello\"\nover two lines", rows.get(0).getProduct().getDescription());
+        assertTrue(rows.get(0).getProduct().isFeatured());
+        assertEquals(new BigDecimal("5.00"), rows.get(1).getProduct().getPrice());
+        assertEquals(5, rows.get(1).getLine(), "Because line numbers should count the line breaks inside quotes.");
+    }
+
+    @Test
+    public void csv_badRows_shouldBeReported_withoutStoppingTheImport()
+    {
+        // arrange
+        String csv = "name,price,category_id\n" +
+                "Lamp,abc,1\n" +
+                ",5.00,1\n" +
+                "Mug,5.00,\n" +
+                "Bowl,7.50,3\n";
+
+        // act
+        List<ProductImportRow> rows = readAll("text/csv; charset=UTF-8", csv);
+
+        // assert
+        assertEquals(4, rows.size());
+        assertTrue(rows.get(0).isFailed());
+        assertTrue(rows.get(1).isFailed());
+        assertTrue(rows.get(2).isFailed());
+        assertFalse(rows.get(3).isFailed());
+        assertEquals(5, rows.get(3).getLine());
+    }
+
+    @Test
+    public void csv_withoutRequiredHeaders_shouldBeRejected()
+    {
+        assertThrows(IllegalArgumentException.class, () -> readAll("text/csv", "name,color\nLamp,Red\n"));
+    }
+
+    @Test
+    public void ndjson_shouldReportMalformedLines_andKeepReading()
+    {
+        // arrange
+        String ndjson = "{\"name\":\"Lamp\",\"price\":19.99,\"categoryId\":1,\"color\":\"Red\"}\n" +
+                "{\"name\":\"Broken\",\n" +
+                "\n" +
+                "{\"name\":\"Mug\",\"price\":5,\"categoryId\":2,\"unknown\":true}\n";
+
+        // act
+        List<ProductImportRow> rows = readAll("application/x-ndjson", ndjson);
+
+        // assert
+        assertEquals(3, rows.size());
+        assertEquals("Red", rows.get(0).getProduct().getColor());
+        assertTrue(rows.get(1).isFailed());
+        assertEquals(2, rows.get(1).getLine());
+        assertEquals(4, rows.get(2).getLine());
+        assertEquals(2, rows.get(2).getProduct().getCategoryId());
+    }
+
+    private static List<ProductImportRow> readAll(String contentType, String body)
+    {
+        ProductImportReader reader = ProductImportReader.open(contentType,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        List<ProductImportRow> rows = new ArrayList<>();
+        reader.forEachRemaining(rows::add);
+        return rows;
+    }
+}
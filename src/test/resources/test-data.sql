@@ -25,7 +25,11 @@ CREATE TABLE categories (
                             category_id INT NOT NULL AUTO_INCREMENT,
                             name VARCHAR(100) NOT NULL,
                             description TEXT,
-                            PRIMARY KEY (category_id)
+                            parent_category_id INT NULL,
+                            path VARCHAR(255) NOT NULL DEFAULT '',
+                            PRIMARY KEY (category_id),
+                            INDEX ix_categories_path (path),
+                            FOREIGN KEY (parent_category_id) REFERENCES categories(category_id)
 );
 
 CREATE TABLE products (
@@ -39,6 +43,11 @@ CREATE TABLE products (
                           stock INT NOT NULL DEFAULT 0,
                           featured BOOL NOT NULL DEFAULT 0,
                           PRIMARY KEY (product_id),
+                          INDEX ix_products_category_price (category_id, price),
+                          INDEX ix_products_price (price),
+                          INDEX ix_products_color (color, price),
+                          INDEX ix_products_name (name),
+                          FULLTEXT INDEX ft_products_text (name, description),
                           FOREIGN KEY (category_id) REFERENCES categories(category_id)
 );
 
@@ -77,6 +86,13 @@ CREATE TABLE shopping_cart (
                                FOREIGN KEY (product_id) REFERENCES products(product_id)
 );
 
+CREATE TABLE product_views (
+                               product_id INT NOT NULL,
+                               hour_start DATETIME NOT NULL,
+                               views BIGINT NOT NULL DEFAULT 0,
+                               PRIMARY KEY (product_id, hour_start),
+                               INDEX ix_product_views_hour (hour_start)
+);
 
 /*  INSERT Users  */
 INSERT INTO users (username, hashed_password, role)
@@ -94,6 +110,8 @@ VALUES  ('Electronics', 'Explore the latest gadgets and electronic devices.'),
         ('Fashion', 'Discover trendy clothing and accessories for men and women.'),
         ('Home & Kitchen', 'Find everything you need to decorate and equip your home.');
 
+UPDATE categories SET path = CONCAT('/', category_id, '/');
+
 /* INSERT Products */
 -- electronics
 INSERT INTO products (name, price, category_id, description, image_url, stock, featured, color)